@@ -52,6 +52,18 @@ public abstract class CsvDataSource implements DataSource {
 		return true;
 	}
 
+	/**
+	 * Skipped lines are not parsed.
+	 */
+	@Override
+	public boolean skip(long count) throws IOException {
+		for (long i = 0; i < count; i++) {
+			if (br.readLine() == null)
+				return false;
+		}
+		return true;
+	}
+
 	@Override
 	public double[] getInput() {
 		return input;
@@ -0,0 +1,35 @@
+package info.adamovskiy.digitrecognizer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Kaggle digit recognizer format: label column, then 28x28 pixels with values
+ * from 0 to 255. Pixels are scaled to [0, 1], label is converted to vector
+ * with single 1.
+ */
+public class DigitCsvDataSource extends CsvDataSource {
+	public static final int INPUT_SIZE = 784;
+	public static final int OUTPUT_SIZE = 10;
+	
+	public DigitCsvDataSource(String filename) throws IOException {
+		super(filename, 1, INPUT_SIZE);
+	}
+	
+	@Override
+	protected double[] prepareInput(String[] rawValues) {
+		double[] result = new double[INPUT_SIZE];
+		for (int i = 0; i < rawValues.length; i++) {
+			result[i] = Integer.parseInt(rawValues[i]) / 255d;
+		}
+		return result;
+	}
+	
+	@Override
+	protected double[] prepareOutput(String[] rawValues) {
+		double[] result = new double[OUTPUT_SIZE];
+		Arrays.fill(result, 0d);
+		result[Integer.parseInt(rawValues[0])] = 1d;
+		return result;
+	}
+}
@@ -10,9 +10,11 @@ import java.util.List;
 import javax.imageio.ImageIO;
 
 import info.adamovskiy.nn.DataSource;
+import info.adamovskiy.nn.NetworkSnapshot;
 import info.adamovskiy.nn.NeuralNetwork;
 import info.adamovskiy.nn.NeuralNetwork.WeightChangedListener;
 import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
 import info.adamovskiy.nn.NeuralNetworkBuilder.LayeredNeuronLabel;
 import info.adamovskiy.nn.neuron.NeuralNode;
 import info.adamovskiy.nn.neuron.Neuron;
@@ -47,29 +49,6 @@ import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
 public class DigitRecognizerApplication extends Application {
-	private static class DigitCsvDataSource extends CsvDataSource {
-		public DigitCsvDataSource() throws IOException {
-			super("./train.csv", 1, INPUT_SIZE);
-		}
-		
-		@Override
-		protected double[] prepareInput(String[] rawValues) {
-			double[] result = new double[INPUT_SIZE];
-			for (int i = 0; i < rawValues.length; i++) {
-				result[i] = Integer.parseInt(rawValues[i]) / 255d;
-			}
-			return result;
-		}
-		
-		@Override
-		protected double[] prepareOutput(String[] rawValues) {
-			double[] result = new double[10];
-			Arrays.fill(result, 0d);
-			result[Integer.parseInt(rawValues[0])] = 1d;
-			return result;
-		}
-	}
-	
 	//private static final int INPUT_SIZE = 15;
 	private static final int INPUT_SIZE = 784;
 	private static final Integer[] HIDDEN_LAYERS = {100, 20};
@@ -80,6 +59,7 @@ public class DigitRecognizerApplication extends Application {
 	private static final double LEARNING_RATE = .1;
 	private static final double SIGMOID_ALPHA = .5;
 	private static final int DELAY = 0;
+	private static final String SNAPSHOT_FILENAME = "./digitrecognizer.snapshot";
 	
 	private static final int BORDER_SIZE = 5;
 	private static final int IMAGE_WIDTH = 300;
@@ -139,6 +119,7 @@ public class DigitRecognizerApplication extends Application {
 	private ImageDrawer inputImageDrawer;
 	private Label stepInfoLabel;
 	private TextField dumpDotFilename;
+	private TextField snapshotFilename;
 	private TextField saveDataDirname;
 	private List<ProgressBar> bars;
 	
@@ -151,7 +132,7 @@ public class DigitRecognizerApplication extends Application {
 	
 	public DigitRecognizerApplication() throws IOException {
 		//dataSource = new SmallNumbersDataSource(10);
-		dataSource = new DigitCsvDataSource();
+		dataSource = new DigitCsvDataSource("./train.csv");
 				
 		createNN(INPUT_SIZE, OUTPUT_SIZE, HIDDEN_LAYERS);
 		createTeacher();
@@ -159,7 +140,26 @@ public class DigitRecognizerApplication extends Application {
 		createBars();
 	}
 	
-	private void createNN(int inputs, int outputs, Integer... hiddenLayers) {
+	/**
+	 * Network saved by previous launch is loaded, if it has the same layers.
+	 */
+	private void createNN(int inputs, int outputs, Integer... hiddenLayers) throws IOException {
+		final File snapshotFile = new File(SNAPSHOT_FILENAME);
+		if (snapshotFile.exists()) {
+			final NetworkSnapshot snapshot = NetworkSnapshot.open(snapshotFile);
+			final int[] layerSizes = snapshot.getLayerSizes();
+			boolean sameLayers = layerSizes.length == hiddenLayers.length + 2 && layerSizes[0] == inputs
+					&& layerSizes[layerSizes.length - 1] == outputs;
+			for (int i = 0; sameLayers && i < hiddenLayers.length; i++) {
+				sameLayers = layerSizes[i + 1] == hiddenLayers[i];
+			}
+			if (sameLayers) {
+				// weight images need labels of neurons
+				nn = snapshot.createNetwork(Engine.NEURONS);
+				return;
+			}
+			System.out.println("Layers of " + snapshotFile + " differ, new network is created");
+		}
 		nn = NeuralNetworkBuilder.createSigmoidPreceptron(LEARNING_RATE, SIGMOID_ALPHA, inputs, outputs, hiddenLayers);
 	}
 	
@@ -359,6 +359,14 @@ public class DigitRecognizerApplication extends Application {
 		}
 	}
 	
+	private void saveSnapshot() {
+		try {
+			nn.save(new File(snapshotFilename.getText()));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
 	private void saveData() {
 		File dir = new File(saveDataDirname.getText());
 		dir.mkdir();
@@ -411,6 +419,16 @@ public class DigitRecognizerApplication extends Application {
 			}
 		});
 		
+		snapshotFilename = new TextField(SNAPSHOT_FILENAME);
+		
+		Button saveSnapshotButton = new Button("Save network");
+		saveSnapshotButton.setOnAction(new EventHandler<ActionEvent>() {
+			@Override
+			public void handle(ActionEvent event) {
+				saveSnapshot();
+			}
+		});
+		
 		processButton = new Button("Continious learning");
 		processButton.setOnAction(new EventHandler<ActionEvent>() {
 			@Override
@@ -470,6 +488,9 @@ public class DigitRecognizerApplication extends Application {
 		HBox dumpDotPane = new HBox(new Label("file name:"), dumpDotFilename, dumpDotButton);
 		dumpDotPane.setAlignment(Pos.CENTER);
 		infosPanel.getChildren().add(dumpDotPane);
+		HBox snapshotPane = new HBox(new Label("file name:"), snapshotFilename, saveSnapshotButton);
+		snapshotPane.setAlignment(Pos.CENTER);
+		infosPanel.getChildren().add(snapshotPane);
 		HBox saveDataPane = new HBox(new Label("dir name:"), saveDataDirname, saveDataButton);
 		saveDataPane.setAlignment(Pos.CENTER);
 		infosPanel.getChildren().add(saveDataPane);
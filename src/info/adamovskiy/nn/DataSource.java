@@ -16,6 +16,21 @@ public interface DataSource {
 	 */
 	public boolean prepareNext() throws IOException;
 	
+	/**
+	 * Skips count examples, e.g. ones learned before checkpoint. This
+	 * implementation prepares them one by one.
+	 * 
+	 * @return false if there is no more data.
+	 * @throws IOException
+	 */
+	public default boolean skip(long count) throws IOException {
+		for (long i = 0; i < count; i++) {
+			if (!prepareNext())
+				return false;
+		}
+		return true;
+	}
+	
 	public double[] getInput();
 	
 	public double[] getOutput();
@@ -0,0 +1,27 @@
+package info.adamovskiy.nn;
+
+/**
+ * Read-only view of network, which has its own values of neurons and uses
+ * weights of network as is, without copying. Sessions of one network can
+ * conclude in different threads at the same time without locking, while
+ * network is not taught. Session itself is not thread safe: every thread
+ * needs its own one.
+ */
+public interface InferenceSession {
+	public int getInputsCount();
+	
+	public int getOutputsCount();
+	
+	/**
+	 * @param inputValues
+	 *            values of input neurons
+	 * @param results
+	 *            receives values of output neurons
+	 */
+	public void conclude(double[] inputValues, double[] results);
+	
+	/**
+	 * See {@link NeuralNetwork#concludeBatch(double[][], double[][])}.
+	 */
+	public void concludeBatch(double[][] inputs, double[][] results);
+}
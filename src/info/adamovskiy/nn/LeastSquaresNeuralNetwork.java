@@ -3,6 +3,9 @@ package info.adamovskiy.nn;
 import info.adamovskiy.nn.neuron.InputNeuron;
 import info.adamovskiy.nn.neuron.OutputNeuron;
 
+import java.io.File;
+import java.io.IOException;
+
 public class LeastSquaresNeuralNetwork extends SimpleNeuralNetwork {
 	public LeastSquaresNeuralNetwork(double learningRate, InputNeuron[] inputs,	InputNeuron[] constantInputs, OutputNeuron[] outputs) {
 		super(learningRate, inputs, constantInputs, outputs);
@@ -22,4 +25,24 @@ public class LeastSquaresNeuralNetwork extends SimpleNeuralNetwork {
 		}
 		return sum / 2d;
 	}
+	
+	@Override
+	protected double error(double[] outputValues, double[] etalonValues) {
+		double sum = 0d;
+		for (int i = 0; i < outputValues.length; i++) {
+			double dif = outputValues[i] - etalonValues[i];
+			sum += dif*dif;
+		}
+		return sum / 2d;
+	}
+	
+	@Override
+	public void save(File file) throws IOException {
+		capture().save(file);
+	}
+	
+	@Override
+	public NetworkSnapshot.Capture capture() {
+		return captureLayered(NetworkSnapshot.LossType.LEAST_SQUARES);
+	}
 }
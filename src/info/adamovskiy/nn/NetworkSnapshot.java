@@ -0,0 +1,431 @@
+package info.adamovskiy.nn;
+
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.activation.TableSigmoidActivationFunction;
+import info.adamovskiy.nn.dense.LeastSquaresDenseNeuralNetwork;
+import info.adamovskiy.nn.dense.SoftmaxDenseNeuralNetwork;
+import info.adamovskiy.nn.loss.LeastSquaresLoss;
+import info.adamovskiy.nn.loss.Loss;
+import info.adamovskiy.nn.loss.SoftmaxCrossEntropyLoss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of layered perceptron, see {@link NeuralNetwork#save(File)}.
+ *
+ * All values are little-endian. Header:
+ * <ul>
+ * <li>int magic {@link #MAGIC} and int {@link #VERSION};</li>
+ * <li>int loss, ordinal of {@link LossType}, and int activation function of
+ * neurons, ordinal of {@link ActivationType};</li>
+ * <li>double parameter of activation function (sigmoid alpha) and double
+ * learning rate;</li>
+ * <li>int count of layers and int size of every layer, including input and
+ * output ones;</li>
+ * <li>zeros up to {@link #ALIGNMENT}.</li>
+ * </ul>
+ * Then two blocks of doubles for every non-input layer: shift weights of
+ * neurons and weights of inputs, neuron by neuron. So weights of network
+ * are contiguous and aligned like in {@link info.adamovskiy.nn.dense.DenseNeuralNetwork}.
+ *
+ * Opened snapshot maps blocks to memory by {@link FileChannel#map}, weights
+ * are not read or parsed until they are used. Mapping is private: changes of
+ * weights (e.g. teaching of loaded network) are not written to file. If file
+ * is not writable, mapping is read only and teaching of mapped network
+ * fails.
+ */
+public class NetworkSnapshot {
+	public static final int MAGIC = 0x504E534E;
+	public static final int VERSION = 1;
+	private static final int ALIGNMENT = 64;
+	// header up to layer sizes
+	private static final int FIXED_HEADER_SIZE = 36;
+	private static final int MAX_BLOCK_DOUBLES = Integer.MAX_VALUE / Double.BYTES;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	public enum LossType {
+		LEAST_SQUARES,
+		SOFTMAX_CROSS_ENTROPY;
+
+		/**
+		 * @throws UnsupportedOperationException
+		 *             if loss can not be saved
+		 */
+		public static LossType of(Loss loss) {
+			if (loss instanceof LeastSquaresLoss)
+				return LEAST_SQUARES;
+			if (loss instanceof SoftmaxCrossEntropyLoss)
+				return SOFTMAX_CROSS_ENTROPY;
+			throw new UnsupportedOperationException("Loss can not be saved: " + loss.getClass().getName());
+		}
+	}
+
+	public enum ActivationType {
+		SIGMOID,
+		/**
+		 * {@link TableSigmoidActivationFunction}
+		 */
+		TABLE_SIGMOID;
+
+		/**
+		 * @throws UnsupportedOperationException
+		 *             if function can not be saved
+		 */
+		public static ActivationType of(ActivationFunction activationFunction) {
+			if (activationFunction instanceof TableSigmoidActivationFunction)
+				return TABLE_SIGMOID;
+			if (activationFunction != null && activationFunction.getClass() == SigmoidActivationFunction.class)
+				return SIGMOID;
+			throw new UnsupportedOperationException("Activation function can not be saved: "
+					+ (activationFunction == null ? null : activationFunction.getClass().getName()));
+		}
+	}
+
+	/**
+	 * Weights of network being saved, layer is index of non-input layer
+	 * starting with 1.
+	 */
+	public interface LayerWeights {
+		double getBias(int layer, int neuron);
+
+		double getWeight(int layer, int neuron, int input);
+	}
+
+	/**
+	 * Copy of parameters and weights, which does not depend on network, so it
+	 * can be written by another thread while network is taught, see
+	 * {@link NeuralNetwork#capture()}.
+	 */
+	public static class Capture implements LayerWeights {
+		private final double learningRate;
+		private final ActivationFunction activationFunction;
+		private final LossType lossType;
+		private final int[] layerSizes;
+		// by non-input layer
+		private final double[][] biases;
+		private final double[][] weights;
+
+		/**
+		 * @param biases
+		 *            shift weights by non-input layer
+		 * @param weights
+		 *            input weights by non-input layer, neuron by neuron
+		 * @throws UnsupportedOperationException
+		 *             if activation function can not be saved
+		 */
+		public Capture(double learningRate, ActivationFunction activationFunction, LossType lossType, int[] layerSizes,
+				double[][] biases, double[][] weights) {
+			ActivationType.of(activationFunction);
+			this.learningRate = learningRate;
+			this.activationFunction = activationFunction;
+			this.lossType = lossType;
+			this.layerSizes = layerSizes;
+			this.biases = biases;
+			this.weights = weights;
+		}
+
+		@Override
+		public double getBias(int layer, int neuron) {
+			return biases[layer - 1][neuron];
+		}
+
+		@Override
+		public double getWeight(int layer, int neuron, int input) {
+			return weights[layer - 1][neuron * layerSizes[layer - 1] + input];
+		}
+
+		/**
+		 * See {@link NetworkSnapshot#write(File, double, ActivationFunction, LossType, int[], LayerWeights)}.
+		 */
+		public void save(File file) throws IOException {
+			write(file, learningRate, activationFunction, lossType, layerSizes, this);
+		}
+	}
+
+	private final File file;
+	private final LossType lossType;
+	private final SigmoidActivationFunction activationFunction;
+	private final double learningRate;
+	private final int[] layerSizes;
+	// by non-input layer
+	private final DoubleBuffer[] biases;
+	private final DoubleBuffer[] weights;
+
+	private NetworkSnapshot(File file) throws IOException {
+		this.file = file;
+		// private mapping requires writable channel, though file is not changed
+		final MapMode mode = file.canWrite() ? MapMode.PRIVATE : MapMode.READ_ONLY;
+		try (FileChannel channel = mode == MapMode.PRIVATE
+				? FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer prefix = readFully(channel, 0, FIXED_HEADER_SIZE);
+			if (prefix.getInt(0) != MAGIC)
+				throw new IOException(file + " is not a network snapshot");
+			final int version = prefix.getInt(4);
+			if (version != VERSION)
+				throw new IOException(String.format("Unsupported snapshot version %d, expected %d", version, VERSION));
+			lossType = readOrdinal(LossType.values(), prefix.getInt(8));
+			final ActivationType activationType = readOrdinal(ActivationType.values(), prefix.getInt(12));
+			final double alpha = prefix.getDouble(16);
+			activationFunction = activationType == ActivationType.TABLE_SIGMOID
+					? new TableSigmoidActivationFunction(alpha) : new SigmoidActivationFunction(alpha);
+			learningRate = prefix.getDouble(24);
+			final int layersCount = prefix.getInt(32);
+			if (layersCount < 2 || layersCount > (channel.size() - FIXED_HEADER_SIZE) / Integer.BYTES)
+				throw new IOException("Invalid count of layers: " + layersCount);
+			final ByteBuffer sizes = readFully(channel, FIXED_HEADER_SIZE, layersCount * Integer.BYTES);
+			layerSizes = new int[layersCount];
+			for (int l = 0; l < layersCount; l++) {
+				layerSizes[l] = sizes.getInt(l * Integer.BYTES);
+				if (layerSizes[l] <= 0)
+					throw new IOException("Invalid size of layer " + l + ": " + layerSizes[l]);
+			}
+			long position = getWeightsOffset(layersCount);
+			if (channel.size() != position + getWeightsCount(layerSizes) * Double.BYTES)
+				throw new IOException(String.format("Size of %s is %d bytes, expected %d", file, channel.size(),
+						position + getWeightsCount(layerSizes) * Double.BYTES));
+			biases = new DoubleBuffer[layersCount - 1];
+			weights = new DoubleBuffer[layersCount - 1];
+			for (int l = 1; l < layersCount; l++) {
+				biases[l - 1] = map(channel, mode, position, layerSizes[l]);
+				position += (long) layerSizes[l] * Double.BYTES;
+				weights[l - 1] = map(channel, mode, position, (long) layerSizes[l] * layerSizes[l - 1]);
+				position += (long) layerSizes[l] * layerSizes[l - 1] * Double.BYTES;
+			}
+		}
+	}
+
+	/**
+	 * Maps file, no weights are read.
+	 */
+	public static NetworkSnapshot open(File file) throws IOException {
+		return new NetworkSnapshot(file);
+	}
+
+	/**
+	 * The same as {@link #load(File, Engine)} of
+	 * {@link Engine#DENSE_OFF_HEAP}: weights of network are mapped file, so
+	 * loading takes the same time for any size of network.
+	 */
+	public static NeuralNetwork load(File file) throws IOException {
+		return load(file, Engine.DENSE_OFF_HEAP);
+	}
+
+	/**
+	 * @param engine
+	 *            {@link Engine#DENSE_OFF_HEAP} uses mapped file, other engines
+	 *            copy weights
+	 * @throws UnsupportedOperationException
+	 *             if engine does not support loss of snapshot
+	 */
+	public static NeuralNetwork load(File file, Engine engine) throws IOException {
+		return open(file).createNetwork(engine);
+	}
+
+	private static <T> T readOrdinal(T[] values, int ordinal) throws IOException {
+		if (ordinal < 0 || ordinal >= values.length)
+			throw new IOException(String.format("Invalid %s: %d", values.getClass().getComponentType().getSimpleName(),
+					ordinal));
+		return values[ordinal];
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Snapshot is truncated");
+		}
+		return buffer;
+	}
+
+	private static DoubleBuffer map(FileChannel channel, MapMode mode, long position, long count) throws IOException {
+		if (count > MAX_BLOCK_DOUBLES)
+			throw new IOException(String.format("Block is too large to be mapped: %d doubles", count));
+		return channel.map(mode, position, count * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+				.asDoubleBuffer();
+	}
+
+	private static long getWeightsOffset(int layersCount) {
+		final long headerSize = FIXED_HEADER_SIZE + (long) layersCount * Integer.BYTES;
+		return (headerSize + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	private static long getWeightsCount(int[] layerSizes) {
+		long count = 0;
+		for (int l = 1; l < layerSizes.length; l++) {
+			count += (long) layerSizes[l] * (layerSizes[l - 1] + 1);
+		}
+		return count;
+	}
+
+	/**
+	 * Writes snapshot into temporary file near given one, which is synced to
+	 * disk and then replaces it, so network loaded from the old file is not
+	 * affected and crash does not leave partially written file.
+	 *
+	 * @param layerSizes
+	 *            sizes of all layers, including input and output ones
+	 */
+	public static void write(File file, double learningRate, ActivationFunction activationFunction, LossType lossType,
+			int[] layerSizes, LayerWeights layerWeights) throws IOException {
+		final ActivationType activationType = ActivationType.of(activationFunction);
+		final File directory = file.getAbsoluteFile().getParentFile();
+		final File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.putInt(MAGIC).putInt(VERSION).putInt(lossType.ordinal()).putInt(activationType.ordinal());
+				buffer.putDouble(((SigmoidActivationFunction) activationFunction).getAlpha()).putDouble(learningRate);
+				buffer.putInt(layerSizes.length);
+				for (int size : layerSizes) {
+					ensureRemaining(channel, buffer, Integer.BYTES);
+					buffer.putInt(size);
+				}
+				final long headerSize = FIXED_HEADER_SIZE + (long) layerSizes.length * Integer.BYTES;
+				ensureRemaining(channel, buffer, ALIGNMENT);
+				for (long i = headerSize; i < getWeightsOffset(layerSizes.length); i++) {
+					buffer.put((byte) 0);
+				}
+				for (int l = 1; l < layerSizes.length; l++) {
+					for (int i = 0; i < layerSizes[l]; i++) {
+						putDouble(channel, buffer, layerWeights.getBias(l, i));
+					}
+					for (int i = 0; i < layerSizes[l]; i++) {
+						for (int j = 0; j < layerSizes[l - 1]; j++) {
+							putDouble(channel, buffer, layerWeights.getWeight(l, i, j));
+						}
+					}
+				}
+				flush(channel, buffer);
+				channel.force(true);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary.toPath());
+		}
+	}
+
+	private static void putDouble(FileChannel channel, ByteBuffer buffer, double value) throws IOException {
+		ensureRemaining(channel, buffer, Double.BYTES);
+		buffer.putDouble(value);
+	}
+
+	private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		if (buffer.remaining() < bytes)
+			flush(channel, buffer);
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public LossType getLossType() {
+		return lossType;
+	}
+
+	/**
+	 * @return the same function on every call
+	 */
+	public SigmoidActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	/**
+	 * @return sizes of all layers, including input and output ones
+	 */
+	public int[] getLayerSizes() {
+		return layerSizes.clone();
+	}
+
+	/**
+	 * @param layer
+	 *            index of non-input layer, starting with 1
+	 * @return new view of mapped shift weights of layer neurons, indexed from
+	 *         0
+	 */
+	public DoubleBuffer getBiases(int layer) {
+		return biases[layer - 1].duplicate();
+	}
+
+	/**
+	 * @param layer
+	 *            index of non-input layer, starting with 1
+	 * @return new view of mapped input weights of layer neurons, weight of
+	 *         edge from input j to neuron i has index
+	 *         <code>i * inputsCount + j</code>
+	 */
+	public DoubleBuffer getWeights(int layer) {
+		return weights[layer - 1].duplicate();
+	}
+
+	/**
+	 * See {@link #load(File, Engine)}.
+	 */
+	public NeuralNetwork createNetwork(Engine engine) {
+		if (engine == Engine.DENSE_OFF_HEAP)
+			return lossType == LossType.LEAST_SQUARES ? new LeastSquaresDenseNeuralNetwork(this)
+					: new SoftmaxDenseNeuralNetwork(this);
+		final WeightInitializer weightInitializer = new SnapshotWeights();
+		if (engine != Engine.NEURONS)
+			return lossType == LossType.LEAST_SQUARES
+					? new LeastSquaresDenseNeuralNetwork(learningRate, activationFunction, getLayerSizes(),
+							weightInitializer, engine.getWeightStorage())
+					: new SoftmaxDenseNeuralNetwork(learningRate, activationFunction, getLayerSizes(),
+							weightInitializer, engine.getWeightStorage());
+		if (lossType != LossType.LEAST_SQUARES)
+			throw new UnsupportedOperationException(engine + " engine supports only least squares loss");
+		final Integer[] hiddenLayers = new Integer[layerSizes.length - 2];
+		for (int l = 0; l < hiddenLayers.length; l++) {
+			hiddenLayers[l] = layerSizes[l + 1];
+		}
+		return NeuralNetworkBuilder.createPreceptron(engine, weightInitializer, learningRate, activationFunction,
+				layerSizes[0], layerSizes[layerSizes.length - 1], hiddenLayers);
+	}
+
+	/**
+	 * Copies weights of snapshot instead of generating them, in one thread.
+	 */
+	private class SnapshotWeights extends WeightInitializer {
+		SnapshotWeights() {
+			// seed is not used
+			super(DEFAULT_SEED);
+		}
+
+		@Override
+		public void initializeLayer(int layer, int size, int inputsCount, Target target) {
+			final DoubleBuffer layerBiases = getBiases(layer);
+			final DoubleBuffer layerWeights = getWeights(layer);
+			final double[] row = new double[inputsCount + 1];
+			for (int i = 0; i < size; i++) {
+				row[0] = layerBiases.get(i);
+				layerWeights.get(row, 1, inputsCount);
+				target.setWeights(i, 0, row, 0, row.length);
+			}
+		}
+	}
+}
@@ -3,15 +3,48 @@ package info.adamovskiy.nn;
 import info.adamovskiy.nn.neuron.NeuralNode;
 import info.adamovskiy.nn.neuron.Neuron;
 
+import java.io.File;
+import java.io.IOException;
+
 public interface NeuralNetwork {
 	public void conclude(double[] inputValues);
 	
+	/**
+	 * Concludes every input vector, results of i-th one are written into
+	 * i-th results vector. Implementations may evaluate many vectors in one
+	 * sweep, so it is faster than {@link #conclude(double[])} and
+	 * {@link #getResult()} by row.
+	 * 
+	 * @param results
+	 *            vectors of outputs count length, one for every input vector
+	 */
+	public void concludeBatch(double[][] inputs, double[][] results);
+	
 	/**
 	 * 
 	 * @return average effect
 	 */
 	public double teach(double[] inputs, double[] etalon);
 	
+	/**
+	 * Calculates gradients of all examples with the same weights, then
+	 * changes every weight once by averaged gradient.
+	 * 
+	 * @param inputs
+	 *            input vectors of examples
+	 * @param etalons
+	 *            etalon vectors of the same examples
+	 * @return average effect of the weights change
+	 */
+	public double teachBatch(double[][] inputs, double[][] etalons);
+	
+	/**
+	 * @param example
+	 *            index of example in last {@link #teachBatch(double[][], double[][])} call
+	 * @return error of example before weights change
+	 */
+	public double getLastBatchError(int example);
+	
 	public double getError();
 	
 	public double getError(double[] inputValues, double[] etalonValues);
@@ -47,5 +80,53 @@ public interface NeuralNetwork {
 	
 	public long getWeightsCount();
 	
+	/**
+	 * Worker has its own values of neurons, but shares weights with this
+	 * network: weights changed by one of them are used by another. So
+	 * several threads can conclude and teach their own workers without
+	 * locking, weight changes are not synchronized (Hogwild). Worker has no
+	 * weight changed listener.
+	 * 
+	 * @return new worker
+	 * @throws UnsupportedOperationException
+	 *             if network of neurons has more than
+	 *             {@link Integer#MAX_VALUE} weights
+	 */
+	public NeuralNetwork createWorker();
+	
+	/**
+	 * @return new session, which shares weights with this network, see
+	 *         {@link InferenceSession}
+	 */
+	public InferenceSession createInferenceSession();
+	
 	public double[] getResult();
+	
+	/**
+	 * The same as {@link #getResult()}, but writes outputs into given vector
+	 * instead of allocating new one.
+	 * 
+	 * @param results
+	 *            vector of outputs count length
+	 */
+	public void getResult(double[] results);
+	
+	/**
+	 * Writes parameters and weights into binary snapshot, see
+	 * {@link NetworkSnapshot}. File is replaced at once, when it is written.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if network is not layered perceptron or its loss or
+	 *             activation function can not be saved
+	 */
+	public void save(File file) throws IOException;
+	
+	/**
+	 * Copies parameters and weights, so they can be saved by another thread
+	 * while this network is taught, see {@link NetworkSnapshot.Capture#save(File)}.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if network can not be saved, see {@link #save(File)}
+	 */
+	public NetworkSnapshot.Capture capture();
 }
@@ -1,12 +1,20 @@
 package info.adamovskiy.nn;
 
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.activation.TableSigmoidActivationFunction;
+import info.adamovskiy.nn.dense.DenseNeuralNetwork;
+import info.adamovskiy.nn.dense.LeastSquaresDenseNeuralNetwork;
+import info.adamovskiy.nn.dense.WeightStorage;
+import info.adamovskiy.nn.neuron.ActivationNeuronBuilder;
 import info.adamovskiy.nn.neuron.NeuralNode;
 import info.adamovskiy.nn.neuron.Neuron;
 import info.adamovskiy.nn.neuron.InputNeuron;
 import info.adamovskiy.nn.neuron.OutputNeuron;
 import info.adamovskiy.nn.neuron.SigmoidNeuronBuilder;
 
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
 
 public class NeuralNetworkBuilder {
 	public static class LayeredNeuronLabel {
@@ -24,12 +32,75 @@ public class NeuralNetworkBuilder {
 		}
 	}
 	
-	private static final Random rnd = new Random(1);
+	public enum Engine {
+		/**
+		 * Graph of {@link Neuron} objects, see {@link SimpleNeuralNetwork}.
+		 * Every neuron can be accessed and changed separately.
+		 */
+		NEURONS(null),
+		/**
+		 * Layers compiled into contiguous arrays, see
+		 * {@link DenseNeuralNetwork}. Much faster, but topology is fixed.
+		 */
+		DENSE(WeightStorage.HEAP),
+		/**
+		 * Same as {@link #DENSE}, but weights are placed outside of java heap
+		 * (see {@link WeightStorage#OFF_HEAP}), so large networks do not
+		 * load garbage collector.
+		 */
+		DENSE_OFF_HEAP(WeightStorage.OFF_HEAP),
+		/**
+		 * Same as {@link #DENSE}, but in single precision (see
+		 * {@link WeightStorage#FLOAT}).
+		 */
+		DENSE_FLOAT(WeightStorage.FLOAT);
+		
+		private final WeightStorage weightStorage;
+		
+		private Engine(WeightStorage weightStorage) {
+			this.weightStorage = weightStorage;
+		}
+		
+		/**
+		 * @return null for {@link #NEURONS}
+		 */
+		public WeightStorage getWeightStorage() {
+			return weightStorage;
+		}
+	}
 	
 	public static NeuralNetwork createSigmoidPreceptron(double learningRate, double sigmoidAlpha, int inputs, int outputs, Integer... hiddenLayers) {
+		return createSigmoidPreceptron(Engine.NEURONS, learningRate, sigmoidAlpha, inputs, outputs, hiddenLayers);
+	}
+	
+	public static NeuralNetwork createSigmoidPreceptron(Engine engine, double learningRate, double sigmoidAlpha, int inputs, int outputs, Integer... hiddenLayers) {
+		return createPreceptron(engine, learningRate, new SigmoidActivationFunction(sigmoidAlpha), inputs, outputs,
+				hiddenLayers);
+	}
+	
+	/**
+	 * @param activationFunction
+	 *            function of all hidden and output neurons, e.g.
+	 *            {@link TableSigmoidActivationFunction}
+	 */
+	public static NeuralNetwork createPreceptron(Engine engine, double learningRate, ActivationFunction activationFunction,
+			int inputs, int outputs, Integer... hiddenLayers) {
+		return createPreceptron(engine, new WeightInitializer(WeightInitializer.DEFAULT_SEED), learningRate,
+				activationFunction, inputs, outputs, hiddenLayers);
+	}
+	
+	/**
+	 * @param weightInitializer
+	 *            seed and pool of initial weights generation, networks of the
+	 *            same seed and shape are equal
+	 * @param activationFunction
+	 *            function of all hidden and output neurons
+	 */
+	public static NeuralNetwork createPreceptron(Engine engine, WeightInitializer weightInitializer, double learningRate,
+			ActivationFunction activationFunction, int inputs, int outputs, Integer... hiddenLayers) {
 		assert(hiddenLayers.length >= 0);
-		NeuralNetworkBuilder builder = new NeuralNetworkBuilder();
-		builder.setNeuronBuilder(new SigmoidNeuronBuilder(sigmoidAlpha));
+		NeuralNetworkBuilder builder = new NeuralNetworkBuilder(engine, weightInitializer);
+		builder.setActivationFunction(activationFunction);
 		builder.addInputLayer(inputs);
 		for (int i = 0; i < hiddenLayers.length; ++i) {
 			builder.addHiddenLayer(hiddenLayers[i]);
@@ -39,20 +110,37 @@ public class NeuralNetworkBuilder {
 		return builder.build();
 	}
 
+	private final Engine engine;
+	private final WeightInitializer weightInitializer;
+	private final List<Integer> layerSizes = new ArrayList<>();
+	private boolean outputLayerAdded;
 	private InputNeuron[] inputs;
 	private OutputNeuron[] outputs;
 	private Neuron[] lastBuiltLayer;
 	private int layersCounter;
 	private InputNeuron shiftNeuron;
 	private NeuronBuilder neuronBuilder;
+	private ActivationFunction activationFunction;
 	private double learningRate;
 	
-	private NeuralNetworkBuilder() {
+	private NeuralNetworkBuilder(Engine engine, WeightInitializer weightInitializer) {
+		this.engine = engine;
+		this.weightInitializer = weightInitializer;
 	}
 	
 	private void setLearningRate(double learningRate) {
 		this.learningRate = learningRate;
 	}
+	
+	private void setActivationFunction(ActivationFunction activationFunction) {
+		this.activationFunction = activationFunction;
+		if (engine != Engine.NEURONS)
+			return;
+		if (activationFunction instanceof SigmoidActivationFunction)
+			setNeuronBuilder(new SigmoidNeuronBuilder((SigmoidActivationFunction) activationFunction));
+		else
+			setNeuronBuilder(new ActivationNeuronBuilder(activationFunction));
+	}
 
 	private void setNeuronBuilder(NeuronBuilder neuronBuilder) {
 		this.neuronBuilder = neuronBuilder;
@@ -60,8 +148,12 @@ public class NeuralNetworkBuilder {
 	}
 	
 	private void addOutputLayer(int outputsCount) {
-		if (inputs == null)
+		if (layerSizes.isEmpty())
 			throw new IllegalStateException("Input layer must be set first");
+		layerSizes.add(outputsCount);
+		outputLayerAdded = true;
+		if (engine != Engine.NEURONS)
+			return;
 		
 		OutputNeuron[] currentLayer = new OutputNeuron[outputsCount];
 		NeuralNode[] previousLayer = lastBuiltLayer == null ? inputs : lastBuiltLayer;
@@ -69,36 +161,58 @@ public class NeuralNetworkBuilder {
 		layersCounter++;
 		for (int i = 0; i < outputsCount; i++) {
 			currentLayer[i] = neuronBuilder.buildOutput(new LayeredNeuronLabel(layersCounter, i));
-			currentLayer[i].addInput(shiftNeuron, rnd.nextDouble() * 2 - 1);
-			for (int j = 0; j < previousLayer.length; j++) {
-				currentLayer[i].addInput(previousLayer[j], rnd.nextDouble() * 2 - 1);
-			}
 		}
+		connectLayer(currentLayer, previousLayer);
 		outputs = currentLayer;
 	}
 
 	private void addHiddenLayer(int hiddenNeuronsCount) {
-		if (inputs == null)
+		if (layerSizes.isEmpty())
 			throw new IllegalStateException("Input layer must be set first");
-		if (outputs != null)
+		if (outputLayerAdded)
 			throw new IllegalStateException("Hidden layer can not be added after output layer");
+		layerSizes.add(hiddenNeuronsCount);
+		if (engine != Engine.NEURONS)
+			return;
 		
 		Neuron[] currentLayer = new Neuron[hiddenNeuronsCount];
 		NeuralNode[] previousLayer = (lastBuiltLayer == null ? inputs : lastBuiltLayer);
 		layersCounter++;
 		for (int i = 0; i < hiddenNeuronsCount; i++) {
 			currentLayer[i] = neuronBuilder.buildHiddenNeuron(new LayeredNeuronLabel(layersCounter, i));
-			currentLayer[i].addInput(shiftNeuron, rnd.nextDouble() * 2 - 1);
-			for (int j = 0; j < previousLayer.length; j++) {
-				currentLayer[i].addInput(previousLayer[j], rnd.nextDouble() * 2 - 1);
-			}
 		}
+		connectLayer(currentLayer, previousLayer);
 		lastBuiltLayer = currentLayer;
 	}
 	
+	/**
+	 * Weights are generated in parallel, then neurons are connected to shift
+	 * neuron and previous layer in one thread, because outputs of previous
+	 * layer neurons are changed.
+	 */
+	private void connectLayer(Neuron[] layer, NeuralNode[] previousLayer) {
+		final NeuralNode[] layerInputs = new NeuralNode[previousLayer.length + 1];
+		layerInputs[0] = shiftNeuron;
+		System.arraycopy(previousLayer, 0, layerInputs, 1, previousLayer.length);
+		final double[][] layerWeights = new double[layer.length][layerInputs.length];
+		weightInitializer.initializeLayer(layersCounter, layer.length, previousLayer.length, new WeightInitializer.Target() {
+			@Override
+			public void setWeights(int neuron, int first, double[] values, int offset, int count) {
+				System.arraycopy(values, offset, layerWeights[neuron], first, count);
+			}
+		});
+		for (int i = 0; i < layer.length; i++) {
+			layer[i].addInputs(layerInputs, layerWeights[i]);
+			layerWeights[i] = null;
+		}
+	}
+	
 	private void addInputLayer(int inputsCount) {
-		if (inputs != null || lastBuiltLayer != null || outputs != null)
+		if (!layerSizes.isEmpty())
 			throw new IllegalStateException("Input layer already set");
+		layerSizes.add(inputsCount);
+		if (engine != Engine.NEURONS)
+			return;
 		inputs = new InputNeuron[inputsCount];
 		for (int i = 0; i < inputsCount; i++) {
 			inputs[i] = neuronBuilder.buildInput(new LayeredNeuronLabel(0, i));
@@ -106,6 +220,16 @@ public class NeuralNetworkBuilder {
 	}
 	
 	private NeuralNetwork build() {
+		if (!outputLayerAdded)
+			throw new IllegalStateException("Output layer must be set");
+		if (engine != Engine.NEURONS) {
+			final int[] sizes = new int[layerSizes.size()];
+			for (int i = 0; i < sizes.length; i++) {
+				sizes[i] = layerSizes.get(i);
+			}
+			return new LeastSquaresDenseNeuralNetwork(learningRate, activationFunction, sizes, weightInitializer,
+					engine.getWeightStorage());
+		}
 		final InputNeuron shiftNeuronAsArray[] = {shiftNeuron};
 		return new LeastSquaresNeuralNetwork(learningRate, inputs, shiftNeuronAsArray , outputs);
 	}
@@ -1,23 +1,42 @@
 package info.adamovskiy.nn;
 
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.neuron.ActivationNeuronBuilder.ActivationHiddenNeuron;
+import info.adamovskiy.nn.neuron.ActivationNeuronBuilder.ActivationOutputNeuron;
+import info.adamovskiy.nn.neuron.CacheGeneration;
 import info.adamovskiy.nn.neuron.NeuralNode;
-import info.adamovskiy.nn.neuron.NeuralNode.NeuronIterator;
 import info.adamovskiy.nn.neuron.Neuron;
 import info.adamovskiy.nn.neuron.InputNeuron;
 import info.adamovskiy.nn.neuron.OutputNeuron;
 import info.adamovskiy.nn.utils.NeuralNetworkUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 public abstract class SimpleNeuralNetwork implements NeuralNetwork {
+	private static final int INITIAL_STACK_CAPACITY = 16;
+	
 	private final InputNeuron[] inputs;
 	private final InputNeuron[] constantInputs;
 	private final OutputNeuron[] outputs;
 	private final double learningRate;
 	private final long weightsCount;
+	/**
+	 * All neurons reachable from outputs, every neuron is placed after all its inputs.
+	 */
+	private final Neuron[] topologicalOrder;
+	private final CacheGeneration cacheGeneration = new CacheGeneration();
+	private int nodesCount;
 	
 	private double lastAverageEffect;
+	private double[] lastBatchErrors = new double[0];
+	private int lastBatchSize;
 	private WeightChangedListener weightChangedListener;
 	
 	public SimpleNeuralNetwork(double learningRate, InputNeuron[] inputs, InputNeuron[] constantInputs, OutputNeuron[] outputs) {
@@ -25,7 +44,17 @@ public abstract class SimpleNeuralNetwork implements NeuralNetwork {
 		this.inputs = inputs;
 		this.constantInputs = constantInputs;
 		this.outputs = outputs;
+		topologicalOrder = assignIdsAndCalculateTopologicalOrder();
 		weightsCount = calculateWeightsCount();
+		for (InputNeuron input : inputs) {
+			input.setCacheGeneration(cacheGeneration);
+		}
+		for (InputNeuron input : constantInputs) {
+			input.setCacheGeneration(cacheGeneration);
+		}
+		for (Neuron neuron : topologicalOrder) {
+			neuron.setCacheGeneration(cacheGeneration);
+		}
 		boolean assertionEnabled = false;
 		assert assertionEnabled = true;
 		if (assertionEnabled) { // assert with named exceptions
@@ -34,39 +63,66 @@ public abstract class SimpleNeuralNetwork implements NeuralNetwork {
 	}
 	
 	private long calculateWeightsCount() {
-		long[] weightCounter = {0};
-		traverseNetwork(new TraversalListener() {
-			@Override
-			public boolean onEdgeTraversal(double weight, NeuralNode input, NeuralNode output) {
-				weightCounter[0]++;
-				return true;
+		long weightCounter = 0;
+		for (Neuron neuron : topologicalOrder) {
+			weightCounter += neuron.getInputsCount();
+		}
+		return weightCounter;
+	}
+	
+	/**
+	 * Depth-first post-order traversal with explicit stack, so depth of
+	 * network is not limited by thread stack size. Every node reachable from
+	 * outputs gets id - its index in order of discovery.
+	 */
+	private Neuron[] assignIdsAndCalculateTopologicalOrder() {
+		final List<Neuron> order = new ArrayList<>();
+		final List<NeuralNode> nodes = new ArrayList<>();
+		Neuron[] stack = new Neuron[INITIAL_STACK_CAPACITY];
+		int[] cursors = new int[INITIAL_STACK_CAPACITY];
+		for (OutputNeuron output : outputs) {
+			if (!assignId(output, nodes))
+				continue;
+			stack[0] = output;
+			cursors[0] = 0;
+			int depth = 1;
+			while (depth > 0) {
+				final Neuron neuron = stack[depth - 1];
+				final int cursor = cursors[depth - 1]++;
+				if (cursor == neuron.getInputsCount()) {
+					order.add(neuron);
+					depth--;
+					continue;
+				}
+				final NeuralNode input = neuron.getInput(cursor);
+				if (assignId(input, nodes) && input instanceof Neuron) {
+					if (depth == stack.length) {
+						stack = Arrays.copyOf(stack, depth * 2);
+						cursors = Arrays.copyOf(cursors, depth * 2);
+					}
+					stack[depth] = (Neuron) input;
+					cursors[depth] = 0;
+					depth++;
+				}
 			}
-		});
-		return weightCounter[0];
+		}
+		nodesCount = nodes.size();
+		return order.toArray(new Neuron[order.size()]);
 	}
 	
 	/**
-	 * @param neuron
-	 * @param listener
-	 * @return true if traversal should be stopped
+	 * @return false if node already has id of this network
 	 */
-	private boolean traverseInputs(NeuralNode neuron, TraversalListener listener, Set<NeuralNode> traversedNeurons) {
-		if (traversedNeurons.contains(neuron))
-			return false;
-		traversedNeurons.add(neuron);
-		NeuronIterator it = neuron.getInputIterator();
-		if (!it.moveToFirst())
-			return false;
-		do {
-			double weight = it.getWeight();
-			final NeuralNode input = it.getNeuron();
-			if (!listener.onEdgeTraversal(weight, input, neuron))
-				return true;
-			if (traverseInputs(input, listener, traversedNeurons))
-				return true;
-		}
-		while (it.stepNext());
-		return false;
+	private static boolean assignId(NeuralNode node, List<NeuralNode> nodes) {
+		final int id = node.getId();
+		if (id != NeuralNode.NO_ID) {
+			if (id < nodes.size() && nodes.get(id) == node)
+				return false;
+			throw new IllegalArgumentException("Node " + node.getLabel() + " already belongs to another network");
+		}
+		node.setId(nodes.size());
+		nodes.add(node);
+		return true;
 	}
 	
 	private void checkTopologyValidity() {
@@ -113,13 +169,36 @@ public abstract class SimpleNeuralNetwork implements NeuralNetwork {
 		}
 	}
 	
+	/**
+	 * Neurons are evaluated row by row, results are copied without
+	 * allocation.
+	 */
+	@Override
+	public void concludeBatch(double[][] inputs, double[][] results) {
+		NeuralNetworkUtils.checkConcludeBatchParameters(inputs, results);
+		for (int r = 0; r < inputs.length; r++) {
+			NeuralNetworkUtils.checkVectorParameterSize(results[r], outputs.length);
+			erase();
+			conclude(inputs[r]);
+			for (int i = 0; i < outputs.length; i++) {
+				results[r][i] = outputs[i].getOutputValue();
+			}
+		}
+	}
+	
 	@Override
 	public double[] getResult() {
 		double[] results = new double[outputs.length];
+		getResult(results);
+		return results;
+	}
+	
+	@Override
+	public void getResult(double[] results) {
+		NeuralNetworkUtils.checkVectorParameterSize(results, outputs.length);
 		for (int i = 0; i < outputs.length; i++) {
 			results[i] = outputs[i].getOutputValue();
 		}
-		return results;
 	}
 	
 	@Override
@@ -139,8 +218,17 @@ public abstract class SimpleNeuralNetwork implements NeuralNetwork {
 		for (int i = 0; i < outputs.length; i++) {
 			outputs[i].setEtalonValue(etalonValues[i]);
 		}
-		for (int i = 0; i < outputs.length; i++) {
-			effectSum += outputs[i].backpropagation(this, weightChangedListener);
+		// forward sweep: every neuron finds values of its inputs already calculated
+		for (Neuron neuron : topologicalOrder) {
+			neuron.getOutputValue();
+		}
+		// reverse sweep: every neuron finds error derivatives of its outputs already calculated
+		for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+			topologicalOrder[i].getErrorDerivativeBySum(this);
+		}
+		// weights are changed only after all error derivatives are calculated with old weights
+		for (Neuron neuron : topologicalOrder) {
+			effectSum += neuron.backpropagation(this, weightChangedListener);
 		}
 		if (weightChangedListener != null)
 			weightChangedListener.onIterationFinished();
@@ -148,6 +236,52 @@ public abstract class SimpleNeuralNetwork implements NeuralNetwork {
 		return lastAverageEffect;
 	}
 	
+	@Override
+	public double teachBatch(double[][] inputValues, double[][] etalonValues) {
+		NeuralNetworkUtils.checkBatchParameters(inputValues, etalonValues);
+		if (lastBatchErrors.length < inputValues.length)
+			lastBatchErrors = new double[inputValues.length];
+		for (int b = 0; b < inputValues.length; b++) {
+			NeuralNetworkUtils.checkVectorParameterSize(etalonValues[b], outputs.length);
+			NeuralNetworkUtils.checkVectorParameterSize(inputValues[b], inputs.length);
+			// every example has its own values of all neurons
+			cacheGeneration.advance();
+			for (int i = 0; i < inputs.length; i++) {
+				inputs[i].setInputValue(inputValues[b][i]);
+			}
+			for (int i = 0; i < outputs.length; i++) {
+				outputs[i].setEtalonValue(etalonValues[b][i]);
+			}
+			for (Neuron neuron : topologicalOrder) {
+				neuron.getOutputValue();
+			}
+			lastBatchErrors[b] = error();
+			for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+				topologicalOrder[i].getErrorDerivativeBySum(this);
+			}
+			for (Neuron neuron : topologicalOrder) {
+				neuron.accumulateGradient(this);
+			}
+		}
+		final double scale = 1d / inputValues.length;
+		double effectSum = 0;
+		for (Neuron neuron : topologicalOrder) {
+			effectSum += neuron.applyAccumulatedGradient(this, scale, weightChangedListener);
+		}
+		if (weightChangedListener != null)
+			weightChangedListener.onIterationFinished();
+		lastBatchSize = inputValues.length;
+		lastAverageEffect = effectSum / weightsCount;
+		return lastAverageEffect;
+	}
+	
+	@Override
+	public double getLastBatchError(int example) {
+		if (example >= lastBatchSize)
+			throw new IndexOutOfBoundsException("Example: " + example + ", last batch size: " + lastBatchSize);
+		return lastBatchErrors[example];
+	}
+	
 	public double getLastAverageEffect() {
 		return lastAverageEffect;
 	}
@@ -170,17 +304,48 @@ public abstract class SimpleNeuralNetwork implements NeuralNetwork {
 	
 	@Override
 	public void erase() {
-		for (InputNeuron input : inputs) {
-			input.erase();
-		}
+		cacheGeneration.advance();
 	}
 	
+	/**
+	 * Depth first from outputs, with explicit stack and visited nodes marked
+	 * by id.
+	 */
 	@Override
 	public void traverseNetwork(TraversalListener listener) {
-		Set<NeuralNode> traversedNeurons = new LinkedHashSet<>();
+		final BitSet traversedNeurons = new BitSet(nodesCount);
+		Neuron[] stack = new Neuron[INITIAL_STACK_CAPACITY];
+		int[] cursors = new int[INITIAL_STACK_CAPACITY];
 		for (Neuron output : outputs) {
-			if (traverseInputs(output, listener, traversedNeurons))
-				return;
+			if (traversedNeurons.get(output.getId()))
+				continue;
+			traversedNeurons.set(output.getId());
+			stack[0] = output;
+			cursors[0] = 0;
+			int depth = 1;
+			while (depth > 0) {
+				final Neuron neuron = stack[depth - 1];
+				final int cursor = cursors[depth - 1]++;
+				if (cursor == neuron.getInputsCount()) {
+					depth--;
+					continue;
+				}
+				final NeuralNode input = neuron.getInput(cursor);
+				if (!listener.onEdgeTraversal(neuron.getInputWeight(cursor), input, neuron))
+					return;
+				if (traversedNeurons.get(input.getId()))
+					continue;
+				traversedNeurons.set(input.getId());
+				if (input instanceof Neuron) {
+					if (depth == stack.length) {
+						stack = Arrays.copyOf(stack, depth * 2);
+						cursors = Arrays.copyOf(cursors, depth * 2);
+					}
+					stack[depth] = (Neuron) input;
+					cursors[depth] = 0;
+					depth++;
+				}
+			}
 		}
 	}
 	
@@ -193,4 +358,396 @@ public abstract class SimpleNeuralNetwork implements NeuralNetwork {
 	public long getWeightsCount() {
 		return weightsCount;
 	}
+	
+	/**
+	 * Session keeps values of nodes in array by node id and calculates them
+	 * in topological order, neurons are only read.
+	 */
+	private class Session implements InferenceSession {
+		private final double[] values = new double[nodesCount];
+		
+		@Override
+		public int getInputsCount() {
+			return inputs.length;
+		}
+		
+		@Override
+		public int getOutputsCount() {
+			return outputs.length;
+		}
+		
+		@Override
+		public void conclude(double[] inputValues, double[] results) {
+			NeuralNetworkUtils.checkVectorParameterSize(inputValues, inputs.length);
+			NeuralNetworkUtils.checkVectorParameterSize(results, outputs.length);
+			for (int i = 0; i < inputs.length; i++) {
+				values[inputs[i].getId()] = inputValues[i];
+			}
+			for (InputNeuron constantInput : constantInputs) {
+				values[constantInput.getId()] = constantInput.getOutputValue();
+			}
+			for (Neuron neuron : topologicalOrder) {
+				double sum = 0;
+				for (int i = 0; i < neuron.getInputsCount(); i++) {
+					sum += values[neuron.getInput(i).getId()] * neuron.getInputWeight(i);
+				}
+				values[neuron.getId()] = neuron.activation(sum);
+			}
+			for (int i = 0; i < outputs.length; i++) {
+				results[i] = values[outputs[i].getId()];
+			}
+		}
+		
+		@Override
+		public void concludeBatch(double[][] inputs, double[][] results) {
+			NeuralNetworkUtils.checkConcludeBatchParameters(inputs, results);
+			for (int r = 0; r < inputs.length; r++) {
+				conclude(inputs[r], results[r]);
+			}
+		}
+	}
+	
+	@Override
+	public InferenceSession createInferenceSession() {
+		return new Session();
+	}
+	
+	/**
+	 * Copies weights of network, if it is layered perceptron like ones of
+	 * {@link NeuralNetworkBuilder}: the single constant input is shift neuron
+	 * of value 1, every neuron of layer has shift neuron as the first input,
+	 * then all neurons of previous layer in the same order, and all neurons
+	 * have the same activation function.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if network is not such perceptron
+	 */
+	protected NetworkSnapshot.Capture captureLayered(NetworkSnapshot.LossType lossType) {
+		if (constantInputs.length != 1 || constantInputs[0].getOutputValue() != 1)
+			throw new UnsupportedOperationException("Network must have single shift neuron of value 1");
+		final List<NeuralNode[]> layers = new ArrayList<>();
+		final ActivationFunction activationFunction = getActivationFunction(outputs[0]);
+		NeuralNode[] layer = outputs;
+		while (layer != inputs) {
+			layers.add(0, layer);
+			final Neuron first = (Neuron) layer[0];
+			if (first.getInputsCount() < 2)
+				throw new UnsupportedOperationException("Neuron " + first.getLabel() + " has no inputs but shift");
+			NeuralNode[] previousLayer = new NeuralNode[first.getInputsCount() - 1];
+			for (int j = 0; j < previousLayer.length; j++) {
+				previousLayer[j] = first.getInput(j + 1);
+			}
+			for (NeuralNode node : layer) {
+				final Neuron neuron = (Neuron) node;
+				if (getActivationFunction(neuron) != activationFunction)
+					throw new UnsupportedOperationException("Neurons have different activation functions");
+				if (neuron.getInputsCount() != previousLayer.length + 1 || neuron.getInput(0) != constantInputs[0])
+					throw new UnsupportedOperationException("Neuron " + neuron.getLabel() + " is not fully connected");
+				for (int j = 0; j < previousLayer.length; j++) {
+					if (neuron.getInput(j + 1) != previousLayer[j])
+						throw new UnsupportedOperationException("Neuron " + neuron.getLabel() + " is not fully connected");
+				}
+			}
+			if (Arrays.equals(previousLayer, inputs)) {
+				previousLayer = inputs;
+			} else {
+				for (NeuralNode node : previousLayer) {
+					if (!(node instanceof Neuron))
+						throw new UnsupportedOperationException("Node " + node.getLabel() + " is not in input layer");
+				}
+			}
+			layer = previousLayer;
+		}
+		layers.add(0, inputs);
+		final int[] layerSizes = new int[layers.size()];
+		for (int l = 0; l < layerSizes.length; l++) {
+			layerSizes[l] = layers.get(l).length;
+		}
+		final double[][] biases = new double[layerSizes.length - 1][];
+		final double[][] weights = new double[layerSizes.length - 1][];
+		for (int l = 1; l < layerSizes.length; l++) {
+			biases[l - 1] = new double[layerSizes[l]];
+			weights[l - 1] = new double[layerSizes[l] * layerSizes[l - 1]];
+			for (int i = 0; i < layerSizes[l]; i++) {
+				final Neuron neuron = (Neuron) layers.get(l)[i];
+				biases[l - 1][i] = neuron.getInputWeight(0);
+				for (int j = 0; j < layerSizes[l - 1]; j++) {
+					weights[l - 1][i * layerSizes[l - 1] + j] = neuron.getInputWeight(j + 1);
+				}
+			}
+		}
+		return new NetworkSnapshot.Capture(learningRate, activationFunction, lossType, layerSizes, biases, weights);
+	}
+	
+	private static ActivationFunction getActivationFunction(Neuron neuron) {
+		if (neuron instanceof ActivationHiddenNeuron)
+			return ((ActivationHiddenNeuron) neuron).getActivationFunction();
+		if (neuron instanceof ActivationOutputNeuron)
+			return ((ActivationOutputNeuron) neuron).getActivationFunction();
+		throw new UnsupportedOperationException("Activation function of neuron " + neuron.getLabel() + " is unknown");
+	}
+	
+	/**
+	 * @return error of given output values, like {@link #error()}, which
+	 *         reads them from neurons
+	 */
+	protected abstract double error(double[] outputValues, double[] etalonValues);
+	
+	/**
+	 * Worker keeps values of nodes, sums and error derivatives in arrays by
+	 * node id, like {@link Session}, and changes weights of shared neurons
+	 * without locking. Error derivative of every neuron is added to its
+	 * inputs before its weights are changed, so output edges are not
+	 * iterated, and hidden derivatives are summed in other order than by
+	 * neurons.
+	 */
+	private class Worker implements NeuralNetwork {
+		private final double[] values = new double[nodesCount];
+		private final double[] sums = new double[nodesCount];
+		// error derivatives by sum, accumulated from outputs during reverse sweep
+		private final double[] errorDerivatives = new double[nodesCount];
+		// index of output by node id, -1 for other nodes
+		private final int[] outputIndexes = new int[nodesCount];
+		private final double[] outputValues = new double[outputs.length];
+		private final double[] etalonValues = new double[outputs.length];
+		// accumulated gradients of batch, neuron by neuron in topological order
+		private double[] gradients;
+		private boolean inputValuesSet;
+		private boolean etalonValuesSet;
+		private double lastAverageEffect;
+		private double[] lastBatchErrors = new double[0];
+		private int lastBatchSize;
+		
+		Worker() {
+			Arrays.fill(outputIndexes, -1);
+			for (int i = 0; i < outputs.length; i++) {
+				outputIndexes[outputs[i].getId()] = i;
+			}
+		}
+		
+		private void forward(double[] inputValues) {
+			NeuralNetworkUtils.checkVectorParameterSize(inputValues, inputs.length);
+			for (int i = 0; i < inputs.length; i++) {
+				values[inputs[i].getId()] = inputValues[i];
+			}
+			for (InputNeuron constantInput : constantInputs) {
+				values[constantInput.getId()] = constantInput.getOutputValue();
+			}
+			for (Neuron neuron : topologicalOrder) {
+				double sum = 0;
+				for (int i = 0; i < neuron.getInputsCount(); i++) {
+					sum += values[neuron.getInput(i).getId()] * neuron.getInputWeight(i);
+				}
+				sums[neuron.getId()] = sum;
+				values[neuron.getId()] = neuron.activation(sum);
+			}
+			for (int i = 0; i < outputs.length; i++) {
+				outputValues[i] = values[outputs[i].getId()];
+			}
+			inputValuesSet = true;
+		}
+		
+		private void setEtalonValues(double[] etalonValues) {
+			NeuralNetworkUtils.checkVectorParameterSize(etalonValues, outputs.length);
+			System.arraycopy(etalonValues, 0, this.etalonValues, 0, outputs.length);
+			etalonValuesSet = true;
+		}
+		
+		/**
+		 * Reverse sweep: changes weights at once, if gradients are not
+		 * accumulated, weights of every neuron are used before they are
+		 * changed.
+		 * 
+		 * @return effect
+		 */
+		private double backward(boolean accumulate) {
+			Arrays.fill(errorDerivatives, 0);
+			double effectSum = 0;
+			for (int t = topologicalOrder.length - 1, offset = (int) weightsCount; t >= 0; t--) {
+				final Neuron neuron = topologicalOrder[t];
+				final int id = neuron.getId();
+				final int output = outputIndexes[id];
+				final double derivative = (output == -1 ? errorDerivatives[id]
+						: errorDerivative(values[id], etalonValues[output]))
+						* neuron.activationDerivative(sums[id], values[id]);
+				offset -= neuron.getInputsCount();
+				for (int i = 0; i < neuron.getInputsCount(); i++) {
+					final int inputId = neuron.getInput(i).getId();
+					final double weight = neuron.getInputWeight(i);
+					errorDerivatives[inputId] += weight * derivative;
+					if (accumulate) {
+						gradients[offset + i] += values[inputId] * derivative;
+					} else {
+						final double newWeight = weight - learningRate * values[inputId] * derivative;
+						effectSum += Math.abs(weight - newWeight);
+						neuron.setInputWeight(i, newWeight);
+					}
+				}
+			}
+			return effectSum;
+		}
+		
+		@Override
+		public void conclude(double[] inputValues) {
+			forward(inputValues);
+		}
+		
+		@Override
+		public void concludeBatch(double[][] inputs, double[][] results) {
+			NeuralNetworkUtils.checkConcludeBatchParameters(inputs, results);
+			for (int r = 0; r < inputs.length; r++) {
+				forward(inputs[r]);
+				getResult(results[r]);
+			}
+		}
+		
+		@Override
+		public double teach(double[] inputValues, double[] etalonValues) {
+			setEtalonValues(etalonValues);
+			forward(inputValues);
+			lastAverageEffect = backward(false) / weightsCount;
+			return lastAverageEffect;
+		}
+		
+		@Override
+		public double teachBatch(double[][] inputValues, double[][] etalonValues) {
+			NeuralNetworkUtils.checkBatchParameters(inputValues, etalonValues);
+			if (gradients == null)
+				gradients = new double[(int) weightsCount];
+			if (lastBatchErrors.length < inputValues.length)
+				lastBatchErrors = new double[inputValues.length];
+			for (int b = 0; b < inputValues.length; b++) {
+				setEtalonValues(etalonValues[b]);
+				forward(inputValues[b]);
+				lastBatchErrors[b] = error();
+				backward(true);
+			}
+			final double rate = learningRate * (1d / inputValues.length);
+			double effectSum = 0;
+			int offset = 0;
+			for (Neuron neuron : topologicalOrder) {
+				for (int i = 0; i < neuron.getInputsCount(); i++) {
+					final double weight = neuron.getInputWeight(i);
+					final double newWeight = weight - rate * gradients[offset + i];
+					effectSum += Math.abs(weight - newWeight);
+					neuron.setInputWeight(i, newWeight);
+					gradients[offset + i] = 0;
+				}
+				offset += neuron.getInputsCount();
+			}
+			lastBatchSize = inputValues.length;
+			lastAverageEffect = effectSum / weightsCount;
+			return lastAverageEffect;
+		}
+		
+		@Override
+		public double getLastBatchError(int example) {
+			if (example >= lastBatchSize)
+				throw new IndexOutOfBoundsException("Example: " + example + ", last batch size: " + lastBatchSize);
+			return lastBatchErrors[example];
+		}
+		
+		@Override
+		public double getError() {
+			return error();
+		}
+		
+		@Override
+		public double getError(double[] inputValues, double[] etalonValues) {
+			setEtalonValues(etalonValues);
+			forward(inputValues);
+			return error();
+		}
+		
+		@Override
+		public double getLastAverageEffect() {
+			return lastAverageEffect;
+		}
+		
+		@Override
+		public double error() {
+			if (!inputValuesSet)
+				throw new IllegalStateException("input value was not set");
+			if (!etalonValuesSet)
+				throw new IllegalStateException("Etalon value was not set");
+			return SimpleNeuralNetwork.this.error(outputValues, etalonValues);
+		}
+		
+		@Override
+		public double errorDerivative(double outputValue, double etalonValue) {
+			return SimpleNeuralNetwork.this.errorDerivative(outputValue, etalonValue);
+		}
+		
+		@Override
+		public double getLearningRate() {
+			return learningRate;
+		}
+		
+		@Override
+		public void erase() {
+			inputValuesSet = false;
+			etalonValuesSet = false;
+		}
+		
+		@Override
+		public void traverseNetwork(TraversalListener traversalListener) {
+			SimpleNeuralNetwork.this.traverseNetwork(traversalListener);
+		}
+		
+		@Override
+		public void setWeightChangedListener(WeightChangedListener listener) {
+			throw new UnsupportedOperationException("Worker has no weight changed listener");
+		}
+		
+		@Override
+		public long getWeightsCount() {
+			return weightsCount;
+		}
+		
+		@Override
+		public NeuralNetwork createWorker() {
+			return SimpleNeuralNetwork.this.createWorker();
+		}
+		
+		@Override
+		public InferenceSession createInferenceSession() {
+			return SimpleNeuralNetwork.this.createInferenceSession();
+		}
+		
+		@Override
+		public double[] getResult() {
+			final double[] results = new double[outputs.length];
+			getResult(results);
+			return results;
+		}
+		
+		@Override
+		public void getResult(double[] results) {
+			NeuralNetworkUtils.checkVectorParameterSize(results, outputs.length);
+			if (!inputValuesSet)
+				throw new IllegalStateException("input value was not set");
+			System.arraycopy(outputValues, 0, results, 0, outputs.length);
+		}
+		
+		@Override
+		public void save(File file) throws IOException {
+			SimpleNeuralNetwork.this.save(file);
+		}
+		
+		@Override
+		public NetworkSnapshot.Capture capture() {
+			return SimpleNeuralNetwork.this.capture();
+		}
+	}
+	
+	/**
+	 * Neurons are shared with worker, see {@link Worker}. Weights count of
+	 * network, which can have workers, must fit int.
+	 */
+	@Override
+	public NeuralNetwork createWorker() {
+		if (weightsCount > Integer.MAX_VALUE)
+			throw new UnsupportedOperationException("Too many weights for worker: " + weightsCount);
+		return new Worker();
+	}
 }
@@ -0,0 +1,144 @@
+package info.adamovskiy.nn;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reproducible source of initial weights, uniformly distributed from -1 to 1.
+ *
+ * Weights of a layer are ordered neuron by neuron, shift weight of neuron
+ * first, and this sequence is split into blocks of fixed length. Every
+ * block has its own {@link SplittableRandom} stream, split from the stream
+ * of its layer, which is split from the seed. So blocks are generated in
+ * parallel by pool, but weights depend only on the seed and on sizes of
+ * layers: not on parallelism of pool, nor on networks built before.
+ */
+public class WeightInitializer {
+	public static final long DEFAULT_SEED = 1;
+	private static final int WEIGHTS_PER_STREAM = 16384;
+	private static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * Receives generated weights of layer.
+	 */
+	public interface Target {
+		/**
+		 * Called from threads of pool, at the same time for different ranges,
+		 * every weight of layer is passed once.
+		 *
+		 * @param first
+		 *            index of the first weight in neuron: 0 is shift weight,
+		 *            j + 1 is weight of input j
+		 * @param values
+		 *            valid only during the call
+		 */
+		void setWeights(int neuron, int first, double[] values, int offset, int count);
+	}
+
+	private final long seed;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Weights are generated by {@link ForkJoinPool#commonPool()}.
+	 */
+	public WeightInitializer(long seed) {
+		this(seed, ForkJoinPool.commonPool());
+	}
+
+	public WeightInitializer(long seed, ForkJoinPool pool) {
+		this.seed = seed;
+		this.pool = pool;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Generates all weights of layer, returns when target has received them.
+	 *
+	 * @param layer
+	 *            index of non-input layer, starting with 1
+	 * @param inputsCount
+	 *            size of previous layer, shift neuron is not counted
+	 */
+	public void initializeLayer(int layer, int size, int inputsCount, Target target) {
+		if (layer < 1)
+			throw new IllegalArgumentException("Input layer has no weights");
+		final int rowLength = inputsCount + 1;
+		final long weightsCount = (long) size * rowLength;
+		final int blocksCount = (int) ((weightsCount + WEIGHTS_PER_STREAM - 1) / WEIGHTS_PER_STREAM);
+		if (blocksCount == 0)
+			return;
+		final SplittableRandom layerRandom = getLayerRandom(layer);
+		final SplittableRandom[] streams = new SplittableRandom[blocksCount];
+		for (int b = 0; b < blocksCount; b++) {
+			streams[b] = layerRandom.split();
+		}
+		final int blocksPerTask = Math.max(1, blocksCount / (pool.getParallelism() * TASKS_PER_THREAD));
+		pool.invoke(new BlocksTask(streams, rowLength, weightsCount, target, blocksPerTask, 0, blocksCount));
+	}
+
+	private SplittableRandom getLayerRandom(int layer) {
+		final SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom layerRandom = null;
+		for (int l = 0; l < layer; l++) {
+			layerRandom = root.split();
+		}
+		return layerRandom;
+	}
+
+	private static class BlocksTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final SplittableRandom[] streams;
+		private final int rowLength;
+		private final long weightsCount;
+		private final Target target;
+		private final int blocksPerTask;
+		private final int firstBlock;
+		private final int lastBlock;
+
+		BlocksTask(SplittableRandom[] streams, int rowLength, long weightsCount, Target target, int blocksPerTask,
+				int firstBlock, int lastBlock) {
+			this.streams = streams;
+			this.rowLength = rowLength;
+			this.weightsCount = weightsCount;
+			this.target = target;
+			this.blocksPerTask = blocksPerTask;
+			this.firstBlock = firstBlock;
+			this.lastBlock = lastBlock;
+		}
+
+		@Override
+		protected void compute() {
+			if (lastBlock - firstBlock <= blocksPerTask) {
+				final double[] buffer = new double[(int) Math.min(WEIGHTS_PER_STREAM, weightsCount)];
+				for (int b = firstBlock; b < lastBlock; b++) {
+					fillBlock(b, buffer);
+				}
+				return;
+			}
+			final int middle = (firstBlock + lastBlock) >>> 1;
+			invokeAll(new BlocksTask(streams, rowLength, weightsCount, target, blocksPerTask, firstBlock, middle),
+					new BlocksTask(streams, rowLength, weightsCount, target, blocksPerTask, middle, lastBlock));
+		}
+
+		private void fillBlock(int block, double[] buffer) {
+			final SplittableRandom rnd = streams[block];
+			final long end = Math.min(weightsCount, (long) (block + 1) * WEIGHTS_PER_STREAM);
+			long position = (long) block * WEIGHTS_PER_STREAM;
+			while (position < end) {
+				final int neuron = (int) (position / rowLength);
+				final int first = (int) (position % rowLength);
+				final int count = (int) Math.min(rowLength - first, end - position);
+				for (int k = 0; k < count; k++) {
+					buffer[k] = rnd.nextDouble() * 2 - 1;
+				}
+				target.setWeights(neuron, first, buffer, 0, count);
+				position += count;
+			}
+		}
+	}
+}
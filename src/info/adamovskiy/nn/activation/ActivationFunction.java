@@ -0,0 +1,23 @@
+package info.adamovskiy.nn.activation;
+
+/**
+ * Neuron activation function, shared by all neurons of a layer.
+ */
+public interface ActivationFunction {
+	public double activation(double x);
+	
+	public double activationDerivative(double x);
+	
+	/**
+	 * Derivative at the point, which output is already known. Functions, which
+	 * derivative is expressed by output, should override this method, so
+	 * teaching evaluates them once per neuron and example.
+	 * 
+	 * @param y
+	 *            <code>activation(x)</code>
+	 * @return <code>activationDerivative(x)</code>
+	 */
+	public default double activationDerivative(double x, double y) {
+		return activationDerivative(x);
+	}
+}
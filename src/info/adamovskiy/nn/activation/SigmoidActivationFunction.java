@@ -0,0 +1,31 @@
+package info.adamovskiy.nn.activation;
+
+public class SigmoidActivationFunction implements ActivationFunction {
+	private final double alpha;
+	
+	public SigmoidActivationFunction(double alpha) {
+		this.alpha = alpha;
+	}
+	
+	@Override
+	public double activation(double x) {
+		return 1d / (1d + Math.exp(-alpha * x));
+	}
+	
+	@Override
+	public double activationDerivative(double x) {
+		return activationDerivative(x, activation(x));
+	}
+	
+	/**
+	 * <code>alpha * y * (1 - y)</code>, x is not used.
+	 */
+	@Override
+	public double activationDerivative(double x, double y) {
+		return alpha * y * (1d - y);
+	}
+	
+	public double getAlpha() {
+		return alpha;
+	}
+}
@@ -0,0 +1,42 @@
+package info.adamovskiy.nn.activation;
+
+/**
+ * Sigmoid, which is linearly interpolated by table of exact values instead
+ * of {@link Math#exp(double)} call. Table covers <code>alpha * x</code> from
+ * -{@value #RANGE} to {@value #RANGE} by steps of 1/{@value #STEPS_PER_UNIT}
+ * (32 KB), out of that range the nearest end value is returned.
+ * 
+ * Maximum absolute error is {@value #MAX_ERROR}: interpolation error is
+ * bounded by <code>step^2 / 8 * max|sigmoid''|</code> (about 7.3e-7) and
+ * error of ends is <code>exp(-16)</code> (about 1.1e-7). Derivative is
+ * calculated by output, like in {@link SigmoidActivationFunction}, so
+ * teaching does not call {@link Math#exp(double)} at all.
+ */
+public class TableSigmoidActivationFunction extends SigmoidActivationFunction {
+	public static final double MAX_ERROR = 1e-6;
+	
+	private static final int RANGE = 16;
+	private static final int STEPS_PER_UNIT = 128;
+	private static final double[] TABLE = new double[2 * RANGE * STEPS_PER_UNIT + 1];
+	
+	static {
+		for (int k = 0; k < TABLE.length; k++) {
+			TABLE[k] = 1d / (1d + Math.exp(RANGE - (double) k / STEPS_PER_UNIT));
+		}
+	}
+	
+	public TableSigmoidActivationFunction(double alpha) {
+		super(alpha);
+	}
+	
+	@Override
+	public double activation(double x) {
+		final double position = (getAlpha() * x + RANGE) * STEPS_PER_UNIT;
+		if (position <= 0)
+			return TABLE[0];
+		if (position >= TABLE.length - 1)
+			return TABLE[TABLE.length - 1];
+		final int k = (int) position;
+		return TABLE[k] + (position - k) * (TABLE[k + 1] - TABLE[k]);
+	}
+}
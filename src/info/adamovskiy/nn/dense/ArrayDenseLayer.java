@@ -0,0 +1,206 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.linalg.Gemm;
+import info.adamovskiy.nn.linalg.Kernels;
+
+/**
+ * Weights are stored in java heap arrays. Row loops are delegated to
+ * {@link Kernels}, except when every weight change is reported to listener.
+ * Batches are processed by matrix-matrix products ({@link Gemm}).
+ */
+class ArrayDenseLayer extends DenseLayer {
+	private final Kernels kernels = Kernels.getDefault();
+	private final double[] weights;
+	private final double[] biases;
+	private double[] weightGradients;
+	private double[] biasGradients;
+
+	ArrayDenseLayer(int size, int inputsCount) {
+		this(size, inputsCount, new double[size * inputsCount], new double[size]);
+	}
+
+	private ArrayDenseLayer(int size, int inputsCount, double[] weights, double[] biases) {
+		super(size, inputsCount);
+		this.weights = weights;
+		this.biases = biases;
+	}
+
+	@Override
+	DenseLayer shareWeights() {
+		return new ArrayDenseLayer(size, inputsCount, weights, biases);
+	}
+
+	@Override
+	double getWeight(int neuron, int input) {
+		return weights[neuron * inputsCount + input];
+	}
+
+	@Override
+	void setWeight(int neuron, int input, double weight) {
+		weights[neuron * inputsCount + input] = weight;
+	}
+
+	@Override
+	void setWeights(int neuron, int firstInput, double[] values, int offset, int count) {
+		System.arraycopy(values, offset, weights, neuron * inputsCount + firstInput, count);
+	}
+
+	@Override
+	void copyWeights(double[] weights, double[] biases) {
+		System.arraycopy(this.weights, 0, weights, 0, this.weights.length);
+		System.arraycopy(this.biases, 0, biases, 0, this.biases.length);
+	}
+
+	@Override
+	double getBias(int neuron) {
+		return biases[neuron];
+	}
+
+	@Override
+	void setBias(int neuron, double bias) {
+		biases[neuron] = bias;
+	}
+
+	@Override
+	void forwardRange(double[] input, ActivationFunction activationFunction, int from, int to) {
+		for (int i = from; i < to; i++) {
+			final double sum = kernels.dot(biases[i], weights, i * inputsCount, input, inputsCount);
+			sums[i] = sum;
+			outputs[i] = activationFunction.activation(sum);
+		}
+	}
+
+	@Override
+	double backpropagationRange(double[] input, double[] inputErrors, double learningRate, DenseNeuralNetwork host,
+			int layerIndex, int from, int to) {
+		final boolean notifyListener = host.getWeightChangedListener() != null;
+		double effectSum = 0;
+		for (int i = from; i < to; i++) {
+			final double errorDerivativeBySum = errorDerivativesBySum[i];
+			final double oldBias = biases[i];
+			final double newBias = oldBias - learningRate * errorDerivativeBySum;
+			effectSum += Math.abs(oldBias - newBias);
+			biases[i] = newBias;
+			if (notifyListener)
+				host.fireWeightChanged(-1, 0, layerIndex, i, oldBias, newBias);
+
+			final int row = i * inputsCount;
+			if (!notifyListener) {
+				effectSum += kernels.updateRow(weights, row, input, learningRate, errorDerivativeBySum, inputErrors, inputsCount);
+				continue;
+			}
+			for (int j = 0; j < inputsCount; j++) {
+				final double oldWeight = weights[row + j];
+				if (inputErrors != null)
+					inputErrors[j] += oldWeight * errorDerivativeBySum;
+				final double newWeight = oldWeight - learningRate * input[j] * errorDerivativeBySum;
+				effectSum += Math.abs(oldWeight - newWeight);
+				weights[row + j] = newWeight;
+				host.fireWeightChanged(layerIndex - 1, j, layerIndex, i, oldWeight, newWeight);
+			}
+		}
+		return effectSum;
+	}
+
+	private void ensureGradients() {
+		if (weightGradients == null) {
+			weightGradients = new double[weights.length];
+			biasGradients = new double[size];
+		}
+	}
+
+	@Override
+	void accumulateGradient(double[] input, double[] inputErrors) {
+		ensureGradients();
+		for (int i = 0; i < size; i++) {
+			final double errorDerivativeBySum = errorDerivativesBySum[i];
+			biasGradients[i] += errorDerivativeBySum;
+			kernels.accumulateRow(weightGradients, weights, i * inputsCount, input, errorDerivativeBySum, inputErrors,
+					inputsCount);
+		}
+	}
+
+	@Override
+	double applyGradient(double rate, DenseNeuralNetwork host, int layerIndex) {
+		if (weightGradients == null)
+			return 0;
+		if (host.getWeightChangedListener() == null)
+			return kernels.applyGradients(biases, biasGradients, 0, rate, size)
+					+ kernels.applyGradients(weights, weightGradients, 0, rate, weights.length);
+		double effectSum = 0;
+		for (int i = 0; i < size; i++) {
+			final double oldBias = biases[i];
+			final double newBias = oldBias - rate * biasGradients[i];
+			effectSum += Math.abs(oldBias - newBias);
+			biases[i] = newBias;
+			biasGradients[i] = 0;
+			host.fireWeightChanged(-1, 0, layerIndex, i, oldBias, newBias);
+			final int row = i * inputsCount;
+			for (int j = 0; j < inputsCount; j++) {
+				final double oldWeight = weights[row + j];
+				final double newWeight = oldWeight - rate * weightGradients[row + j];
+				effectSum += Math.abs(oldWeight - newWeight);
+				weights[row + j] = newWeight;
+				weightGradients[row + j] = 0;
+				host.fireWeightChanged(layerIndex - 1, j, layerIndex, i, oldWeight, newWeight);
+			}
+		}
+		return effectSum;
+	}
+
+	@Override
+	void mergeGradient(DenseLayer other) {
+		final ArrayDenseLayer source = (ArrayDenseLayer) other;
+		if (source.weightGradients == null)
+			return;
+		ensureGradients();
+		for (int i = 0; i < size; i++) {
+			biasGradients[i] += source.biasGradients[i];
+			source.biasGradients[i] = 0;
+		}
+		for (int k = 0; k < weightGradients.length; k++) {
+			weightGradients[k] += source.weightGradients[k];
+			source.weightGradients[k] = 0;
+		}
+	}
+
+	/**
+	 * sums = inputs * weights<sup>T</sup> + biases
+	 */
+	@Override
+	void forwardBatch(double[] inputs, int batchSize, ActivationFunction activationFunction, DenseNeuralNetwork host) {
+		ensureBatchCapacity(batchSize);
+		host.getGemm().multiply(false, true, batchSize, size, inputsCount, inputs, inputsCount, weights, inputsCount, 0,
+				batchSums, size);
+		for (int b = 0; b < batchSize; b++) {
+			final int row = b * size;
+			for (int i = 0; i < size; i++) {
+				final double sum = batchSums[row + i] + biases[i];
+				batchSums[row + i] = sum;
+				batchOutputs[row + i] = activationFunction.activation(sum);
+			}
+		}
+	}
+
+	/**
+	 * inputErrors = errors * weights, weightGradients += errors<sup>T</sup> *
+	 * inputs
+	 */
+	@Override
+	void accumulateGradientBatch(double[] inputs, double[] inputErrors, int batchSize, DenseNeuralNetwork host) {
+		ensureGradients();
+		final Gemm gemm = host.getGemm();
+		if (inputErrors != null)
+			gemm.multiply(false, false, batchSize, inputsCount, size, batchErrorDerivativesBySum, size, weights,
+					inputsCount, 0, inputErrors, inputsCount);
+		gemm.multiply(true, false, size, inputsCount, batchSize, batchErrorDerivativesBySum, size, inputs, inputsCount,
+				1, weightGradients, inputsCount);
+		for (int b = 0; b < batchSize; b++) {
+			final int row = b * size;
+			for (int i = 0; i < size; i++) {
+				biasGradients[i] += batchErrorDerivativesBySum[row + i];
+			}
+		}
+	}
+}
@@ -0,0 +1,366 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.activation.ActivationFunction;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fully connected layer. Weights of all neurons are stored row by row in one
+ * contiguous block: weight of edge from input j to neuron i has index
+ * <code>i * inputsCount + j</code>. Shift (bias) weights are stored in
+ * separate block. Where blocks are placed is defined by subclasses, see
+ * {@link WeightStorage}.
+ * 
+ * Per-sample vectors (sums, outputs, error derivatives) are O(neurons) and are
+ * kept in plain arrays, so layers of any storage can be chained. The same
+ * values of batch are kept in row-major matrices, example per row.
+ * 
+ * Single example passes are implemented by ranges of neurons, so wide layers
+ * can be processed by several threads, see
+ * {@link #forward(double[], ActivationFunction, ForkJoinPool)}.
+ */
+abstract class DenseLayer {
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	final int size;
+	final int inputsCount;
+
+	final double[] sums;
+	final double[] outputs;
+	final double[] errorDerivativesBySum;
+
+	// batch matrices, allocated on first batch and grown on demand
+	double[] batchSums = new double[0];
+	double[] batchOutputs = new double[0];
+	double[] batchErrorDerivativesBySum = new double[0];
+	private double[] inputRow;
+	private double[] inputErrorsRow;
+
+	// per-chunk results of parallel backpropagation
+	private double[][] chunkInputErrors = new double[0][];
+	private double[] chunkEffects = new double[0];
+
+	DenseLayer(int size, int inputsCount) {
+		if ((long) size * inputsCount > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(String.format("Layer is too large: %dx%d", size, inputsCount));
+		this.size = size;
+		this.inputsCount = inputsCount;
+		sums = new double[size];
+		outputs = new double[size];
+		errorDerivativesBySum = new double[size];
+	}
+
+	/**
+	 * @return layer of the same storage, which uses the same weights, but has
+	 *         its own per-sample vectors and gradients
+	 */
+	abstract DenseLayer shareWeights();
+
+	abstract double getWeight(int neuron, int input);
+
+	abstract void setWeight(int neuron, int input, double weight);
+
+	abstract double getBias(int neuron);
+
+	abstract void setBias(int neuron, double bias);
+
+	/**
+	 * Sets weights of count inputs of neuron, starting with firstInput.
+	 * Different neurons can be set by different threads at the same time.
+	 * This implementation sets them one by one.
+	 */
+	void setWeights(int neuron, int firstInput, double[] values, int offset, int count) {
+		for (int k = 0; k < count; k++) {
+			setWeight(neuron, firstInput + k, values[offset + k]);
+		}
+	}
+
+	/**
+	 * Copies weights neuron by neuron and biases into given arrays of
+	 * size * inputsCount and size length. This implementation copies them one
+	 * by one.
+	 */
+	void copyWeights(double[] weights, double[] biases) {
+		for (int i = 0; i < size; i++) {
+			biases[i] = getBias(i);
+			for (int j = 0; j < inputsCount; j++) {
+				weights[i * inputsCount + j] = getWeight(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Called once before range passes over given input.
+	 * This implementation does nothing.
+	 */
+	void prepareInput(double[] input) {
+	}
+
+	/**
+	 * Calculates {@link #sums} and {@link #outputs} of neurons from inclusive
+	 * to exclusive. Input is already prepared, see
+	 * {@link #prepareInput(double[])}.
+	 */
+	abstract void forwardRange(double[] input, ActivationFunction activationFunction, int from, int to);
+
+	/**
+	 * Changes weights of neurons from inclusive to exclusive, see
+	 * {@link #backpropagation(double[], double[], double, DenseNeuralNetwork, int)}.
+	 * Input is already prepared, see {@link #prepareInput(double[])}.
+	 * 
+	 * @return effect - sum of weight deltas
+	 */
+	abstract double backpropagationRange(double[] input, double[] inputErrors, double learningRate, DenseNeuralNetwork host,
+			int layerIndex, int from, int to);
+
+	/**
+	 * Called before chunks of parallel backpropagation are computed, so
+	 * subclasses can allocate scratch of every chunk before threads use it.
+	 * This implementation does nothing.
+	 */
+	void prepareChunks(int chunks) {
+	}
+
+	/**
+	 * Range of parallel backpropagation, chunk is its index, see
+	 * {@link #prepareChunks(int)}. This implementation calls
+	 * {@link #backpropagationRange(double[], double[], double, DenseNeuralNetwork, int, int, int)}.
+	 */
+	double backpropagationChunk(int chunk, double[] input, double[] inputErrors, double learningRate,
+			DenseNeuralNetwork host, int layerIndex, int from, int to) {
+		return backpropagationRange(input, inputErrors, learningRate, host, layerIndex, from, to);
+	}
+
+	/**
+	 * Calculates {@link #sums} and {@link #outputs}.
+	 * 
+	 * @param input
+	 *            outputs of previous layer
+	 */
+	void forward(double[] input, ActivationFunction activationFunction) {
+		prepareInput(input);
+		forwardRange(input, activationFunction, 0, size);
+	}
+
+	/**
+	 * Changes all weights of this layer by already calculated
+	 * {@link #errorDerivativesBySum}. Weights are read before the change, so
+	 * inputErrors receives gradient of the same network state as forward pass.
+	 *
+	 * @param input
+	 *            outputs of previous layer
+	 * @param inputErrors
+	 *            accumulator of error derivatives by previous layer outputs,
+	 *            null if previous layer is input one
+	 * @return effect - sum of weight deltas
+	 */
+	double backpropagation(double[] input, double[] inputErrors, double learningRate, DenseNeuralNetwork host, int layerIndex) {
+		prepareInput(input);
+		return backpropagationRange(input, inputErrors, learningRate, host, layerIndex, 0, size);
+	}
+
+	private int getChunksCount(ForkJoinPool pool) {
+		return Math.max(1, Math.min(size, pool.getParallelism() * CHUNKS_PER_THREAD));
+	}
+
+	/**
+	 * The same as {@link #forward(double[], ActivationFunction)}, but neurons
+	 * are split into ranges, which are processed by pool.
+	 */
+	void forward(final double[] input, final ActivationFunction activationFunction, ForkJoinPool pool) {
+		prepareInput(input);
+		pool.invoke(new ChunkTask(getChunksCount(pool), size, new ChunkAction() {
+			@Override
+			public void compute(int chunk, int from, int to) {
+				forwardRange(input, activationFunction, from, to);
+			}
+		}));
+	}
+
+	/**
+	 * The same as
+	 * {@link #backpropagation(double[], double[], double, DenseNeuralNetwork, int)},
+	 * but neurons are split into ranges, which are processed by pool. Every
+	 * range accumulates its own input errors, they are summed in order of
+	 * ranges afterwards, so result does not depend on threads timing. Weight
+	 * changed listener is not supported.
+	 */
+	double backpropagation(final double[] input, final double[] inputErrors, final double learningRate,
+			final DenseNeuralNetwork host, final int layerIndex, ForkJoinPool pool) {
+		prepareInput(input);
+		final int chunks = getChunksCount(pool);
+		if (chunkEffects.length < chunks) {
+			chunkEffects = new double[chunks];
+			chunkInputErrors = new double[chunks][];
+		}
+		prepareChunks(chunks);
+		pool.invoke(new ChunkTask(chunks, size, new ChunkAction() {
+			@Override
+			public void compute(int chunk, int from, int to) {
+				double[] errors = null;
+				if (inputErrors != null) {
+					errors = chunkInputErrors[chunk];
+					if (errors == null)
+						errors = chunkInputErrors[chunk] = new double[inputsCount];
+					else
+						Arrays.fill(errors, 0);
+				}
+				chunkEffects[chunk] = backpropagationChunk(chunk, input, errors, learningRate, host, layerIndex, from, to);
+			}
+		}));
+		double effectSum = 0;
+		for (int c = 0; c < chunks; c++) {
+			effectSum += chunkEffects[c];
+			if (inputErrors != null) {
+				final double[] errors = chunkInputErrors[c];
+				for (int j = 0; j < inputsCount; j++) {
+					inputErrors[j] += errors[j];
+				}
+			}
+		}
+		return effectSum;
+	}
+
+	private interface ChunkAction {
+		void compute(int chunk, int from, int to);
+	}
+
+	/**
+	 * Splits range of chunks in halves until single chunk remains. Chunk c
+	 * consists of neurons from <code>c * size / chunks</code> inclusive to
+	 * <code>(c + 1) * size / chunks</code> exclusive.
+	 */
+	private static class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int chunks;
+		private final int size;
+		private final ChunkAction action;
+		private final int firstChunk;
+		private final int lastChunk;
+
+		ChunkTask(int chunks, int size, ChunkAction action) {
+			this(chunks, size, action, 0, chunks);
+		}
+
+		private ChunkTask(int chunks, int size, ChunkAction action, int firstChunk, int lastChunk) {
+			this.chunks = chunks;
+			this.size = size;
+			this.action = action;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+		}
+
+		private int getChunkStart(int chunk) {
+			return (int) ((long) chunk * size / chunks);
+		}
+
+		@Override
+		protected void compute() {
+			if (lastChunk - firstChunk == 1) {
+				action.compute(firstChunk, getChunkStart(firstChunk), getChunkStart(lastChunk));
+				return;
+			}
+			final int middle = (firstChunk + lastChunk) >>> 1;
+			invokeAll(new ChunkTask(chunks, size, action, firstChunk, middle),
+					new ChunkTask(chunks, size, action, middle, lastChunk));
+		}
+	}
+
+	/**
+	 * Adds gradient of current example, defined by already calculated
+	 * {@link #errorDerivativesBySum}, to accumulated one. Weights are not
+	 * changed, so all examples of batch see the same network state. Gradient
+	 * storage is allocated on first call.
+	 * 
+	 * @param input
+	 *            outputs of previous layer
+	 * @param inputErrors
+	 *            see
+	 *            {@link #backpropagation(double[], double[], double, DenseNeuralNetwork, int)}
+	 */
+	abstract void accumulateGradient(double[] input, double[] inputErrors);
+
+	/**
+	 * Changes all weights by accumulated gradient multiplied by rate and
+	 * resets it.
+	 * 
+	 * @return effect - sum of weight deltas
+	 */
+	abstract double applyGradient(double rate, DenseNeuralNetwork host, int layerIndex);
+
+	/**
+	 * Adds accumulated gradient of other layer of the same storage and shape
+	 * to accumulated gradient of this one and resets gradient of other.
+	 */
+	abstract void mergeGradient(DenseLayer other);
+
+	void ensureBatchCapacity(int batchSize) {
+		if (batchSums.length >= batchSize * size)
+			return;
+		batchSums = new double[batchSize * size];
+		batchOutputs = new double[batchSize * size];
+		batchErrorDerivativesBySum = new double[batchSize * size];
+	}
+
+	/**
+	 * Makes per-sample vectors equal to given row of batch matrices.
+	 */
+	void selectExample(int example) {
+		System.arraycopy(batchSums, example * size, sums, 0, size);
+		System.arraycopy(batchOutputs, example * size, outputs, 0, size);
+		System.arraycopy(batchErrorDerivativesBySum, example * size, errorDerivativesBySum, 0, size);
+	}
+
+	private double[] getInputRow(double[] inputs, int example) {
+		if (inputRow == null)
+			inputRow = new double[inputsCount];
+		System.arraycopy(inputs, example * inputsCount, inputRow, 0, inputsCount);
+		return inputRow;
+	}
+
+	/**
+	 * Calculates {@link #batchSums} and {@link #batchOutputs}. This
+	 * implementation calls {@link #forward(double[], ActivationFunction)} for
+	 * every example.
+	 * 
+	 * @param inputs
+	 *            batchSize x inputsCount matrix, outputs of previous layer
+	 */
+	void forwardBatch(double[] inputs, int batchSize, ActivationFunction activationFunction, DenseNeuralNetwork host) {
+		ensureBatchCapacity(batchSize);
+		for (int b = 0; b < batchSize; b++) {
+			forward(getInputRow(inputs, b), activationFunction);
+			System.arraycopy(sums, 0, batchSums, b * size, size);
+			System.arraycopy(outputs, 0, batchOutputs, b * size, size);
+		}
+	}
+
+	/**
+	 * Adds gradient of all examples, defined by already calculated
+	 * {@link #batchErrorDerivativesBySum}, to accumulated one. This
+	 * implementation calls {@link #accumulateGradient(double[], double[])} for
+	 * every example.
+	 * 
+	 * @param inputs
+	 *            batchSize x inputsCount matrix, outputs of previous layer
+	 * @param inputErrors
+	 *            batchSize x inputsCount matrix, which is overwritten by error
+	 *            derivatives by previous layer outputs, null if previous layer
+	 *            is input one
+	 */
+	void accumulateGradientBatch(double[] inputs, double[] inputErrors, int batchSize, DenseNeuralNetwork host) {
+		if (inputErrors != null && inputErrorsRow == null)
+			inputErrorsRow = new double[inputsCount];
+		for (int b = 0; b < batchSize; b++) {
+			System.arraycopy(batchErrorDerivativesBySum, b * size, errorDerivativesBySum, 0, size);
+			if (inputErrors != null)
+				Arrays.fill(inputErrorsRow, 0);
+			accumulateGradient(getInputRow(inputs, b), inputErrors == null ? null : inputErrorsRow);
+			if (inputErrors != null)
+				System.arraycopy(inputErrorsRow, 0, inputErrors, b * inputsCount, inputsCount);
+		}
+	}
+}
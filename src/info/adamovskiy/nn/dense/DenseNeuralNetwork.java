@@ -0,0 +1,894 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.InferenceSession;
+import info.adamovskiy.nn.NetworkSnapshot;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.WeightInitializer;
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.linalg.Gemm;
+import info.adamovskiy.nn.loss.LeastSquaresLoss;
+import info.adamovskiy.nn.loss.Loss;
+import info.adamovskiy.nn.utils.NeuralNetworkUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Layered perceptron compiled into contiguous per-layer arrays (see
+ * {@link DenseLayer}) instead of graph of neuron objects. Every neuron of
+ * non-input layer is connected to all neurons of previous layer and to the
+ * shift neuron, which always outputs 1.
+ *
+ * Neurons are exposed (for traversal and weight change listener) as
+ * {@link DenseNeuralNode} views, which are created on demand.
+ *
+ * Layer numbering is the same as in {@link info.adamovskiy.nn.NeuralNetworkBuilder.LayeredNeuronLabel}:
+ * 0 is input layer, last one is output layer, -1 is the shift neuron.
+ */
+public abstract class DenseNeuralNetwork implements NeuralNetwork {
+	private static final int CONCLUDE_BATCH_SIZE = 256;
+
+	// output layer passes sums as is, its outputs are calculated by loss
+	private static final ActivationFunction IDENTITY = new ActivationFunction() {
+		@Override
+		public double activation(double x) {
+			return x;
+		}
+
+		@Override
+		public double activationDerivative(double x) {
+			return 1;
+		}
+	};
+
+	private final double learningRate;
+	private final ActivationFunction activationFunction;
+	private final Loss loss;
+	private final DenseLayer[] layers;
+	private final double[] inputValues;
+	private final double[] etalonValues;
+	private final long weightsCount;
+	private final WeightStorage storage;
+
+	private boolean inputValuesSet;
+	private boolean etalonValuesSet;
+	private double lastAverageEffect;
+	private double[] lastBatchErrors = new double[0];
+	private int lastBatchSize;
+	private WeightChangedListener weightChangedListener;
+
+	private double[] batchInputValues = new double[0];
+	private Gemm gemm;
+
+	private int parallelLayerThreshold = Integer.MAX_VALUE;
+
+	// data parallel teaching, replicas[0] is this network
+	private DenseNeuralNetwork[] replicas;
+	private ForkJoinPool replicasPool;
+
+	private DenseNeuralNode[][] nodes;
+	private DenseNeuralNode shiftNode;
+
+	/**
+	 * @param layerSizes
+	 *            sizes of all layers, including input and output ones
+	 * @param rnd
+	 *            source of initial weights, consumed neuron by neuron (shift
+	 *            weight first)
+	 */
+	public DenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes, Random rnd) {
+		this(learningRate, activationFunction, layerSizes, rnd, WeightStorage.HEAP);
+	}
+
+	/**
+	 * @param layerSizes
+	 *            sizes of all layers, including input and output ones
+	 * @param rnd
+	 *            source of initial weights, consumed neuron by neuron (shift
+	 *            weight first)
+	 * @param storage
+	 *            where and with which precision weights are placed
+	 */
+	public DenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes, Random rnd,
+			WeightStorage storage) {
+		this(learningRate, activationFunction, new LeastSquaresLoss(activationFunction), layerSizes, rnd, storage);
+	}
+
+	/**
+	 * @param activationFunction
+	 *            activation of hidden layers
+	 * @param loss
+	 *            loss and activation of output layer
+	 * @param layerSizes
+	 *            sizes of all layers, including input and output ones
+	 * @param rnd
+	 *            source of initial weights, consumed neuron by neuron (shift
+	 *            weight first)
+	 * @param storage
+	 *            where and with which precision weights are placed
+	 */
+	public DenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, Loss loss, int[] layerSizes,
+			Random rnd, WeightStorage storage) {
+		this(learningRate, activationFunction, loss, layerSizes, storage, null);
+		for (final DenseLayer layer : layers) {
+			for (int i = 0; i < layer.size; i++) {
+				layer.setBias(i, rnd.nextDouble() * 2 - 1);
+				for (int j = 0; j < layer.inputsCount; j++) {
+					layer.setWeight(i, j, rnd.nextDouble() * 2 - 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The same as
+	 * {@link #DenseNeuralNetwork(double, ActivationFunction, Loss, int[], Random, WeightStorage)},
+	 * but initial weights are generated by weightInitializer, in parallel
+	 * and regardless of other networks.
+	 */
+	public DenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, Loss loss, int[] layerSizes,
+			WeightInitializer weightInitializer, WeightStorage storage) {
+		this(learningRate, activationFunction, loss, layerSizes, storage, null);
+		for (int l = 0; l < layers.length; l++) {
+			final DenseLayer layer = layers[l];
+			weightInitializer.initializeLayer(l + 1, layer.size, layer.inputsCount, new WeightInitializer.Target() {
+				@Override
+				public void setWeights(int neuron, int first, double[] values, int offset, int count) {
+					if (first == 0) {
+						layer.setBias(neuron, values[offset]);
+						layer.setWeights(neuron, 0, values, offset + 1, count - 1);
+					} else {
+						layer.setWeights(neuron, first - 1, values, offset, count);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Network of {@link WeightStorage#OFF_HEAP} storage, which weights are
+	 * mapped blocks of snapshot, see {@link NetworkSnapshot#load(File)}.
+	 * Snapshot file is not changed by teaching.
+	 *
+	 * @param loss
+	 *            loss of saved network
+	 */
+	protected DenseNeuralNetwork(NetworkSnapshot snapshot, Loss loss) {
+		this(snapshot.getLearningRate(), snapshot.getActivationFunction(), loss, snapshot.getLayerSizes(),
+				WeightStorage.OFF_HEAP, snapshot);
+	}
+
+	/**
+	 * Layers are created with zero weights, or are views of snapshot blocks
+	 * if it is not null.
+	 */
+	private DenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, Loss loss, int[] layerSizes,
+			WeightStorage storage, NetworkSnapshot snapshot) {
+		if (layerSizes.length < 2)
+			throw new IllegalArgumentException("Input and output layers are required");
+		this.learningRate = learningRate;
+		this.activationFunction = activationFunction;
+		this.loss = loss;
+		inputValues = new double[layerSizes[0]];
+		etalonValues = new double[layerSizes[layerSizes.length - 1]];
+		this.storage = storage;
+		layers = new DenseLayer[layerSizes.length - 1];
+		long weightsCounter = 0;
+		for (int l = 1; l < layerSizes.length; l++) {
+			weightsCounter += (long) layerSizes[l] * (layerSizes[l - 1] + 1);
+		}
+		final WeightArena arena = storage == WeightStorage.OFF_HEAP && snapshot == null
+				? new WeightArena(weightsCounter) : null;
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = snapshot == null ? createLayer(layerSizes[l + 1], layerSizes[l], arena)
+					: new OffHeapDenseLayer(layerSizes[l + 1], layerSizes[l], snapshot.getWeights(l + 1),
+							snapshot.getBiases(l + 1));
+		}
+		weightsCount = weightsCounter;
+	}
+
+	/**
+	 * Creates worker of prototype, see {@link #createWorker()}.
+	 */
+	protected DenseNeuralNetwork(DenseNeuralNetwork prototype) {
+		learningRate = prototype.learningRate;
+		activationFunction = prototype.activationFunction;
+		loss = prototype.loss;
+		storage = prototype.storage;
+		weightsCount = prototype.weightsCount;
+		parallelLayerThreshold = prototype.parallelLayerThreshold;
+		inputValues = new double[prototype.inputValues.length];
+		etalonValues = new double[prototype.etalonValues.length];
+		layers = new DenseLayer[prototype.layers.length];
+		for (int l = 0; l < layers.length; l++) {
+			layers[l] = prototype.layers[l].shareWeights();
+		}
+	}
+
+	private DenseLayer createLayer(int size, int inputsCount, WeightArena arena) {
+		switch (storage) {
+		case HEAP:
+			return new ArrayDenseLayer(size, inputsCount);
+		case OFF_HEAP:
+			return new OffHeapDenseLayer(size, inputsCount, arena);
+		case FLOAT:
+			return new FloatArrayDenseLayer(size, inputsCount);
+		default:
+			throw new IllegalArgumentException("Unknown weight storage: " + storage);
+		}
+	}
+
+	private DenseLayer getOutputLayer() {
+		return layers[layers.length - 1];
+	}
+
+	private void setInputValues(double[] values) {
+		NeuralNetworkUtils.checkVectorParameterSize(values, inputValues.length);
+		System.arraycopy(values, 0, inputValues, 0, inputValues.length);
+		inputValuesSet = true;
+	}
+
+	private void setEtalonValues(double[] values) {
+		NeuralNetworkUtils.checkVectorParameterSize(values, etalonValues.length);
+		System.arraycopy(values, 0, etalonValues, 0, etalonValues.length);
+		etalonValuesSet = true;
+	}
+
+	private void forward() {
+		double[] input = inputValues;
+		for (int l = 0; l < layers.length; l++) {
+			final DenseLayer layer = layers[l];
+			final ActivationFunction function = l == layers.length - 1 ? IDENTITY : activationFunction;
+			if (layer.size > parallelLayerThreshold)
+				layer.forward(input, function, ForkJoinPool.commonPool());
+			else
+				layer.forward(input, function);
+			input = layer.outputs;
+		}
+		final DenseLayer outputLayer = getOutputLayer();
+		loss.activation(outputLayer.sums, outputLayer.outputs, 0, outputLayer.size);
+	}
+
+	/**
+	 * Calculates batch matrices of sums and outputs of non-input layer, output
+	 * layer gets its outputs from loss.
+	 */
+	void forwardBatch(int layer, double[] input, int batchSize) {
+		final DenseLayer denseLayer = layers[layer - 1];
+		if (layer < layers.length) {
+			denseLayer.forwardBatch(input, batchSize, activationFunction, this);
+			return;
+		}
+		denseLayer.forwardBatch(input, batchSize, IDENTITY, this);
+		for (int b = 0; b < batchSize; b++) {
+			loss.activation(denseLayer.batchSums, denseLayer.batchOutputs, b * denseLayer.size, denseLayer.size);
+		}
+	}
+
+	/**
+	 * Calculates error derivatives of all layers and changes weights.
+	 * 
+	 * @return effect
+	 */
+	private double backward() {
+		final DenseLayer outputLayer = getOutputLayer();
+		loss.errorDerivativesBySum(outputLayer.sums, outputLayer.outputs, 0, etalonValues,
+				outputLayer.errorDerivativesBySum, outputLayer.size);
+		double effectSum = 0;
+		for (int l = layers.length - 1; l >= 0; l--) {
+			final DenseLayer layer = layers[l];
+			final DenseLayer previousLayer = l == 0 ? null : layers[l - 1];
+			final double[] input = previousLayer == null ? inputValues : previousLayer.outputs;
+			final double[] previousErrors = previousLayer == null ? null : previousLayer.errorDerivativesBySum;
+			if (previousErrors != null) {
+				for (int j = 0; j < previousLayer.size; j++) {
+					previousErrors[j] = 0;
+				}
+			}
+			if (layer.size > parallelLayerThreshold && weightChangedListener == null)
+				effectSum += layer.backpropagation(input, previousErrors, learningRate, this, l + 1, ForkJoinPool.commonPool());
+			else
+				effectSum += layer.backpropagation(input, previousErrors, learningRate, this, l + 1);
+			if (previousErrors != null) {
+				for (int j = 0; j < previousLayer.size; j++) {
+					previousErrors[j] *= activationFunction.activationDerivative(previousLayer.sums[j], previousLayer.outputs[j]);
+				}
+			}
+		}
+		return effectSum;
+	}
+
+	protected int getOutputsCount() {
+		return etalonValues.length;
+	}
+
+	protected double getOutputValue(int output) {
+		if (!inputValuesSet)
+			throw new IllegalStateException("input value was not set");
+		return getOutputLayer().outputs[output];
+	}
+
+	protected double getEtalonValue(int output) {
+		if (!etalonValuesSet)
+			throw new IllegalStateException("Etalon value was not set");
+		return etalonValues[output];
+	}
+
+	@Override
+	public void conclude(double[] inputValues) {
+		setInputValues(inputValues);
+		forward();
+	}
+
+	/**
+	 * Rows go through every layer together by batches of
+	 * {@value #CONCLUDE_BATCH_SIZE}, see
+	 * {@link #forwardBatch(int, double[], int)}.
+	 * Afterwards network holds values of the last row, as if it was concluded
+	 * alone.
+	 */
+	@Override
+	public void concludeBatch(double[][] inputs, double[][] results) {
+		NeuralNetworkUtils.checkConcludeBatchParameters(inputs, results);
+		final DenseLayer outputLayer = getOutputLayer();
+		int batchSize = 0;
+		for (int from = 0; from < inputs.length; from += batchSize) {
+			batchSize = Math.min(CONCLUDE_BATCH_SIZE, inputs.length - from);
+			if (batchInputValues.length < batchSize * inputValues.length)
+				batchInputValues = new double[batchSize * inputValues.length];
+			copyBatchInputs(inputs, from, batchSize, batchInputValues);
+			double[] input = batchInputValues;
+			for (int l = 0; l < layers.length; l++) {
+				forwardBatch(l + 1, input, batchSize);
+				input = layers[l].batchOutputs;
+			}
+			for (int b = 0; b < batchSize; b++) {
+				NeuralNetworkUtils.checkVectorParameterSize(results[from + b], outputLayer.size);
+				System.arraycopy(outputLayer.batchOutputs, b * outputLayer.size, results[from + b], 0, outputLayer.size);
+			}
+		}
+		if (batchSize == 0)
+			return;
+		setInputValues(inputs[inputs.length - 1]);
+		for (DenseLayer layer : layers) {
+			layer.selectExample(batchSize - 1);
+		}
+	}
+
+	@Override
+	public double[] getResult() {
+		final double[] results = new double[getOutputsCount()];
+		getResult(results);
+		return results;
+	}
+
+	@Override
+	public void getResult(double[] results) {
+		NeuralNetworkUtils.checkVectorParameterSize(results, getOutputsCount());
+		for (int i = 0; i < results.length; i++) {
+			results[i] = getOutputValue(i);
+		}
+	}
+
+	@Override
+	public double teach(double[] inputValues, double[] etalonValues) {
+		NeuralNetworkUtils.checkVectorParameterSize(etalonValues, this.etalonValues.length);
+		setInputValues(inputValues);
+		setEtalonValues(etalonValues);
+		forward();
+		final double effectSum = backward();
+		if (weightChangedListener != null)
+			weightChangedListener.onIterationFinished();
+		lastAverageEffect = effectSum / weightsCount;
+		return lastAverageEffect;
+	}
+
+	/**
+	 * All examples go through every layer together, see
+	 * {@link #forwardBatch(int, double[], int)}.
+	 * Afterwards network holds values of the last example, as if it was
+	 * taught alone.
+	 * 
+	 * If data parallelism is set, see {@link #setDataParallelism(int)}, batch
+	 * is split into equal contiguous shards, one per replica.
+	 */
+	@Override
+	public double teachBatch(double[][] inputs, double[][] etalons) {
+		NeuralNetworkUtils.checkBatchParameters(inputs, etalons);
+		final int batchSize = inputs.length;
+		if (lastBatchErrors.length < batchSize)
+			lastBatchErrors = new double[batchSize];
+		final int shards = replicas == null ? 1 : Math.min(replicas.length, batchSize);
+		if (shards == 1) {
+			accumulateGradient(inputs, etalons, 0, batchSize, lastBatchErrors);
+		} else {
+			replicasPool.invoke(new ShardTask(inputs, etalons, shards, 0, shards));
+			copyValues(replicas[shards - 1]);
+		}
+
+		final double rate = learningRate * (1d / batchSize);
+		double effectSum = 0;
+		for (int l = 0; l < layers.length; l++) {
+			effectSum += layers[l].applyGradient(rate, this, l + 1);
+		}
+		if (weightChangedListener != null)
+			weightChangedListener.onIterationFinished();
+		lastBatchSize = batchSize;
+		lastAverageEffect = effectSum / weightsCount;
+		return lastAverageEffect;
+	}
+
+	/**
+	 * Adds gradient of examples from inclusive to exclusive to accumulated
+	 * one of layers, weights are not changed.
+	 * 
+	 * @param errors
+	 *            receives errors of examples, by the same indexes
+	 */
+	private void accumulateGradient(double[][] inputs, double[][] etalons, int from, int to, double[] errors) {
+		final int batchSize = to - from;
+		if (batchInputValues.length < batchSize * inputValues.length)
+			batchInputValues = new double[batchSize * inputValues.length];
+		copyBatchInputs(inputs, from, batchSize, batchInputValues);
+
+		double[] input = batchInputValues;
+		for (int l = 0; l < layers.length; l++) {
+			forwardBatch(l + 1, input, batchSize);
+			input = layers[l].batchOutputs;
+		}
+		calculateOutputErrors(inputs, etalons, from, batchSize, errors);
+		for (int l = layers.length - 1; l >= 0; l--) {
+			final DenseLayer previousLayer = l == 0 ? null : layers[l - 1];
+			if (previousLayer == null) {
+				layers[l].accumulateGradientBatch(batchInputValues, null, batchSize, this);
+				break;
+			}
+			layers[l].accumulateGradientBatch(previousLayer.batchOutputs, previousLayer.batchErrorDerivativesBySum, batchSize,
+					this);
+			applyActivationDerivative(previousLayer, batchSize);
+		}
+		for (DenseLayer layer : layers) {
+			layer.selectExample(batchSize - 1);
+		}
+	}
+
+	/**
+	 * Copies batchSize input vectors, starting from given one, into rows of
+	 * matrix.
+	 */
+	void copyBatchInputs(double[][] inputs, int from, int batchSize, double[] matrix) {
+		for (int b = 0; b < batchSize; b++) {
+			NeuralNetworkUtils.checkVectorParameterSize(inputs[from + b], inputValues.length);
+			System.arraycopy(inputs[from + b], 0, matrix, b * inputValues.length, inputValues.length);
+		}
+	}
+
+	/**
+	 * Calculates errors of examples and error derivatives by sums of output
+	 * layer batch, which outputs are already calculated. Afterwards network
+	 * holds input, etalon and output values of the last example.
+	 * 
+	 * @param errors
+	 *            receives errors of examples, by the same indexes
+	 */
+	void calculateOutputErrors(double[][] inputs, double[][] etalons, int from, int batchSize, double[] errors) {
+		setInputValues(inputs[from + batchSize - 1]);
+		final DenseLayer outputLayer = getOutputLayer();
+		for (int b = 0; b < batchSize; b++) {
+			final double[] etalon = etalons[from + b];
+			NeuralNetworkUtils.checkVectorParameterSize(etalon, outputLayer.size);
+			final int row = b * outputLayer.size;
+			errors[from + b] = loss.error(outputLayer.batchOutputs, row, etalon, outputLayer.size);
+			loss.errorDerivativesBySum(outputLayer.batchSums, outputLayer.batchOutputs, row, etalon,
+					outputLayer.batchErrorDerivativesBySum, outputLayer.size);
+		}
+		outputLayer.selectExample(batchSize - 1);
+		setEtalonValues(etalons[from + batchSize - 1]);
+	}
+
+	/**
+	 * Turns error derivatives by outputs of layer batch, propagated from the
+	 * next layer, into error derivatives by sums.
+	 */
+	void applyActivationDerivative(DenseLayer layer, int batchSize) {
+		final double[] errors = layer.batchErrorDerivativesBySum;
+		for (int k = 0; k < batchSize * layer.size; k++) {
+			errors[k] *= activationFunction.activationDerivative(layer.batchSums[k], layer.batchOutputs[k]);
+		}
+	}
+
+	/**
+	 * Makes values of all neurons equal to ones of given replica.
+	 */
+	private void copyValues(DenseNeuralNetwork source) {
+		System.arraycopy(source.inputValues, 0, inputValues, 0, inputValues.length);
+		System.arraycopy(source.etalonValues, 0, etalonValues, 0, etalonValues.length);
+		inputValuesSet = source.inputValuesSet;
+		etalonValuesSet = source.etalonValuesSet;
+		for (int l = 0; l < layers.length; l++) {
+			final DenseLayer layer = layers[l];
+			final DenseLayer sourceLayer = source.layers[l];
+			System.arraycopy(sourceLayer.sums, 0, layer.sums, 0, layer.size);
+			System.arraycopy(sourceLayer.outputs, 0, layer.outputs, 0, layer.size);
+			System.arraycopy(sourceLayer.errorDerivativesBySum, 0, layer.errorDerivativesBySum, 0, layer.size);
+		}
+	}
+
+	/**
+	 * Accumulates gradient of shards from inclusive to exclusive in replica
+	 * of the first shard. Range of shards is halved until single shard
+	 * remains, then gradient of the second half is added to the first one.
+	 * So gradients are summed by binary tree, which depends only on shards
+	 * count, and results do not depend on threads timing.
+	 */
+	private class ShardTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] inputs;
+		private final double[][] etalons;
+		private final int shards;
+		private final int from;
+		private final int to;
+
+		ShardTask(double[][] inputs, double[][] etalons, int shards, int from, int to) {
+			this.inputs = inputs;
+			this.etalons = etalons;
+			this.shards = shards;
+			this.from = from;
+			this.to = to;
+		}
+
+		private int getShardStart(int shard) {
+			return (int) ((long) shard * inputs.length / shards);
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				replicas[from].accumulateGradient(inputs, etalons, getShardStart(from), getShardStart(to), lastBatchErrors);
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			invokeAll(new ShardTask(inputs, etalons, shards, from, middle), new ShardTask(inputs, etalons, shards, middle, to));
+			for (int l = 0; l < layers.length; l++) {
+				replicas[from].layers[l].mergeGradient(replicas[middle].layers[l]);
+			}
+		}
+	}
+
+	/**
+	 * Makes {@link #teachBatch(double[][], double[][])} synchronous data
+	 * parallel: every batch is split into replicasCount shards, gradients of
+	 * shards are calculated by replicas (see {@link #createWorker()}) in
+	 * separate threads, summed and applied once. Replicas share weights, so
+	 * the update is seen by all of them. Results do not depend on threads
+	 * timing, but depend on replicas count, because it defines summation
+	 * order. By default 1, batch is taught by this network alone.
+	 * <p>
+	 * Replicas count above 1 keeps its own pool of threads, which is shut
+	 * down by the next call only, so <code>setDataParallelism(1)</code> must
+	 * be called when data parallel teaching is over.
+	 * 
+	 * @param replicasCount
+	 *            count of shards and threads
+	 */
+	public void setDataParallelism(int replicasCount) {
+		if (replicasCount < 1)
+			throw new IllegalArgumentException("Replicas count must be positive");
+		if (replicasPool != null)
+			replicasPool.shutdown();
+		replicas = null;
+		replicasPool = null;
+		if (replicasCount == 1)
+			return;
+		replicas = new DenseNeuralNetwork[replicasCount];
+		replicas[0] = this;
+		for (int r = 1; r < replicasCount; r++) {
+			replicas[r] = (DenseNeuralNetwork) createWorker();
+		}
+		replicasPool = new ForkJoinPool(replicasCount);
+	}
+
+	public int getDataParallelism() {
+		return replicas == null ? 1 : replicas.length;
+	}
+
+	/**
+	 * Layers wider than threshold are split into ranges of neurons, which are
+	 * processed by {@link ForkJoinPool#commonPool()}, when single example is
+	 * concluded or taught. Backpropagation stays sequential while weight
+	 * changed listener is set. By default Integer.MAX_VALUE, all layers are
+	 * processed sequentially.
+	 * 
+	 * @param neurons
+	 *            layer size threshold
+	 */
+	public void setParallelLayerThreshold(int neurons) {
+		if (neurons < 0)
+			throw new IllegalArgumentException("Threshold must not be negative");
+		parallelLayerThreshold = neurons;
+	}
+
+	public int getParallelLayerThreshold() {
+		return parallelLayerThreshold;
+	}
+
+	@Override
+	public double getLastBatchError(int example) {
+		if (example >= lastBatchSize)
+			throw new IndexOutOfBoundsException("Example: " + example + ", last batch size: " + lastBatchSize);
+		return lastBatchErrors[example];
+	}
+
+	@Override
+	public double getLastAverageEffect() {
+		return lastAverageEffect;
+	}
+
+	@Override
+	public double getError() {
+		return error();
+	}
+
+	@Override
+	public double getError(double[] inputValues, double[] etalonValues) {
+		NeuralNetworkUtils.checkVectorParameterSize(etalonValues, this.etalonValues.length);
+		conclude(inputValues);
+		setEtalonValues(etalonValues);
+		return getError();
+	}
+
+	@Override
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	@Override
+	public void erase() {
+		inputValuesSet = false;
+		etalonValuesSet = false;
+	}
+
+	/**
+	 * Same order as {@link info.adamovskiy.nn.SimpleNeuralNetwork}: depth
+	 * first from outputs, shift neuron is the first input of every neuron.
+	 * Recursion depth is bounded by layers count.
+	 *
+	 * @return true if traversal should be stopped
+	 */
+	private boolean traverseInputs(int layer, int position, TraversalListener listener, BitSet[] traversedNeurons) {
+		if (traversedNeurons[layer].get(position))
+			return false;
+		traversedNeurons[layer].set(position);
+		if (layer == 0)
+			return false;
+		final DenseLayer denseLayer = layers[layer - 1];
+		final DenseNeuralNode output = getNode(layer, position);
+		if (!listener.onEdgeTraversal(denseLayer.getBias(position), getShiftNode(), output))
+			return true;
+		for (int j = 0; j < denseLayer.inputsCount; j++) {
+			if (!listener.onEdgeTraversal(denseLayer.getWeight(position, j), getNode(layer - 1, j), output))
+				return true;
+			if (traverseInputs(layer - 1, j, listener, traversedNeurons))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void traverseNetwork(TraversalListener listener) {
+		final BitSet[] traversedNeurons = new BitSet[layers.length + 1];
+		for (int l = 0; l < traversedNeurons.length; l++) {
+			traversedNeurons[l] = new BitSet(getLayerSize(l));
+		}
+		for (int i = 0; i < getOutputsCount(); i++) {
+			if (traverseInputs(layers.length, i, listener, traversedNeurons))
+				return;
+		}
+	}
+
+	@Override
+	public void setWeightChangedListener(WeightChangedListener listener) {
+		this.weightChangedListener = listener;
+	}
+
+	WeightChangedListener getWeightChangedListener() {
+		return weightChangedListener;
+	}
+
+	void fireWeightChanged(int inputLayer, int inputPosition, int outputLayer, int outputPosition, double oldWeight, double newWeight) {
+		final DenseNeuralNode input = inputLayer == -1 ? getShiftNode() : getNode(inputLayer, inputPosition);
+		weightChangedListener.onWeightChanged(input, (DenseNeuralNode.Hidden) getNode(outputLayer, outputPosition),
+				oldWeight, newWeight);
+	}
+
+	@Override
+	public long getWeightsCount() {
+		return weightsCount;
+	}
+
+	/**
+	 * Session concludes by its own worker, see {@link #createWorker()}.
+	 */
+	@Override
+	public InferenceSession createInferenceSession() {
+		final DenseNeuralNetwork worker = (DenseNeuralNetwork) createWorker();
+		return new InferenceSession() {
+			@Override
+			public int getInputsCount() {
+				return worker.inputValues.length;
+			}
+
+			@Override
+			public int getOutputsCount() {
+				return worker.etalonValues.length;
+			}
+
+			@Override
+			public void conclude(double[] inputValues, double[] results) {
+				NeuralNetworkUtils.checkVectorParameterSize(results, worker.etalonValues.length);
+				worker.conclude(inputValues);
+				System.arraycopy(worker.getOutputLayer().outputs, 0, results, 0, results.length);
+			}
+
+			@Override
+			public void concludeBatch(double[][] inputs, double[][] results) {
+				worker.concludeBatch(inputs, results);
+			}
+		};
+	}
+
+	public WeightStorage getWeightStorage() {
+		return storage;
+	}
+
+	ActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+
+	public Loss getLoss() {
+		return loss;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             if loss or activation function can not be saved, see
+	 *             {@link NetworkSnapshot}
+	 */
+	@Override
+	public void save(File file) throws IOException {
+		final int[] layerSizes = new int[getLayersCount()];
+		for (int l = 0; l < layerSizes.length; l++) {
+			layerSizes[l] = getLayerSize(l);
+		}
+		NetworkSnapshot.write(file, learningRate, activationFunction, NetworkSnapshot.LossType.of(loss), layerSizes,
+				new NetworkSnapshot.LayerWeights() {
+					@Override
+					public double getBias(int layer, int neuron) {
+						return layers[layer - 1].getBias(neuron);
+					}
+
+					@Override
+					public double getWeight(int layer, int neuron, int input) {
+						return layers[layer - 1].getWeight(neuron, input);
+					}
+				});
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             if loss or activation function can not be saved, see
+	 *             {@link NetworkSnapshot}
+	 */
+	@Override
+	public NetworkSnapshot.Capture capture() {
+		final NetworkSnapshot.LossType lossType = NetworkSnapshot.LossType.of(loss);
+		final int[] layerSizes = new int[getLayersCount()];
+		for (int l = 0; l < layerSizes.length; l++) {
+			layerSizes[l] = getLayerSize(l);
+		}
+		final double[][] biases = new double[layers.length][];
+		final double[][] weights = new double[layers.length][];
+		for (int l = 0; l < layers.length; l++) {
+			biases[l] = new double[layers[l].size];
+			weights[l] = new double[layers[l].size * layers[l].inputsCount];
+			layers[l].copyWeights(weights[l], biases[l]);
+		}
+		return new NetworkSnapshot.Capture(learningRate, activationFunction, lossType, layerSizes, biases, weights);
+	}
+
+	/**
+	 * Loss of this network, see {@link #getLoss()}.
+	 */
+	@Override
+	public double error() {
+		if (!inputValuesSet)
+			throw new IllegalStateException("input value was not set");
+		if (!etalonValuesSet)
+			throw new IllegalStateException("Etalon value was not set");
+		return loss.error(getOutputLayer().outputs, 0, etalonValues, etalonValues.length);
+	}
+
+	@Override
+	public double errorDerivative(double outputValue, double etalonValue) {
+		return loss.errorDerivative(outputValue, etalonValue);
+	}
+
+	/**
+	 * @return matrix multiplier shared by all layers, created on first call
+	 */
+	Gemm getGemm() {
+		if (gemm == null)
+			gemm = Gemm.create();
+		return gemm;
+	}
+
+	int getLayersCount() {
+		return layers.length + 1;
+	}
+
+	int getLayerSize(int layer) {
+		return layer == 0 ? inputValues.length : layers[layer - 1].size;
+	}
+
+	/**
+	 * @param layer
+	 *            non-input layer number
+	 */
+	DenseLayer getLayer(int layer) {
+		return layers[layer - 1];
+	}
+
+	double getNodeOutputValue(int layer, int position) {
+		if (!inputValuesSet)
+			throw new IllegalStateException("input value was not set");
+		return layer == 0 ? inputValues[position] : layers[layer - 1].outputs[position];
+	}
+
+	/**
+	 * Nodes are numbered layer by layer, shift neuron is the last one.
+	 */
+	int getNodeId(int layer, int position) {
+		int id = 0;
+		for (int l = 0; l < (layer == -1 ? getLayersCount() : layer); l++) {
+			id += getLayerSize(l);
+		}
+		return id + (layer == -1 ? 0 : position);
+	}
+
+	boolean isInputValueSet() {
+		return inputValuesSet;
+	}
+
+	boolean isEtalonValueSet() {
+		return etalonValuesSet;
+	}
+
+	DenseNeuralNode getShiftNode() {
+		if (shiftNode == null)
+			shiftNode = new DenseNeuralNode.Input(this, -1, -1);
+		return shiftNode;
+	}
+
+	DenseNeuralNode getNode(int layer, int position) {
+		if (nodes == null)
+			nodes = new DenseNeuralNode[layers.length + 1][];
+		if (nodes[layer] == null)
+			nodes[layer] = new DenseNeuralNode[getLayerSize(layer)];
+		DenseNeuralNode node = nodes[layer][position];
+		if (node == null) {
+			if (layer == 0)
+				node = new DenseNeuralNode.Input(this, layer, position);
+			else if (layer == layers.length)
+				node = new DenseNeuralNode.Output(this, layer, position);
+			else
+				node = new DenseNeuralNode.Hidden(this, layer, position);
+			nodes[layer][position] = node;
+		}
+		return node;
+	}
+}
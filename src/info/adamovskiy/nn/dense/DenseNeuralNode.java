@@ -0,0 +1,337 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetwork.WeightChangedListener;
+import info.adamovskiy.nn.NeuralNetworkBuilder.LayeredNeuronLabel;
+import info.adamovskiy.nn.neuron.CacheGeneration;
+import info.adamovskiy.nn.neuron.NeuralNode;
+import info.adamovskiy.nn.neuron.Neuron;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * View of single neuron of {@link DenseNeuralNetwork}. Holds no state except
+ * its position, so topology can not be changed and network can not be taught
+ * through it.
+ */
+public abstract class DenseNeuralNode implements NeuralNode {
+	public static class Input extends DenseNeuralNode {
+		Input(DenseNeuralNetwork network, int layer, int position) {
+			super(network, layer, position);
+		}
+
+		@Override
+		public double getOutputValue() {
+			if (layer == -1)
+				return 1d;
+			return network.getNodeOutputValue(layer, position);
+		}
+
+		@Override
+		public NeuronIterator getInputIterator() {
+			return new InputIterator();
+		}
+
+		@Override
+		public Set<NeuralNode> getTerminalInputs() {
+			Set<NeuralNode> result = new LinkedHashSet<>();
+			result.add(this);
+			return result;
+		}
+
+		//for debug
+		@Override
+		public String toString() {
+			if (layer == -1)
+				return "1.0";
+			return network.isInputValueSet() ? Double.toString(getOutputValue()) : "";
+		}
+	}
+
+	public static class Hidden extends DenseNeuralNode implements Neuron {
+		Hidden(DenseNeuralNetwork network, int layer, int position) {
+			super(network, layer, position);
+		}
+
+		@Override
+		public double getOutputValue() {
+			return network.getNodeOutputValue(layer, position);
+		}
+
+		@Override
+		public NeuronIterator getInputIterator() {
+			return new InputIterator();
+		}
+
+		@Override
+		public void addInput(NeuralNode input, double weight) {
+			throw new UnsupportedOperationException("Topology of dense network can not be changed");
+		}
+
+		@Override
+		public void addInputs(NeuralNode[] inputs, double[] weights) {
+			throw new UnsupportedOperationException("Topology of dense network can not be changed");
+		}
+
+		@Override
+		public double getInputWeight(Neuron neuron) {
+			if (!(neuron instanceof DenseNeuralNode) || ((DenseNeuralNode) neuron).network != network)
+				throw new IllegalArgumentException("Given neuron is not input");
+			final DenseNeuralNode input = (DenseNeuralNode) neuron;
+			final DenseLayer denseLayer = network.getLayer(layer);
+			if (input.layer == -1)
+				return denseLayer.getBias(position);
+			if (input.layer != layer - 1)
+				throw new IllegalArgumentException("Given neuron is not input");
+			return denseLayer.getWeight(position, input.position);
+		}
+
+		@Override
+		public double getInputWeight(int inputIndex) {
+			final DenseLayer denseLayer = network.getLayer(layer);
+			if (inputIndex > denseLayer.inputsCount)
+				throw new IndexOutOfBoundsException("Input index: " + inputIndex + ", inputs count: " + (denseLayer.inputsCount + 1));
+			return inputIndex == 0 ? denseLayer.getBias(position) : denseLayer.getWeight(position, inputIndex - 1);
+		}
+
+		@Override
+		public void setInputWeight(int inputIndex, double weight) {
+			final DenseLayer denseLayer = network.getLayer(layer);
+			if (inputIndex > denseLayer.inputsCount)
+				throw new IndexOutOfBoundsException("Input index: " + inputIndex + ", inputs count: " + (denseLayer.inputsCount + 1));
+			if (inputIndex == 0)
+				denseLayer.setBias(position, weight);
+			else
+				denseLayer.setWeight(position, inputIndex - 1, weight);
+		}
+
+		@Override
+		public int getInputsCount() {
+			return network.getLayer(layer).inputsCount + 1;
+		}
+
+		@Override
+		public NeuralNode getInput(int inputIndex) {
+			if (inputIndex >= getInputsCount())
+				throw new IndexOutOfBoundsException("Input index: " + inputIndex + ", inputs count: " + getInputsCount());
+			return inputIndex == 0 ? network.getShiftNode() : network.getNode(layer - 1, inputIndex - 1);
+		}
+
+		@Override
+		public double activation(double sum) {
+			return network.getActivationFunction().activation(sum);
+		}
+
+		@Override
+		public double activationDerivative(double sum, double output) {
+			return network.getActivationFunction().activationDerivative(sum, output);
+		}
+
+		@Override
+		public double getErrorDerivativeBySum(NeuralNetwork host) {
+			return network.getLayer(layer).errorDerivativesBySum[position];
+		}
+
+		@Override
+		public void accumulateGradient(NeuralNetwork host) {
+			throw new UnsupportedOperationException("Dense network is taught as a whole only");
+		}
+
+		@Override
+		public double applyAccumulatedGradient(NeuralNetwork host, double scale, WeightChangedListener weightChangedListener) {
+			throw new UnsupportedOperationException("Dense network is taught as a whole only");
+		}
+
+		@Override
+		public Set<NeuralNode> getTerminalInputs() {
+			Set<NeuralNode> result = new LinkedHashSet<>();
+			result.add(network.getShiftNode());
+			for (int j = 0; j < network.getLayerSize(0); j++) {
+				result.add(network.getNode(0, j));
+			}
+			return result;
+		}
+	}
+
+	public static class Output extends Hidden {
+		Output(DenseNeuralNetwork network, int layer, int position) {
+			super(network, layer, position);
+		}
+
+		/**
+		 * See {@link info.adamovskiy.nn.loss.Loss#activation(double)}.
+		 */
+		@Override
+		public double activation(double sum) {
+			return network.getLoss().activation(sum);
+		}
+
+		// for debug
+		@Override
+		public String toString() {
+			String result = "";
+			if (network.isEtalonValueSet()) {
+				result = String.format("etalon: %.8f", network.getEtalonValue(position));
+				if (network.isInputValueSet())
+					result += ", ";
+			}
+			if (network.isInputValueSet())
+				result += String.format("output: %.8f", getOutputValue());
+			return result;
+		}
+	}
+
+	/**
+	 * Iterates through shift neuron and all neurons of previous layer.
+	 */
+	private class InputIterator implements NeuronIterator {
+		private int cursor = -2;
+
+		private void checkValidity() {
+			if (cursor == -2)
+				throw new IllegalStateException();
+		}
+
+		private int getInputsCount() {
+			return layer < 1 ? 0 : network.getLayerSize(layer - 1);
+		}
+
+		@Override
+		public double getWeight() {
+			checkValidity();
+			final DenseLayer denseLayer = network.getLayer(layer);
+			return cursor == -1 ? denseLayer.getBias(position) : denseLayer.getWeight(position, cursor);
+		}
+
+		@Override
+		public NeuralNode getNeuron() {
+			checkValidity();
+			return cursor == -1 ? network.getShiftNode() : network.getNode(layer - 1, cursor);
+		}
+
+		@Override
+		public boolean stepNext() {
+			checkValidity();
+			if (++cursor == getInputsCount()) {
+				cursor = -2;
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean moveToFirst() {
+			if (layer < 1)
+				return false;
+			cursor = -1;
+			return true;
+		}
+	}
+
+	/**
+	 * Iterates through all neurons of next layer, or through all non-input
+	 * neurons for the shift neuron.
+	 */
+	private class OutputIterator implements NeuronIterator {
+		private int outputLayer = -1;
+		private int cursor;
+
+		private void checkValidity() {
+			if (outputLayer == -1)
+				throw new IllegalStateException();
+		}
+
+		private int getLastOutputLayer() {
+			return layer == -1 ? network.getLayersCount() - 1 : layer + 1;
+		}
+
+		@Override
+		public double getWeight() {
+			checkValidity();
+			final DenseLayer denseLayer = network.getLayer(outputLayer);
+			return layer == -1 ? denseLayer.getBias(cursor) : denseLayer.getWeight(cursor, position);
+		}
+
+		@Override
+		public NeuralNode getNeuron() {
+			checkValidity();
+			return network.getNode(outputLayer, cursor);
+		}
+
+		@Override
+		public boolean stepNext() {
+			checkValidity();
+			if (++cursor < network.getLayerSize(outputLayer))
+				return true;
+			if (outputLayer < getLastOutputLayer()) {
+				outputLayer++;
+				cursor = 0;
+				return true;
+			}
+			outputLayer = -1;
+			return false;
+		}
+
+		@Override
+		public boolean moveToFirst() {
+			if (layer == network.getLayersCount() - 1)
+				return false;
+			outputLayer = layer == -1 ? 1 : layer + 1;
+			cursor = 0;
+			return true;
+		}
+	}
+
+	protected final DenseNeuralNetwork network;
+	protected final int layer;
+	protected final int position;
+	private final LayeredNeuronLabel label;
+
+	private DenseNeuralNode(DenseNeuralNetwork network, int layer, int position) {
+		this.network = network;
+		this.layer = layer;
+		this.position = position;
+		label = new LayeredNeuronLabel(layer, position);
+	}
+
+	@Override
+	public Object getLabel() {
+		return label;
+	}
+
+	@Override
+	public int getId() {
+		return network.getNodeId(layer, position);
+	}
+
+	@Override
+	public void setId(int id) {
+		throw new UnsupportedOperationException("Ids of dense network nodes are defined by their positions");
+	}
+
+	@Override
+	public void addOutput(Neuron output, int inputIndex) {
+		throw new UnsupportedOperationException("Topology of dense network can not be changed");
+	}
+
+	@Override
+	public NeuronIterator getOutputIterator() {
+		return new OutputIterator();
+	}
+
+	@Override
+	public double backpropagation(NeuralNetwork host, WeightChangedListener weightChangedListener) {
+		throw new UnsupportedOperationException("Dense network is taught as a whole only");
+	}
+
+	@Override
+	public void erase() {
+		network.erase();
+	}
+
+	@Override
+	public void setCacheGeneration(CacheGeneration cacheGeneration) {
+		throw new UnsupportedOperationException("Dense network has no per-neuron caches");
+	}
+}
@@ -0,0 +1,370 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.utils.NeuralNetworkUtils;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pipeline parallel teaching of deep {@link DenseNeuralNetwork}. Layers are
+ * split into contiguous stages with roughly equal weights count, every stage
+ * is processed by its own thread. Batch is split into micro-batches, which go
+ * through stages forward and then backward, so different stages work on
+ * different micro-batches at the same time. Stage threads exchange micro-batch
+ * numbers through bounded queues, batch matrices of layers are kept per
+ * micro-batch until its backward pass is done, so they are handed over
+ * without copying.
+ *
+ * Gradient of the whole batch is accumulated and applied once, like in
+ * {@link DenseNeuralNetwork#teachBatch(double[][], double[][])}. Every stage
+ * receives backward passes in order of micro-batches, so results do not
+ * depend on threads timing. Values of network neurons are not changed.
+ *
+ * At the beginning and the end of every batch some stages have nothing to do
+ * (pipeline bubble): with S stages and M micro-batches at least (S - 1) / (M +
+ * S - 1) of stage time is idle. Measured share is reported by
+ * {@link #getUtilization()}.
+ *
+ * Pipeline must be closed to stop its threads. It must not be used with
+ * other teaching methods of network concurrently.
+ */
+public class DensePipeline implements Closeable {
+	private final DenseNeuralNetwork network;
+	private final int microBatchesCount;
+	private final Stage[] stages;
+
+	// batch state, written before micro-batches are sent to stages
+	private double[][] inputs;
+	private double[][] etalons;
+	private double[] errors = new double[0];
+	private int batchSize;
+	private int microBatches;
+	private int microBatchCapacity;
+	private double[][] microBatchInputs;
+	// batch matrices by layer (0-based) and micro-batch
+	private double[][][] stashedSums;
+	private double[][][] stashedOutputs;
+	private double[][][] stashedErrors;
+
+	private volatile CountDownLatch batchDone;
+	private volatile Throwable failure;
+	private boolean closed;
+
+	private final AtomicLongArray busyTimes;
+	private long wallTime;
+
+	/**
+	 * @param stagesCount
+	 *            count of stages and threads, at most count of non-input
+	 *            layers
+	 * @param microBatchesCount
+	 *            count of micro-batches every batch is split into
+	 */
+	public DensePipeline(DenseNeuralNetwork network, int stagesCount, int microBatchesCount) {
+		final int layersCount = network.getLayersCount() - 1;
+		if (stagesCount < 1 || stagesCount > layersCount)
+			throw new IllegalArgumentException(String.format("Stages count must be from 1 to %d", layersCount));
+		if (microBatchesCount < 1)
+			throw new IllegalArgumentException("Micro-batches count must be positive");
+		this.network = network;
+		this.microBatchesCount = microBatchesCount;
+		stages = new Stage[stagesCount];
+		busyTimes = new AtomicLongArray(stagesCount);
+		final int[] bounds = partition(network, stagesCount);
+		for (int s = 0; s < stagesCount; s++) {
+			stages[s] = new Stage(s, bounds[s], bounds[s + 1]);
+		}
+		for (Stage stage : stages) {
+			stage.start();
+		}
+	}
+
+	/**
+	 * Splits layers into stages greedily: stage is closed when its weights
+	 * count reaches average one, but every stage gets at least one layer.
+	 *
+	 * @return first layer (0-based) of every stage and layers count at the end
+	 */
+	private static int[] partition(DenseNeuralNetwork network, int stagesCount) {
+		final int layersCount = network.getLayersCount() - 1;
+		final int[] bounds = new int[stagesCount + 1];
+		final double average = (double) network.getWeightsCount() / stagesCount;
+		int layer = 0;
+		for (int s = 0; s < stagesCount - 1; s++) {
+			long weights = 0;
+			do {
+				final DenseLayer denseLayer = network.getLayer(layer + 1);
+				weights += (long) denseLayer.size * (denseLayer.inputsCount + 1);
+				layer++;
+			} while (weights < average && layersCount - layer > stagesCount - s - 1);
+			bounds[s + 1] = layer;
+		}
+		bounds[stagesCount] = layersCount;
+		return bounds;
+	}
+
+	public int getStagesCount() {
+		return stages.length;
+	}
+
+	public int getMicroBatchesCount() {
+		return microBatchesCount;
+	}
+
+	/**
+	 * @return count of non-input layers processed by stage
+	 */
+	public int getStageLayersCount(int stage) {
+		return stages[stage].lastLayer - stages[stage].firstLayer;
+	}
+
+	private int getMicroBatchStart(int microBatch) {
+		return (int) ((long) microBatch * batchSize / microBatches);
+	}
+
+	private void ensureCapacity() {
+		final int capacity = (batchSize + microBatchesCount - 1) / microBatchesCount;
+		if (capacity <= microBatchCapacity)
+			return;
+		microBatchCapacity = capacity;
+		final int layersCount = network.getLayersCount() - 1;
+		microBatchInputs = new double[microBatchesCount][capacity * network.getLayerSize(0)];
+		stashedSums = new double[layersCount][microBatchesCount][];
+		stashedOutputs = new double[layersCount][microBatchesCount][];
+		stashedErrors = new double[layersCount][microBatchesCount][];
+		for (int l = 0; l < layersCount; l++) {
+			final int size = network.getLayerSize(l + 1);
+			for (int m = 0; m < microBatchesCount; m++) {
+				stashedSums[l][m] = new double[capacity * size];
+				stashedOutputs[l][m] = new double[capacity * size];
+				stashedErrors[l][m] = new double[capacity * size];
+			}
+		}
+	}
+
+	/**
+	 * Teaches network by batch, see
+	 * {@link DenseNeuralNetwork#teachBatch(double[][], double[][])}.
+	 *
+	 * @return effect
+	 */
+	public double teachBatch(double[][] inputs, double[][] etalons) {
+		if (closed)
+			throw new IllegalStateException("Pipeline is closed");
+		NeuralNetworkUtils.checkBatchParameters(inputs, etalons);
+		this.inputs = inputs;
+		this.etalons = etalons;
+		batchSize = inputs.length;
+		if (errors.length < batchSize)
+			errors = new double[batchSize];
+		microBatches = Math.min(microBatchesCount, batchSize);
+		ensureCapacity();
+		batchDone = new CountDownLatch(microBatches);
+		final long start = System.nanoTime();
+		for (int m = 0; m < microBatches; m++) {
+			final int from = getMicroBatchStart(m);
+			network.copyBatchInputs(inputs, from, getMicroBatchStart(m + 1) - from, microBatchInputs[m]);
+			stages[0].send(m);
+		}
+		boolean interrupted = false;
+		while (true) {
+			try {
+				batchDone.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		wallTime += System.nanoTime() - start;
+		if (failure != null) {
+			close();
+			throw new IllegalStateException("Pipeline stage failed", failure);
+		}
+
+		final double rate = network.getLearningRate() * (1d / batchSize);
+		double effectSum = 0;
+		for (Stage stage : stages) {
+			for (int l = stage.firstLayer; l < stage.lastLayer; l++) {
+				effectSum += stage.worker.getLayer(l + 1).applyGradient(rate, network, l + 1);
+			}
+		}
+		if (network.getWeightChangedListener() != null)
+			network.getWeightChangedListener().onIterationFinished();
+		return effectSum / network.getWeightsCount();
+	}
+
+	public double getLastBatchError(int example) {
+		if (example >= batchSize)
+			throw new IndexOutOfBoundsException("Example: " + example + ", last batch size: " + batchSize);
+		return errors[example];
+	}
+
+	/**
+	 * @return share of time stage was busy during batches taught so far
+	 */
+	public double getStageUtilization(int stage) {
+		return wallTime == 0 ? 0 : (double) busyTimes.get(stage) / wallTime;
+	}
+
+	/**
+	 * @return average share of time stages were busy during batches taught so
+	 *         far
+	 */
+	public double getUtilization() {
+		double sum = 0;
+		for (int s = 0; s < stages.length; s++) {
+			sum += getStageUtilization(s);
+		}
+		return sum / stages.length;
+	}
+
+	/**
+	 * @return share of stage time, which is idle because of pipeline bubble,
+	 *         <code>1 - {@link #getUtilization()}</code>
+	 */
+	public double getBubble() {
+		return 1 - getUtilization();
+	}
+
+	/**
+	 * Stops stage threads.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		for (Stage stage : stages) {
+			stage.interrupt();
+		}
+	}
+
+	private void fail(Throwable e) {
+		if (failure == null)
+			failure = e;
+		final CountDownLatch latch = batchDone;
+		while (latch.getCount() > 0) {
+			latch.countDown();
+		}
+	}
+
+	/**
+	 * Thread which processes layers from firstLayer inclusive to lastLayer
+	 * exclusive (0-based) by its own worker of network. Messages are
+	 * micro-batch numbers, forward ones are non-negative, backward ones are
+	 * <code>-2 - microBatch</code>.
+	 */
+	private class Stage extends Thread {
+		private final int index;
+		private final int firstLayer;
+		private final int lastLayer;
+		private final DenseNeuralNetwork worker;
+		// every stage receives at most two messages per micro-batch
+		private final BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(2 * microBatchesCount);
+
+		Stage(int index, int firstLayer, int lastLayer) {
+			super("DensePipeline-stage-" + index);
+			setDaemon(true);
+			this.index = index;
+			this.firstLayer = firstLayer;
+			this.lastLayer = lastLayer;
+			worker = (DenseNeuralNetwork) network.createWorker();
+		}
+
+		void send(int message) {
+			try {
+				queue.put(message);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException("Interrupted while sending to stage " + index, e);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					final int message = queue.take();
+					final boolean forwardMessage = message >= 0;
+					final int microBatch = forwardMessage ? message : -2 - message;
+					final long start = System.nanoTime();
+					if (forwardMessage)
+						forward(microBatch);
+					else
+						backward(microBatch);
+					busyTimes.addAndGet(index, System.nanoTime() - start);
+					if (forwardMessage && index < stages.length - 1)
+						stages[index + 1].send(microBatch);
+					else if (index > 0)
+						stages[index - 1].send(-2 - microBatch);
+					else
+						batchDone.countDown();
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * Makes layers of this stage use batch matrices of micro-batch.
+		 */
+		private void restore(int microBatch) {
+			for (int l = firstLayer; l < lastLayer; l++) {
+				final DenseLayer layer = worker.getLayer(l + 1);
+				layer.batchSums = stashedSums[l][microBatch];
+				layer.batchOutputs = stashedOutputs[l][microBatch];
+				layer.batchErrorDerivativesBySum = stashedErrors[l][microBatch];
+			}
+		}
+
+		private double[] getInput(int layer, int microBatch) {
+			return layer == 0 ? microBatchInputs[microBatch] : stashedOutputs[layer - 1][microBatch];
+		}
+
+		private int getMicroBatchSize(int microBatch) {
+			return getMicroBatchStart(microBatch + 1) - getMicroBatchStart(microBatch);
+		}
+
+		/**
+		 * Last stage starts backward pass right after forward one.
+		 */
+		private void forward(int microBatch) {
+			restore(microBatch);
+			final int size = getMicroBatchSize(microBatch);
+			for (int l = firstLayer; l < lastLayer; l++) {
+				worker.forwardBatch(l + 1, getInput(l, microBatch), size);
+			}
+			if (index == stages.length - 1) {
+				worker.calculateOutputErrors(inputs, etalons, getMicroBatchStart(microBatch), size, errors);
+				propagate(microBatch, size);
+			}
+		}
+
+		private void backward(int microBatch) {
+			restore(microBatch);
+			final int size = getMicroBatchSize(microBatch);
+			worker.applyActivationDerivative(worker.getLayer(lastLayer), size);
+			propagate(microBatch, size);
+		}
+
+		/**
+		 * Error derivatives by sums of the last layer of stage are already
+		 * calculated. Errors of the last layer of previous stage are written
+		 * directly into its batch matrix of micro-batch.
+		 */
+		private void propagate(int microBatch, int size) {
+			for (int l = lastLayer - 1; l >= firstLayer; l--) {
+				final double[] inputErrors = l == 0 ? null : stashedErrors[l - 1][microBatch];
+				worker.getLayer(l + 1).accumulateGradientBatch(getInput(l, microBatch), inputErrors, size, worker);
+				if (l > firstLayer)
+					worker.applyActivationDerivative(worker.getLayer(l), size);
+			}
+		}
+	}
+}
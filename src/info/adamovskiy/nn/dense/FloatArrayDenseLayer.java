@@ -0,0 +1,230 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.linalg.Kernels;
+
+/**
+ * Weights are stored in java heap float arrays, sums and propagated errors are
+ * accumulated in single precision too. Input vector is converted once per
+ * pass, so inner loops ({@link Kernels}) deal with floats only.
+ * 
+ * Ranges of neurons, which do not cover whole layer, are processed by
+ * parallel passes, so they accumulate input errors in their own vector of
+ * their chunk.
+ */
+class FloatArrayDenseLayer extends DenseLayer {
+	private final Kernels kernels = Kernels.getDefault();
+	private final float[] weights;
+	private final float[] biases;
+	private final float[] floatInput;
+	private final float[] floatInputErrors;
+	// per-chunk input errors of parallel backpropagation
+	private float[][] chunkFloatInputErrors = new float[0][];
+	private float[] weightGradients;
+	private float[] biasGradients;
+
+	FloatArrayDenseLayer(int size, int inputsCount) {
+		this(size, inputsCount, new float[size * inputsCount], new float[size]);
+	}
+
+	private FloatArrayDenseLayer(int size, int inputsCount, float[] weights, float[] biases) {
+		super(size, inputsCount);
+		this.weights = weights;
+		this.biases = biases;
+		floatInput = new float[inputsCount];
+		floatInputErrors = new float[inputsCount];
+	}
+
+	@Override
+	DenseLayer shareWeights() {
+		return new FloatArrayDenseLayer(size, inputsCount, weights, biases);
+	}
+
+	private float[] toFloatInput(double[] input) {
+		for (int j = 0; j < inputsCount; j++) {
+			floatInput[j] = (float) input[j];
+		}
+		return floatInput;
+	}
+
+	@Override
+	void prepareInput(double[] input) {
+		toFloatInput(input);
+	}
+
+	/**
+	 * @return null if inputErrors is null
+	 */
+	private float[] toFloatInputErrors(double[] inputErrors) {
+		return toFloatInputErrors(inputErrors, floatInputErrors);
+	}
+
+	private float[] toFloatInputErrors(double[] inputErrors, float[] errors) {
+		if (inputErrors == null)
+			return null;
+		for (int j = 0; j < inputsCount; j++) {
+			errors[j] = (float) inputErrors[j];
+		}
+		return errors;
+	}
+
+	private void fromFloatInputErrors(float[] errors, double[] inputErrors) {
+		if (errors == null)
+			return;
+		for (int j = 0; j < inputsCount; j++) {
+			inputErrors[j] = errors[j];
+		}
+	}
+
+	@Override
+	double getWeight(int neuron, int input) {
+		return weights[neuron * inputsCount + input];
+	}
+
+	@Override
+	void setWeight(int neuron, int input, double weight) {
+		weights[neuron * inputsCount + input] = (float) weight;
+	}
+
+	@Override
+	double getBias(int neuron) {
+		return biases[neuron];
+	}
+
+	@Override
+	void setBias(int neuron, double bias) {
+		biases[neuron] = (float) bias;
+	}
+
+	@Override
+	void forwardRange(double[] input, ActivationFunction activationFunction, int from, int to) {
+		final float[] x = floatInput;
+		for (int i = from; i < to; i++) {
+			final float sum = kernels.dot(biases[i], weights, i * inputsCount, x, inputsCount);
+			sums[i] = sum;
+			outputs[i] = (float) activationFunction.activation(sum);
+		}
+	}
+
+	@Override
+	double backpropagationRange(double[] input, double[] inputErrors, double learningRate, DenseNeuralNetwork host,
+			int layerIndex, int from, int to) {
+		return backpropagationRange(inputErrors, floatInputErrors, learningRate, host, layerIndex, from, to);
+	}
+
+	@Override
+	void prepareChunks(int chunks) {
+		if (chunkFloatInputErrors.length < chunks) {
+			chunkFloatInputErrors = new float[chunks][];
+			for (int c = 0; c < chunks; c++) {
+				chunkFloatInputErrors[c] = new float[inputsCount];
+			}
+		}
+	}
+
+	@Override
+	double backpropagationChunk(int chunk, double[] input, double[] inputErrors, double learningRate,
+			DenseNeuralNetwork host, int layerIndex, int from, int to) {
+		return backpropagationRange(inputErrors, chunkFloatInputErrors[chunk], learningRate, host, layerIndex, from, to);
+	}
+
+	private double backpropagationRange(double[] inputErrors, float[] errorsScratch, double learningRate,
+			DenseNeuralNetwork host, int layerIndex, int from, int to) {
+		final boolean notifyListener = host.getWeightChangedListener() != null;
+		final float[] x = floatInput;
+		final float[] errors = toFloatInputErrors(inputErrors, errorsScratch);
+		final float rate = (float) learningRate;
+		double effectSum = 0;
+		for (int i = from; i < to; i++) {
+			final float errorDerivativeBySum = (float) errorDerivativesBySum[i];
+			final float oldBias = biases[i];
+			final float newBias = oldBias - rate * errorDerivativeBySum;
+			effectSum += Math.abs(oldBias - newBias);
+			biases[i] = newBias;
+			if (notifyListener)
+				host.fireWeightChanged(-1, 0, layerIndex, i, oldBias, newBias);
+
+			final int row = i * inputsCount;
+			if (!notifyListener) {
+				effectSum += kernels.updateRow(weights, row, x, rate, errorDerivativeBySum, errors, inputsCount);
+				continue;
+			}
+			for (int j = 0; j < inputsCount; j++) {
+				final float oldWeight = weights[row + j];
+				if (errors != null)
+					errors[j] += oldWeight * errorDerivativeBySum;
+				final float newWeight = oldWeight - rate * x[j] * errorDerivativeBySum;
+				effectSum += Math.abs(oldWeight - newWeight);
+				weights[row + j] = newWeight;
+				host.fireWeightChanged(layerIndex - 1, j, layerIndex, i, oldWeight, newWeight);
+			}
+		}
+		fromFloatInputErrors(errors, inputErrors);
+		return effectSum;
+	}
+
+	private void ensureGradients() {
+		if (weightGradients == null) {
+			weightGradients = new float[weights.length];
+			biasGradients = new float[size];
+		}
+	}
+
+	@Override
+	void accumulateGradient(double[] input, double[] inputErrors) {
+		ensureGradients();
+		final float[] x = toFloatInput(input);
+		final float[] errors = toFloatInputErrors(inputErrors);
+		for (int i = 0; i < size; i++) {
+			final float errorDerivativeBySum = (float) errorDerivativesBySum[i];
+			biasGradients[i] += errorDerivativeBySum;
+			kernels.accumulateRow(weightGradients, weights, i * inputsCount, x, errorDerivativeBySum, errors, inputsCount);
+		}
+		fromFloatInputErrors(errors, inputErrors);
+	}
+
+	@Override
+	double applyGradient(double rate, DenseNeuralNetwork host, int layerIndex) {
+		if (weightGradients == null)
+			return 0;
+		final float floatRate = (float) rate;
+		if (host.getWeightChangedListener() == null)
+			return kernels.applyGradients(biases, biasGradients, 0, floatRate, size)
+					+ kernels.applyGradients(weights, weightGradients, 0, floatRate, weights.length);
+		double effectSum = 0;
+		for (int i = 0; i < size; i++) {
+			final float oldBias = biases[i];
+			final float newBias = oldBias - floatRate * biasGradients[i];
+			effectSum += Math.abs(oldBias - newBias);
+			biases[i] = newBias;
+			biasGradients[i] = 0;
+			host.fireWeightChanged(-1, 0, layerIndex, i, oldBias, newBias);
+			final int row = i * inputsCount;
+			for (int j = 0; j < inputsCount; j++) {
+				final float oldWeight = weights[row + j];
+				final float newWeight = oldWeight - floatRate * weightGradients[row + j];
+				effectSum += Math.abs(oldWeight - newWeight);
+				weights[row + j] = newWeight;
+				weightGradients[row + j] = 0;
+				host.fireWeightChanged(layerIndex - 1, j, layerIndex, i, oldWeight, newWeight);
+			}
+		}
+		return effectSum;
+	}
+
+	@Override
+	void mergeGradient(DenseLayer other) {
+		final FloatArrayDenseLayer source = (FloatArrayDenseLayer) other;
+		if (source.weightGradients == null)
+			return;
+		ensureGradients();
+		for (int i = 0; i < size; i++) {
+			biasGradients[i] += source.biasGradients[i];
+			source.biasGradients[i] = 0;
+		}
+		for (int k = 0; k < weightGradients.length; k++) {
+			weightGradients[k] += source.weightGradients[k];
+			source.weightGradients[k] = 0;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.NetworkSnapshot;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.WeightInitializer;
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.loss.LeastSquaresLoss;
+
+import java.util.Random;
+
+/**
+ * Dense network with {@link LeastSquaresLoss}, output
+ * layer is activated by the same function as hidden ones.
+ */
+public class LeastSquaresDenseNeuralNetwork extends DenseNeuralNetwork {
+	public LeastSquaresDenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes, Random rnd) {
+		super(learningRate, activationFunction, layerSizes, rnd);
+	}
+
+	public LeastSquaresDenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes, Random rnd,
+			WeightStorage storage) {
+		super(learningRate, activationFunction, layerSizes, rnd, storage);
+	}
+
+	public LeastSquaresDenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes,
+			WeightInitializer weightInitializer, WeightStorage storage) {
+		super(learningRate, activationFunction, new LeastSquaresLoss(activationFunction), layerSizes, weightInitializer,
+				storage);
+	}
+
+	/**
+	 * Weights are mapped blocks of snapshot, see
+	 * {@link DenseNeuralNetwork#DenseNeuralNetwork(NetworkSnapshot, info.adamovskiy.nn.loss.Loss)}.
+	 */
+	public LeastSquaresDenseNeuralNetwork(NetworkSnapshot snapshot) {
+		super(snapshot, new LeastSquaresLoss(snapshot.getActivationFunction()));
+	}
+
+	protected LeastSquaresDenseNeuralNetwork(LeastSquaresDenseNeuralNetwork prototype) {
+		super(prototype);
+	}
+
+	@Override
+	public NeuralNetwork createWorker() {
+		return new LeastSquaresDenseNeuralNetwork(this);
+	}
+}
@@ -0,0 +1,184 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.activation.ActivationFunction;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Weights are stored in {@link WeightArena} outside of java heap, this layer
+ * is just a view of its blocks.
+ */
+class OffHeapDenseLayer extends DenseLayer {
+	private final DoubleBuffer weights;
+	private final DoubleBuffer biases;
+	private DoubleBuffer weightGradients;
+	private DoubleBuffer biasGradients;
+
+	OffHeapDenseLayer(int size, int inputsCount, WeightArena arena) {
+		this(size, inputsCount, arena.allocate(size * inputsCount), arena.allocate(size));
+	}
+
+	/**
+	 * @param weights
+	 *            block of size * inputsCount doubles, e.g. mapped file
+	 * @param biases
+	 *            block of size doubles
+	 */
+	OffHeapDenseLayer(int size, int inputsCount, DoubleBuffer weights, DoubleBuffer biases) {
+		super(size, inputsCount);
+		if (weights.capacity() != size * inputsCount || biases.capacity() != size)
+			throw new IllegalArgumentException("Sizes of blocks differ from size of layer");
+		this.weights = weights;
+		this.biases = biases;
+	}
+
+	/**
+	 * Only absolute get and put are used, so blocks can be shared as is.
+	 */
+	@Override
+	DenseLayer shareWeights() {
+		return new OffHeapDenseLayer(size, inputsCount, weights, biases);
+	}
+
+	@Override
+	double getWeight(int neuron, int input) {
+		return weights.get(neuron * inputsCount + input);
+	}
+
+	@Override
+	void setWeight(int neuron, int input, double weight) {
+		weights.put(neuron * inputsCount + input, weight);
+	}
+
+	/**
+	 * Bulk get moves position, so it reads duplicates of blocks.
+	 */
+	@Override
+	void copyWeights(double[] weights, double[] biases) {
+		this.weights.duplicate().get(weights, 0, size * inputsCount);
+		this.biases.duplicate().get(biases, 0, size);
+	}
+
+	@Override
+	double getBias(int neuron) {
+		return biases.get(neuron);
+	}
+
+	@Override
+	void setBias(int neuron, double bias) {
+		biases.put(neuron, bias);
+	}
+
+	@Override
+	void forwardRange(double[] input, ActivationFunction activationFunction, int from, int to) {
+		for (int i = from; i < to; i++) {
+			final int row = i * inputsCount;
+			double sum = biases.get(i);
+			for (int j = 0; j < inputsCount; j++) {
+				sum += weights.get(row + j) * input[j];
+			}
+			sums[i] = sum;
+			outputs[i] = activationFunction.activation(sum);
+		}
+	}
+
+	@Override
+	double backpropagationRange(double[] input, double[] inputErrors, double learningRate, DenseNeuralNetwork host,
+			int layerIndex, int from, int to) {
+		final boolean notifyListener = host.getWeightChangedListener() != null;
+		double effectSum = 0;
+		for (int i = from; i < to; i++) {
+			final double errorDerivativeBySum = errorDerivativesBySum[i];
+			final double oldBias = biases.get(i);
+			final double newBias = oldBias - learningRate * errorDerivativeBySum;
+			effectSum += Math.abs(oldBias - newBias);
+			biases.put(i, newBias);
+			if (notifyListener)
+				host.fireWeightChanged(-1, 0, layerIndex, i, oldBias, newBias);
+
+			final int row = i * inputsCount;
+			for (int j = 0; j < inputsCount; j++) {
+				final double oldWeight = weights.get(row + j);
+				if (inputErrors != null)
+					inputErrors[j] += oldWeight * errorDerivativeBySum;
+				final double newWeight = oldWeight - learningRate * input[j] * errorDerivativeBySum;
+				effectSum += Math.abs(oldWeight - newWeight);
+				weights.put(row + j, newWeight);
+				if (notifyListener)
+					host.fireWeightChanged(layerIndex - 1, j, layerIndex, i, oldWeight, newWeight);
+			}
+		}
+		return effectSum;
+	}
+
+	/**
+	 * Gradients are placed into separate arena, so that networks, which are
+	 * never taught by batches, do not spend memory for them.
+	 */
+	private void ensureGradients() {
+		if (weightGradients == null) {
+			final WeightArena gradientArena = new WeightArena((long) size * (inputsCount + 1));
+			weightGradients = gradientArena.allocate(size * inputsCount);
+			biasGradients = gradientArena.allocate(size);
+		}
+	}
+
+	@Override
+	void accumulateGradient(double[] input, double[] inputErrors) {
+		ensureGradients();
+		for (int i = 0; i < size; i++) {
+			final double errorDerivativeBySum = errorDerivativesBySum[i];
+			biasGradients.put(i, biasGradients.get(i) + errorDerivativeBySum);
+			final int row = i * inputsCount;
+			for (int j = 0; j < inputsCount; j++) {
+				if (inputErrors != null)
+					inputErrors[j] += weights.get(row + j) * errorDerivativeBySum;
+				weightGradients.put(row + j, weightGradients.get(row + j) + input[j] * errorDerivativeBySum);
+			}
+		}
+	}
+
+	@Override
+	double applyGradient(double rate, DenseNeuralNetwork host, int layerIndex) {
+		if (weightGradients == null)
+			return 0;
+		final boolean notifyListener = host.getWeightChangedListener() != null;
+		double effectSum = 0;
+		for (int i = 0; i < size; i++) {
+			final double oldBias = biases.get(i);
+			final double newBias = oldBias - rate * biasGradients.get(i);
+			effectSum += Math.abs(oldBias - newBias);
+			biases.put(i, newBias);
+			biasGradients.put(i, 0);
+			if (notifyListener)
+				host.fireWeightChanged(-1, 0, layerIndex, i, oldBias, newBias);
+			final int row = i * inputsCount;
+			for (int j = 0; j < inputsCount; j++) {
+				final double oldWeight = weights.get(row + j);
+				final double newWeight = oldWeight - rate * weightGradients.get(row + j);
+				effectSum += Math.abs(oldWeight - newWeight);
+				weights.put(row + j, newWeight);
+				weightGradients.put(row + j, 0);
+				if (notifyListener)
+					host.fireWeightChanged(layerIndex - 1, j, layerIndex, i, oldWeight, newWeight);
+			}
+		}
+		return effectSum;
+	}
+
+	@Override
+	void mergeGradient(DenseLayer other) {
+		final OffHeapDenseLayer source = (OffHeapDenseLayer) other;
+		if (source.weightGradients == null)
+			return;
+		ensureGradients();
+		for (int i = 0; i < size; i++) {
+			biasGradients.put(i, biasGradients.get(i) + source.biasGradients.get(i));
+			source.biasGradients.put(i, 0);
+		}
+		for (int k = 0; k < size * inputsCount; k++) {
+			weightGradients.put(k, weightGradients.get(k) + source.weightGradients.get(k));
+			source.weightGradients.put(k, 0);
+		}
+	}
+}
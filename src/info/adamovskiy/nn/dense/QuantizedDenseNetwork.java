@@ -0,0 +1,194 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.DataSource;
+import info.adamovskiy.nn.InferenceSession;
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.linalg.Kernels;
+import info.adamovskiy.nn.loss.Loss;
+import info.adamovskiy.nn.utils.NeuralNetworkUtils;
+
+import java.io.IOException;
+
+/**
+ * Inference-only copy of taught {@link DenseNeuralNetwork} with 8 bit weights
+ * and 8 bit inputs of layers, see
+ * {@link #quantize(DenseNeuralNetwork, DataSource, int)}. Takes eighth of
+ * memory of double precision weights.
+ *
+ * Weights of every neuron are scaled symmetrically by their own maximum
+ * absolute value: <code>weight = weightScale * q</code>, q from -127 to 127.
+ * Inputs of every layer have one scale, calibrated by maximum absolute value
+ * of that input on sample examples; values out of calibrated range are
+ * clamped. Sum of neuron is 32 bit dot product multiplied by the product of
+ * scales plus shift weight, which is kept in double precision, so it does not
+ * depend on scale of input weights. Dot product is exact while inputs count
+ * of layer is not greater than {@link #MAX_INPUTS_COUNT}. Activation function
+ * is applied in double precision, output layer values are not quantized and
+ * are activated by loss of network.
+ *
+ * Network does not change after creation, so it is not affected by further
+ * teaching of the source one.
+ */
+public class QuantizedDenseNetwork {
+	private static final int MAX_QUANTUM = 127;
+	/**
+	 * Maximum inputs count of layer, whose 32 bit dot product can not
+	 * overflow.
+	 */
+	public static final int MAX_INPUTS_COUNT = Integer.MAX_VALUE / (MAX_QUANTUM * MAX_QUANTUM);
+
+	private final ActivationFunction activationFunction;
+	private final Loss loss;
+	private final int[] layerSizes;
+	// by non-input layer
+	private final byte[][] weights;
+	private final double[][] biases;
+	private final double[][] sumScales;
+	private final double[] inputScales;
+	private final Kernels kernels = Kernels.getDefault();
+
+	private QuantizedDenseNetwork(DenseNeuralNetwork network, double[] inputRanges) {
+		activationFunction = network.getActivationFunction();
+		loss = network.getLoss();
+		layerSizes = new int[network.getLayersCount()];
+		for (int l = 0; l < layerSizes.length; l++) {
+			layerSizes[l] = network.getLayerSize(l);
+		}
+		final int layersCount = layerSizes.length - 1;
+		weights = new byte[layersCount][];
+		biases = new double[layersCount][];
+		sumScales = new double[layersCount][];
+		inputScales = new double[layersCount];
+		for (int l = 0; l < layersCount; l++) {
+			final DenseLayer layer = network.getLayer(l + 1);
+			inputScales[l] = inputRanges[l] > 0 ? inputRanges[l] / MAX_QUANTUM : 1;
+			weights[l] = new byte[layer.size * layer.inputsCount];
+			biases[l] = new double[layer.size];
+			sumScales[l] = new double[layer.size];
+			for (int i = 0; i < layer.size; i++) {
+				double range = 0;
+				for (int j = 0; j < layer.inputsCount; j++) {
+					range = Math.max(range, Math.abs(layer.getWeight(i, j)));
+				}
+				final double weightScale = range > 0 ? range / MAX_QUANTUM : 1;
+				for (int j = 0; j < layer.inputsCount; j++) {
+					weights[l][i * layer.inputsCount + j] = quantize(layer.getWeight(i, j), 1 / weightScale);
+				}
+				sumScales[l][i] = weightScale * inputScales[l];
+				biases[l][i] = layer.getBias(i);
+			}
+		}
+	}
+
+	/**
+	 * Calibrates ranges of layer inputs by concluding network on examples of
+	 * data source, then quantizes weights. Outputs of data source are not
+	 * used.
+	 *
+	 * @param samplesCount
+	 *            maximum count of calibration examples, fewer ones are used
+	 *            if data source ends earlier
+	 * @throws IllegalArgumentException
+	 *             if inputs count of some layer is greater than
+	 *             {@link #MAX_INPUTS_COUNT}
+	 */
+	public static QuantizedDenseNetwork quantize(DenseNeuralNetwork network, DataSource calibration, int samplesCount)
+			throws IOException {
+		for (int l = 0; l < network.getLayersCount() - 1; l++) {
+			if (network.getLayerSize(l) > MAX_INPUTS_COUNT)
+				throw new IllegalArgumentException(String.format(
+						"Layer %d has %d inputs, 32 bit sum of more than %d ones can overflow", l + 1,
+						network.getLayerSize(l), MAX_INPUTS_COUNT));
+		}
+		final DenseNeuralNetwork worker = (DenseNeuralNetwork) network.createWorker();
+		final double[] inputRanges = new double[worker.getLayersCount() - 1];
+		int samples = 0;
+		while (samples < samplesCount && calibration.prepareNext()) {
+			final double[] input = calibration.getInput();
+			worker.conclude(input);
+			for (int l = 0; l < inputRanges.length; l++) {
+				final double[] values = l == 0 ? input : worker.getLayer(l).outputs;
+				for (double value : values) {
+					inputRanges[l] = Math.max(inputRanges[l], Math.abs(value));
+				}
+			}
+			samples++;
+		}
+		if (samples == 0)
+			throw new IllegalArgumentException("There are no calibration examples");
+		return new QuantizedDenseNetwork(network, inputRanges);
+	}
+
+	public int getInputsCount() {
+		return layerSizes[0];
+	}
+
+	public int getOutputsCount() {
+		return layerSizes[layerSizes.length - 1];
+	}
+
+	/**
+	 * @return scale of quantized values of non-input layer inputs
+	 */
+	public double getInputScale(int layer) {
+		return inputScales[layer - 1];
+	}
+
+	private static byte quantize(double value, double inverseScale) {
+		return (byte) Math.max(-MAX_QUANTUM, Math.min(MAX_QUANTUM, Math.round(value * inverseScale)));
+	}
+
+	/**
+	 * Sessions of one network can conclude in different threads at the same
+	 * time.
+	 */
+	public InferenceSession createInferenceSession() {
+		final byte[][] layerInputs = new byte[weights.length][];
+		for (int l = 0; l < layerInputs.length; l++) {
+			layerInputs[l] = new byte[layerSizes[l]];
+		}
+		return new InferenceSession() {
+			@Override
+			public int getInputsCount() {
+				return QuantizedDenseNetwork.this.getInputsCount();
+			}
+
+			@Override
+			public int getOutputsCount() {
+				return QuantizedDenseNetwork.this.getOutputsCount();
+			}
+
+			@Override
+			public void conclude(double[] inputValues, double[] results) {
+				NeuralNetworkUtils.checkVectorParameterSize(inputValues, layerSizes[0]);
+				NeuralNetworkUtils.checkVectorParameterSize(results, layerSizes[layerSizes.length - 1]);
+				final double inverseInputScale = 1 / inputScales[0];
+				for (int j = 0; j < inputValues.length; j++) {
+					layerInputs[0][j] = quantize(inputValues[j], inverseInputScale);
+				}
+				for (int l = 0; l < weights.length; l++) {
+					final byte[] input = layerInputs[l];
+					final boolean last = l == weights.length - 1;
+					final double inverseNextScale = last ? 0 : 1 / inputScales[l + 1];
+					for (int i = 0; i < layerSizes[l + 1]; i++) {
+						final double sum = kernels.dot(0, weights[l], i * input.length, input, input.length)
+								* sumScales[l][i] + biases[l][i];
+						if (last)
+							results[i] = sum;
+						else
+							layerInputs[l + 1][i] = quantize(activationFunction.activation(sum), inverseNextScale);
+					}
+				}
+				loss.activation(results, results, 0, results.length);
+			}
+
+			@Override
+			public void concludeBatch(double[][] inputs, double[][] results) {
+				NeuralNetworkUtils.checkConcludeBatchParameters(inputs, results);
+				for (int r = 0; r < inputs.length; r++) {
+					conclude(inputs[r], results[r]);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,59 @@
+package info.adamovskiy.nn.dense;
+
+import info.adamovskiy.nn.NetworkSnapshot;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.WeightInitializer;
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.loss.SoftmaxCrossEntropyLoss;
+
+import java.util.Random;
+
+/**
+ * Dense classifier with {@link SoftmaxCrossEntropyLoss}: outputs are
+ * probabilities of classes, etalons are one-hot vectors.
+ */
+public class SoftmaxDenseNeuralNetwork extends DenseNeuralNetwork {
+	/**
+	 * @param activationFunction
+	 *            activation of hidden layers
+	 */
+	public SoftmaxDenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes,
+			Random rnd) {
+		this(learningRate, activationFunction, layerSizes, rnd, WeightStorage.HEAP);
+	}
+
+	/**
+	 * @param activationFunction
+	 *            activation of hidden layers
+	 */
+	public SoftmaxDenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes,
+			Random rnd, WeightStorage storage) {
+		super(learningRate, activationFunction, new SoftmaxCrossEntropyLoss(), layerSizes, rnd, storage);
+	}
+
+	/**
+	 * @param activationFunction
+	 *            activation of hidden layers
+	 */
+	public SoftmaxDenseNeuralNetwork(double learningRate, ActivationFunction activationFunction, int[] layerSizes,
+			WeightInitializer weightInitializer, WeightStorage storage) {
+		super(learningRate, activationFunction, new SoftmaxCrossEntropyLoss(), layerSizes, weightInitializer, storage);
+	}
+
+	/**
+	 * Weights are mapped blocks of snapshot, see
+	 * {@link DenseNeuralNetwork#DenseNeuralNetwork(NetworkSnapshot, info.adamovskiy.nn.loss.Loss)}.
+	 */
+	public SoftmaxDenseNeuralNetwork(NetworkSnapshot snapshot) {
+		super(snapshot, new SoftmaxCrossEntropyLoss());
+	}
+
+	protected SoftmaxDenseNeuralNetwork(SoftmaxDenseNeuralNetwork prototype) {
+		super(prototype);
+	}
+
+	@Override
+	public NeuralNetwork createWorker() {
+		return new SoftmaxDenseNeuralNetwork(this);
+	}
+}
@@ -0,0 +1,65 @@
+package info.adamovskiy.nn.dense;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap memory for weights of whole network. Garbage collector sees only
+ * few buffer objects instead of weight arrays, memory is released when
+ * network becomes unreachable.
+ * 
+ * One direct buffer can not be larger than 2GB, so arena larger than that
+ * consists of several chunks. Single block never crosses chunk border.
+ */
+class WeightArena {
+	private static final int MAX_CHUNK_DOUBLES = Integer.MAX_VALUE / Double.BYTES;
+
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private long remainingDoubles;
+	private DoubleBuffer currentChunk;
+
+	/**
+	 * @param capacity
+	 *            total count of doubles, which will be allocated
+	 */
+	WeightArena(long capacity) {
+		remainingDoubles = capacity;
+	}
+
+	private void allocateChunk(int minDoubles) {
+		final int chunkDoubles = (int) Math.max(minDoubles, Math.min(remainingDoubles, MAX_CHUNK_DOUBLES));
+		final ByteBuffer chunk = ByteBuffer.allocateDirect(chunkDoubles * Double.BYTES).order(ByteOrder.nativeOrder());
+		chunks.add(chunk);
+		currentChunk = chunk.asDoubleBuffer();
+	}
+
+	/**
+	 * @param count
+	 *            count of doubles
+	 * @return zero-filled block, indexed from 0
+	 */
+	DoubleBuffer allocate(int count) {
+		if (count > MAX_CHUNK_DOUBLES)
+			throw new IllegalArgumentException(String.format("Block is too large: %d doubles", count));
+		if (currentChunk == null || currentChunk.remaining() < count)
+			allocateChunk(count);
+		final int start = currentChunk.position();
+		currentChunk.limit(start + count);
+		final DoubleBuffer block = currentChunk.slice();
+		currentChunk.limit(currentChunk.capacity());
+		currentChunk.position(start + count);
+		remainingDoubles -= count;
+		return block;
+	}
+
+	long getAllocatedBytes() {
+		long result = 0;
+		for (ByteBuffer chunk : chunks) {
+			result += chunk.capacity();
+		}
+		return result;
+	}
+}
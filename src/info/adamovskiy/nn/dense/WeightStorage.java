@@ -0,0 +1,24 @@
+package info.adamovskiy.nn.dense;
+
+/**
+ * Where {@link DenseNeuralNetwork} keeps its weights.
+ */
+public enum WeightStorage {
+	/**
+	 * Java heap arrays.
+	 */
+	HEAP,
+	/**
+	 * One direct memory arena for whole network, which is not scanned by
+	 * garbage collector. Useful for networks, which take significant part of
+	 * heap. Networks loaded from mapped snapshot file are of this storage too,
+	 * see {@link info.adamovskiy.nn.NetworkSnapshot}.
+	 */
+	OFF_HEAP,
+	/**
+	 * Java heap arrays of single precision values. Takes half of memory of
+	 * {@link #HEAP} and sums are calculated in single precision too, so
+	 * results differ slightly.
+	 */
+	FLOAT
+}
@@ -0,0 +1,201 @@
+package info.adamovskiy.nn.linalg;
+
+/**
+ * Matrix-matrix product <code>C = A * B + beta * C</code> for row-major
+ * matrices stored in flat arrays.
+ *
+ * Blocked like BLIS: B is packed by blocks of {@link #KC} x {@link #NC}, A by
+ * blocks of {@link #MC} x {@link #KC}, so that blocks stay in cache while
+ * they are reused. Packed blocks consist of panels of {@link #MR} rows (A)
+ * and {@link #NR} columns (B), and {@link #MR} x {@link #NR} tile of C is
+ * accumulated in local variables. Transposition is handled by packing, so
+ * all cases use the same inner loop. Products are accumulated by
+ * {@link Math#fma}, which is a single instruction on current x86 and ARM
+ * processors.
+ *
+ * {@link #create()} returns subclass with SIMD tile built on
+ * <code>jdk.incubator.vector</code>, when {@link Kernels#getDefault()} is SIMD
+ * one. Its tile is wider and products are accumulated in different order.
+ *
+ * Instance holds packing buffers, so it must not be shared between threads.
+ */
+public class Gemm {
+	private static final String VECTOR_GEMM_CLASS = "info.adamovskiy.nn.linalg.VectorApiGemm";
+	private static final int MR = 4;
+	private static final int NR = 4;
+	private static final int MC = 64;
+	private static final int KC = 256;
+	private static final int NC = 512;
+
+	// tile size, MC and NC must be divisible by them
+	final int mr;
+	final int nr;
+	final double[] packedA = new double[MC * KC];
+	final double[] packedB = new double[KC * NC];
+	final double[] edgeTile;
+
+	public Gemm() {
+		this(MR, NR);
+	}
+
+	Gemm(int mr, int nr) {
+		this.mr = mr;
+		this.nr = nr;
+		edgeTile = new double[mr * nr];
+	}
+
+	/**
+	 * @return SIMD implementation if SIMD kernels are used, scalar one
+	 *         otherwise
+	 */
+	public static Gemm create() {
+		if (Kernels.getDefault() != Kernels.getScalar()) {
+			try {
+				return (Gemm) Class.forName(VECTOR_GEMM_CLASS).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// scalar one below
+			}
+		}
+		return new Gemm();
+	}
+
+	/**
+	 * @param transposeA
+	 *            if true, a holds A transposed (k x m)
+	 * @param transposeB
+	 *            if true, b holds B transposed (n x k)
+	 * @param m
+	 *            rows of A and C
+	 * @param n
+	 *            columns of B and C
+	 * @param k
+	 *            columns of A, rows of B
+	 * @param lda
+	 *            distance between rows of a
+	 * @param ldb
+	 *            distance between rows of b
+	 * @param beta
+	 *            multiplier of existing C, 0 means that c is overwritten
+	 * @param ldc
+	 *            distance between rows of c
+	 */
+	public void multiply(boolean transposeA, boolean transposeB, int m, int n, int k, double[] a, int lda, double[] b,
+			int ldb, double beta, double[] c, int ldc) {
+		scale(m, n, beta, c, ldc);
+		for (int jc = 0; jc < n; jc += NC) {
+			final int nc = Math.min(NC, n - jc);
+			for (int pc = 0; pc < k; pc += KC) {
+				final int kc = Math.min(KC, k - pc);
+				packB(transposeB, b, ldb, pc, jc, kc, nc);
+				for (int ic = 0; ic < m; ic += MC) {
+					final int mc = Math.min(MC, m - ic);
+					packA(transposeA, a, lda, ic, pc, mc, kc);
+					for (int jr = 0; jr < nc; jr += nr) {
+						for (int ir = 0; ir < mc; ir += mr) {
+							multiplyTile(kc, ir * kc, jr * kc, c, (ic + ir) * ldc + jc + jr, ldc, Math.min(mr, mc - ir),
+									Math.min(nr, nc - jr));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static void scale(int m, int n, double beta, double[] c, int ldc) {
+		if (beta == 1)
+			return;
+		for (int i = 0; i < m; i++) {
+			final int row = i * ldc;
+			for (int j = 0; j < n; j++) {
+				c[row + j] = beta == 0 ? 0 : beta * c[row + j];
+			}
+		}
+	}
+
+	/**
+	 * Panel of mr rows takes mr * kc elements, element (i, p) of the panel
+	 * is at p * mr + i. Missing rows of the last panel are filled by zeros.
+	 */
+	private void packA(boolean transpose, double[] a, int lda, int rowStart, int columnStart, int rows, int columns) {
+		for (int ir = 0; ir < rows; ir += mr) {
+			final int panel = ir * columns;
+			for (int p = 0; p < columns; p++) {
+				for (int i = 0; i < mr; i++) {
+					final int row = rowStart + ir + i;
+					final int column = columnStart + p;
+					packedA[panel + p * mr + i] = ir + i >= rows ? 0
+							: transpose ? a[column * lda + row] : a[row * lda + column];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Panel of nr columns takes nr * kc elements, element (p, j) of the panel
+	 * is at p * nr + j. Missing columns of the last panel are filled by zeros.
+	 */
+	private void packB(boolean transpose, double[] b, int ldb, int rowStart, int columnStart, int rows, int columns) {
+		for (int jr = 0; jr < columns; jr += nr) {
+			final int panel = jr * rows;
+			for (int p = 0; p < rows; p++) {
+				for (int j = 0; j < nr; j++) {
+					final int row = rowStart + p;
+					final int column = columnStart + jr + j;
+					packedB[panel + p * nr + j] = jr + j >= columns ? 0
+							: transpose ? b[column * ldb + row] : b[row * ldb + column];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds product of A panel and B panel to mr x nr tile of C, only rows x
+	 * columns part of the tile is stored.
+	 */
+	void multiplyTile(int kc, int aPanel, int bPanel, double[] c, int cOffset, int ldc, int rows, int columns) {
+		final double[] pa = packedA;
+		final double[] pb = packedB;
+		double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+		double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+		double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+		double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+		for (int p = 0; p < kc; p++) {
+			final int ap = aPanel + p * MR;
+			final int bp = bPanel + p * NR;
+			final double a0 = pa[ap], a1 = pa[ap + 1], a2 = pa[ap + 2], a3 = pa[ap + 3];
+			final double b0 = pb[bp], b1 = pb[bp + 1], b2 = pb[bp + 2], b3 = pb[bp + 3];
+			c00 = Math.fma(a0, b0, c00); c01 = Math.fma(a0, b1, c01); c02 = Math.fma(a0, b2, c02); c03 = Math.fma(a0, b3, c03);
+			c10 = Math.fma(a1, b0, c10); c11 = Math.fma(a1, b1, c11); c12 = Math.fma(a1, b2, c12); c13 = Math.fma(a1, b3, c13);
+			c20 = Math.fma(a2, b0, c20); c21 = Math.fma(a2, b1, c21); c22 = Math.fma(a2, b2, c22); c23 = Math.fma(a2, b3, c23);
+			c30 = Math.fma(a3, b0, c30); c31 = Math.fma(a3, b1, c31); c32 = Math.fma(a3, b2, c32); c33 = Math.fma(a3, b3, c33);
+		}
+		if (rows == MR && columns == NR) {
+			int row = cOffset;
+			c[row] += c00; c[row + 1] += c01; c[row + 2] += c02; c[row + 3] += c03;
+			row += ldc;
+			c[row] += c10; c[row + 1] += c11; c[row + 2] += c12; c[row + 3] += c13;
+			row += ldc;
+			c[row] += c20; c[row + 1] += c21; c[row + 2] += c22; c[row + 3] += c23;
+			row += ldc;
+			c[row] += c30; c[row + 1] += c31; c[row + 2] += c32; c[row + 3] += c33;
+			return;
+		}
+		final double[] tile = edgeTile;
+		tile[0] = c00; tile[1] = c01; tile[2] = c02; tile[3] = c03;
+		tile[4] = c10; tile[5] = c11; tile[6] = c12; tile[7] = c13;
+		tile[8] = c20; tile[9] = c21; tile[10] = c22; tile[11] = c23;
+		tile[12] = c30; tile[13] = c31; tile[14] = c32; tile[15] = c33;
+		addEdgeTile(c, cOffset, ldc, rows, columns);
+	}
+
+	/**
+	 * Adds rows x columns part of {@link #edgeTile} to C.
+	 */
+	void addEdgeTile(double[] c, int cOffset, int ldc, int rows, int columns) {
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				c[cOffset + i * ldc + j] += edgeTile[i * nr + j];
+			}
+		}
+	}
+}
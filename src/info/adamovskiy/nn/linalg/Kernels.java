@@ -0,0 +1,237 @@
+package info.adamovskiy.nn.linalg;
+
+/**
+ * Inner loops of layer computations over rows of row-major weight matrices.
+ * This class itself is plain scalar implementation, elements are processed
+ * in index order, so results are the same as of per-neuron loops.
+ * 
+ * {@link #getDefault()} returns SIMD implementation built on
+ * <code>jdk.incubator.vector</code> when that module is present (JVM is
+ * started with <code>--add-modules jdk.incubator.vector</code>), and scalar
+ * one otherwise. SIMD implementation sums products in different order, so its
+ * results can differ in last bits. Scalar implementation can be forced with
+ * system property <code>info.adamovskiy.nn.linalg.vector=false</code>.
+ */
+public class Kernels {
+	private static final String VECTOR_KERNELS_CLASS = "info.adamovskiy.nn.linalg.VectorApiKernels";
+	
+	private static final Kernels SCALAR = new Kernels();
+	private static final Kernels DEFAULT = createDefault();
+	
+	private static Kernels createDefault() {
+		if (!Boolean.parseBoolean(System.getProperty("info.adamovskiy.nn.linalg.vector", "true")))
+			return SCALAR;
+		final Kernels vector = getVector();
+		return vector != null ? vector : SCALAR;
+	}
+	
+	protected Kernels() {
+	}
+	
+	public static Kernels getDefault() {
+		return DEFAULT;
+	}
+	
+	public static Kernels getScalar() {
+		return SCALAR;
+	}
+	
+	/**
+	 * @return SIMD implementation or null if vector module is not available
+	 */
+	public static Kernels getVector() {
+		try {
+			return (Kernels) Class.forName(VECTOR_KERNELS_CLASS).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+	
+	public String getName() {
+		return "scalar";
+	}
+	
+	/**
+	 * @return <code>initial + sum(a[aOffset + j] * b[j])</code>, j from 0 to
+	 *         length
+	 */
+	public double dot(double initial, double[] a, int aOffset, double[] b, int length) {
+		double sum = initial;
+		for (int j = 0; j < length; j++) {
+			sum += a[aOffset + j] * b[j];
+		}
+		return sum;
+	}
+	
+	public float dot(float initial, float[] a, int aOffset, float[] b, int length) {
+		float sum = initial;
+		for (int j = 0; j < length; j++) {
+			sum += a[aOffset + j] * b[j];
+		}
+		return sum;
+	}
+	
+	/**
+	 * Dot product of 8 bit vectors with 32 bit accumulation. Integer sums do
+	 * not depend on order, so all implementations give the same result, which
+	 * is exact while initial plus length * 127 * 127 fits int, e.g. for length
+	 * up to 133144 when initial is 0.
+	 */
+	public int dot(int initial, byte[] a, int aOffset, byte[] b, int length) {
+		int sum = initial;
+		for (int j = 0; j < length; j++) {
+			sum += a[aOffset + j] * b[j];
+		}
+		return sum;
+	}
+	
+	/**
+	 * Gradient descent step for one neuron:
+	 * <code>weights[offset + j] -= learningRate * input[j] * delta</code>.
+	 * Before that, if inputErrors is not null, propagates error back:
+	 * <code>inputErrors[j] += weights[offset + j] * delta</code>.
+	 * 
+	 * @return sum of absolute weight changes
+	 */
+	public double updateRow(double[] weights, int offset, double[] input, double learningRate, double delta,
+			double[] inputErrors, int length) {
+		return updateRange(weights, offset, input, learningRate, delta, inputErrors, 0, length);
+	}
+	
+	/**
+	 * Scalar {@link #updateRow} of elements from inclusive to exclusive.
+	 */
+	protected static double updateRange(double[] weights, int offset, double[] input, double learningRate, double delta,
+			double[] inputErrors, int from, int to) {
+		double effectSum = 0;
+		for (int j = from; j < to; j++) {
+			final double oldWeight = weights[offset + j];
+			if (inputErrors != null)
+				inputErrors[j] += oldWeight * delta;
+			final double newWeight = oldWeight - learningRate * input[j] * delta;
+			effectSum += Math.abs(oldWeight - newWeight);
+			weights[offset + j] = newWeight;
+		}
+		return effectSum;
+	}
+	
+	public double updateRow(float[] weights, int offset, float[] input, float learningRate, float delta,
+			float[] inputErrors, int length) {
+		return updateRange(weights, offset, input, learningRate, delta, inputErrors, 0, length);
+	}
+	
+	/**
+	 * Scalar {@link #updateRow} of elements from inclusive to exclusive.
+	 */
+	protected static double updateRange(float[] weights, int offset, float[] input, float learningRate, float delta,
+			float[] inputErrors, int from, int to) {
+		double effectSum = 0;
+		for (int j = from; j < to; j++) {
+			final float oldWeight = weights[offset + j];
+			if (inputErrors != null)
+				inputErrors[j] += oldWeight * delta;
+			final float newWeight = oldWeight - learningRate * input[j] * delta;
+			effectSum += Math.abs(oldWeight - newWeight);
+			weights[offset + j] = newWeight;
+		}
+		return effectSum;
+	}
+	
+	/**
+	 * Adds gradient of one example to accumulated gradient of one neuron:
+	 * <code>gradients[offset + j] += input[j] * delta</code>. If inputErrors
+	 * is not null, propagates error back like {@link #updateRow}, but
+	 * weights are not changed.
+	 */
+	public void accumulateRow(double[] gradients, double[] weights, int offset, double[] input, double delta, double[] inputErrors,
+			int length) {
+		accumulateRange(gradients, weights, offset, input, delta, inputErrors, 0, length);
+	}
+	
+	/**
+	 * Scalar {@link #accumulateRow} of elements from inclusive to exclusive.
+	 */
+	protected static void accumulateRange(double[] gradients, double[] weights, int offset, double[] input, double delta,
+			double[] inputErrors, int from, int to) {
+		for (int j = from; j < to; j++) {
+			if (inputErrors != null)
+				inputErrors[j] += weights[offset + j] * delta;
+			gradients[offset + j] += input[j] * delta;
+		}
+	}
+	
+	/**
+	 * Gradient descent step by accumulated gradient:
+	 * <code>weights[offset + j] -= rate * gradients[offset + j]</code>, then
+	 * gradients are reset to 0.
+	 * 
+	 * @return sum of absolute weight changes
+	 */
+	public double applyGradients(double[] weights, double[] gradients, int offset, double rate, int length) {
+		return applyRange(weights, gradients, rate, offset, offset + length);
+	}
+	
+	/**
+	 * Scalar {@link #applyGradients} of elements from inclusive to exclusive.
+	 */
+	protected static double applyRange(double[] weights, double[] gradients, double rate, int from, int to) {
+		double effectSum = 0;
+		for (int k = from; k < to; k++) {
+			final double oldWeight = weights[k];
+			final double newWeight = oldWeight - rate * gradients[k];
+			effectSum += Math.abs(oldWeight - newWeight);
+			weights[k] = newWeight;
+			gradients[k] = 0;
+		}
+		return effectSum;
+	}
+	
+	/**
+	 * Adds gradient of one example to accumulated gradient of one neuron:
+	 * <code>gradients[offset + j] += input[j] * delta</code>. If inputErrors
+	 * is not null, propagates error back like {@link #updateRow}, but
+	 * weights are not changed.
+	 */
+	public void accumulateRow(float[] gradients, float[] weights, int offset, float[] input, float delta, float[] inputErrors,
+			int length) {
+		accumulateRange(gradients, weights, offset, input, delta, inputErrors, 0, length);
+	}
+	
+	/**
+	 * Scalar {@link #accumulateRow} of elements from inclusive to exclusive.
+	 */
+	protected static void accumulateRange(float[] gradients, float[] weights, int offset, float[] input, float delta,
+			float[] inputErrors, int from, int to) {
+		for (int j = from; j < to; j++) {
+			if (inputErrors != null)
+				inputErrors[j] += weights[offset + j] * delta;
+			gradients[offset + j] += input[j] * delta;
+		}
+	}
+	
+	/**
+	 * Gradient descent step by accumulated gradient:
+	 * <code>weights[offset + j] -= rate * gradients[offset + j]</code>, then
+	 * gradients are reset to 0.
+	 * 
+	 * @return sum of absolute weight changes
+	 */
+	public double applyGradients(float[] weights, float[] gradients, int offset, float rate, int length) {
+		return applyRange(weights, gradients, rate, offset, offset + length);
+	}
+	
+	/**
+	 * Scalar {@link #applyGradients} of elements from inclusive to exclusive.
+	 */
+	protected static double applyRange(float[] weights, float[] gradients, float rate, int from, int to) {
+		double effectSum = 0;
+		for (int k = from; k < to; k++) {
+			final float oldWeight = weights[k];
+			final float newWeight = oldWeight - rate * gradients[k];
+			effectSum += Math.abs(oldWeight - newWeight);
+			weights[k] = newWeight;
+			gradients[k] = 0;
+		}
+		return effectSum;
+	}
+}
@@ -0,0 +1,72 @@
+package info.adamovskiy.nn.linalg;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Gemm} with tile of 4 rows and 2 vectors of the preferred width.
+ * Loaded only through {@link Gemm#create()}, see {@link VectorApiKernels}.
+ *
+ * Every step of the inner loop loads two vectors of B panel, broadcasts
+ * four elements of A panel and issues eight independent fused
+ * multiply-adds, which is enough to hide their latency.
+ */
+class VectorApiGemm extends Gemm {
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final int ROWS = 4;
+
+	VectorApiGemm() {
+		super(ROWS, 2 * DOUBLES.length());
+	}
+
+	@Override
+	void multiplyTile(int kc, int aPanel, int bPanel, double[] c, int cOffset, int ldc, int rows, int columns) {
+		final double[] pa = packedA;
+		final double[] pb = packedB;
+		final int lanes = DOUBLES.length();
+		DoubleVector c00 = DoubleVector.zero(DOUBLES), c01 = DoubleVector.zero(DOUBLES);
+		DoubleVector c10 = DoubleVector.zero(DOUBLES), c11 = DoubleVector.zero(DOUBLES);
+		DoubleVector c20 = DoubleVector.zero(DOUBLES), c21 = DoubleVector.zero(DOUBLES);
+		DoubleVector c30 = DoubleVector.zero(DOUBLES), c31 = DoubleVector.zero(DOUBLES);
+		for (int p = 0; p < kc; p++) {
+			final int ap = aPanel + p * ROWS;
+			final int bp = bPanel + p * nr;
+			final DoubleVector b0 = DoubleVector.fromArray(DOUBLES, pb, bp);
+			final DoubleVector b1 = DoubleVector.fromArray(DOUBLES, pb, bp + lanes);
+			DoubleVector a = DoubleVector.broadcast(DOUBLES, pa[ap]);
+			c00 = a.fma(b0, c00);
+			c01 = a.fma(b1, c01);
+			a = DoubleVector.broadcast(DOUBLES, pa[ap + 1]);
+			c10 = a.fma(b0, c10);
+			c11 = a.fma(b1, c11);
+			a = DoubleVector.broadcast(DOUBLES, pa[ap + 2]);
+			c20 = a.fma(b0, c20);
+			c21 = a.fma(b1, c21);
+			a = DoubleVector.broadcast(DOUBLES, pa[ap + 3]);
+			c30 = a.fma(b0, c30);
+			c31 = a.fma(b1, c31);
+		}
+		if (rows == ROWS && columns == nr) {
+			addRow(c, cOffset, lanes, c00, c01);
+			addRow(c, cOffset + ldc, lanes, c10, c11);
+			addRow(c, cOffset + 2 * ldc, lanes, c20, c21);
+			addRow(c, cOffset + 3 * ldc, lanes, c30, c31);
+			return;
+		}
+		final double[] tile = edgeTile;
+		c00.intoArray(tile, 0);
+		c01.intoArray(tile, lanes);
+		c10.intoArray(tile, nr);
+		c11.intoArray(tile, nr + lanes);
+		c20.intoArray(tile, 2 * nr);
+		c21.intoArray(tile, 2 * nr + lanes);
+		c30.intoArray(tile, 3 * nr);
+		c31.intoArray(tile, 3 * nr + lanes);
+		addEdgeTile(c, cOffset, ldc, rows, columns);
+	}
+
+	private static void addRow(double[] c, int offset, int lanes, DoubleVector first, DoubleVector second) {
+		DoubleVector.fromArray(DOUBLES, c, offset).add(first).intoArray(c, offset);
+		DoubleVector.fromArray(DOUBLES, c, offset + lanes).add(second).intoArray(c, offset + lanes);
+	}
+}
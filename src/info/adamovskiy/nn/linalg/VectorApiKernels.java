@@ -0,0 +1,182 @@
+package info.adamovskiy.nn.linalg;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels of the preferred vector width. Loaded only through
+ * {@link Kernels#getVector()}, so nothing else depends on incubator module,
+ * but compilation of this class requires
+ * <code>--add-modules jdk.incubator.vector</code>.
+ * 
+ * Lanes accumulate their own partial sums, which are added together after
+ * the loop, tail is processed by scalar code.
+ */
+class VectorApiKernels extends Kernels {
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	// bytes are widened to integers of the preferred width at once
+	private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class,
+			VectorShape.forBitSize(Math.max(64, IntVector.SPECIES_PREFERRED.vectorBitSize() / 4)));
+	private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class,
+			VectorShape.forBitSize(BYTES.vectorBitSize() * 4));
+	
+	VectorApiKernels() {
+	}
+	
+	@Override
+	public String getName() {
+		return "vector " + DOUBLES.vectorBitSize() + " bit";
+	}
+	
+	@Override
+	public double dot(double initial, double[] a, int aOffset, double[] b, int length) {
+		final int bound = DOUBLES.loopBound(length);
+		DoubleVector sums = DoubleVector.zero(DOUBLES);
+		int j = 0;
+		for (; j < bound; j += DOUBLES.length()) {
+			sums = sums.add(DoubleVector.fromArray(DOUBLES, a, aOffset + j).mul(DoubleVector.fromArray(DOUBLES, b, j)));
+		}
+		double sum = initial + sums.reduceLanes(VectorOperators.ADD);
+		for (; j < length; j++) {
+			sum += a[aOffset + j] * b[j];
+		}
+		return sum;
+	}
+	
+	@Override
+	public float dot(float initial, float[] a, int aOffset, float[] b, int length) {
+		final int bound = FLOATS.loopBound(length);
+		FloatVector sums = FloatVector.zero(FLOATS);
+		int j = 0;
+		for (; j < bound; j += FLOATS.length()) {
+			sums = sums.add(FloatVector.fromArray(FLOATS, a, aOffset + j).mul(FloatVector.fromArray(FLOATS, b, j)));
+		}
+		float sum = initial + sums.reduceLanes(VectorOperators.ADD);
+		for (; j < length; j++) {
+			sum += a[aOffset + j] * b[j];
+		}
+		return sum;
+	}
+	
+	@Override
+	public int dot(int initial, byte[] a, int aOffset, byte[] b, int length) {
+		final int bound = BYTES.loopBound(length);
+		IntVector sums = IntVector.zero(INTS);
+		int j = 0;
+		for (; j < bound; j += BYTES.length()) {
+			sums = sums.add(ByteVector.fromArray(BYTES, a, aOffset + j).castShape(INTS, 0).reinterpretAsInts()
+					.mul(ByteVector.fromArray(BYTES, b, j).castShape(INTS, 0).reinterpretAsInts()));
+		}
+		int sum = initial + sums.reduceLanes(VectorOperators.ADD);
+		for (; j < length; j++) {
+			sum += a[aOffset + j] * b[j];
+		}
+		return sum;
+	}
+	
+	@Override
+	public double updateRow(double[] weights, int offset, double[] input, double learningRate, double delta,
+			double[] inputErrors, int length) {
+		final int bound = DOUBLES.loopBound(length);
+		DoubleVector effects = DoubleVector.zero(DOUBLES);
+		int j = 0;
+		for (; j < bound; j += DOUBLES.length()) {
+			final DoubleVector oldWeights = DoubleVector.fromArray(DOUBLES, weights, offset + j);
+			if (inputErrors != null)
+				DoubleVector.fromArray(DOUBLES, inputErrors, j).add(oldWeights.mul(delta)).intoArray(inputErrors, j);
+			final DoubleVector newWeights = oldWeights
+					.sub(DoubleVector.fromArray(DOUBLES, input, j).mul(learningRate).mul(delta));
+			effects = effects.add(oldWeights.sub(newWeights).abs());
+			newWeights.intoArray(weights, offset + j);
+		}
+		double effectSum = effects.reduceLanes(VectorOperators.ADD);
+		return effectSum + updateRange(weights, offset, input, learningRate, delta, inputErrors, j, length);
+	}
+	
+	@Override
+	public double updateRow(float[] weights, int offset, float[] input, float learningRate, float delta,
+			float[] inputErrors, int length) {
+		final int bound = FLOATS.loopBound(length);
+		FloatVector effects = FloatVector.zero(FLOATS);
+		int j = 0;
+		for (; j < bound; j += FLOATS.length()) {
+			final FloatVector oldWeights = FloatVector.fromArray(FLOATS, weights, offset + j);
+			if (inputErrors != null)
+				FloatVector.fromArray(FLOATS, inputErrors, j).add(oldWeights.mul(delta)).intoArray(inputErrors, j);
+			final FloatVector newWeights = oldWeights
+					.sub(FloatVector.fromArray(FLOATS, input, j).mul(learningRate).mul(delta));
+			effects = effects.add(oldWeights.sub(newWeights).abs());
+			newWeights.intoArray(weights, offset + j);
+		}
+		double effectSum = effects.reduceLanes(VectorOperators.ADD);
+		return effectSum + updateRange(weights, offset, input, learningRate, delta, inputErrors, j, length);
+	}
+	
+	@Override
+	public void accumulateRow(double[] gradients, double[] weights, int offset, double[] input, double delta, double[] inputErrors,
+			int length) {
+		final int bound = DOUBLES.loopBound(length);
+		int j = 0;
+		for (; j < bound; j += DOUBLES.length()) {
+			if (inputErrors != null)
+				DoubleVector.fromArray(DOUBLES, inputErrors, j).add(DoubleVector.fromArray(DOUBLES, weights, offset + j).mul(delta))
+						.intoArray(inputErrors, j);
+			DoubleVector.fromArray(DOUBLES, gradients, offset + j).add(DoubleVector.fromArray(DOUBLES, input, j).mul(delta))
+					.intoArray(gradients, offset + j);
+		}
+		accumulateRange(gradients, weights, offset, input, delta, inputErrors, j, length);
+	}
+	
+	@Override
+	public double applyGradients(double[] weights, double[] gradients, int offset, double rate, int length) {
+		final int bound = offset + DOUBLES.loopBound(length);
+		final DoubleVector zero = DoubleVector.zero(DOUBLES);
+		DoubleVector effects = zero;
+		int k = offset;
+		for (; k < bound; k += DOUBLES.length()) {
+			final DoubleVector oldWeights = DoubleVector.fromArray(DOUBLES, weights, k);
+			final DoubleVector newWeights = oldWeights.sub(DoubleVector.fromArray(DOUBLES, gradients, k).mul(rate));
+			effects = effects.add(oldWeights.sub(newWeights).abs());
+			newWeights.intoArray(weights, k);
+			zero.intoArray(gradients, k);
+		}
+		return effects.reduceLanes(VectorOperators.ADD) + applyRange(weights, gradients, rate, k, offset + length);
+	}
+	
+	@Override
+	public void accumulateRow(float[] gradients, float[] weights, int offset, float[] input, float delta, float[] inputErrors,
+			int length) {
+		final int bound = FLOATS.loopBound(length);
+		int j = 0;
+		for (; j < bound; j += FLOATS.length()) {
+			if (inputErrors != null)
+				FloatVector.fromArray(FLOATS, inputErrors, j).add(FloatVector.fromArray(FLOATS, weights, offset + j).mul(delta))
+						.intoArray(inputErrors, j);
+			FloatVector.fromArray(FLOATS, gradients, offset + j).add(FloatVector.fromArray(FLOATS, input, j).mul(delta))
+					.intoArray(gradients, offset + j);
+		}
+		accumulateRange(gradients, weights, offset, input, delta, inputErrors, j, length);
+	}
+	
+	@Override
+	public double applyGradients(float[] weights, float[] gradients, int offset, float rate, int length) {
+		final int bound = offset + FLOATS.loopBound(length);
+		final FloatVector zero = FloatVector.zero(FLOATS);
+		FloatVector effects = zero;
+		int k = offset;
+		for (; k < bound; k += FLOATS.length()) {
+			final FloatVector oldWeights = FloatVector.fromArray(FLOATS, weights, k);
+			final FloatVector newWeights = oldWeights.sub(FloatVector.fromArray(FLOATS, gradients, k).mul(rate));
+			effects = effects.add(oldWeights.sub(newWeights).abs());
+			newWeights.intoArray(weights, k);
+			zero.intoArray(gradients, k);
+		}
+		return effects.reduceLanes(VectorOperators.ADD) + applyRange(weights, gradients, rate, k, offset + length);
+	}
+}
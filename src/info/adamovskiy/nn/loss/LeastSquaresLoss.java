@@ -0,0 +1,54 @@
+package info.adamovskiy.nn.loss;
+
+import info.adamovskiy.nn.activation.ActivationFunction;
+
+/**
+ * Half of sum of squared differences, every output is activated separately.
+ */
+public class LeastSquaresLoss implements Loss {
+	private final ActivationFunction activationFunction;
+	
+	public LeastSquaresLoss(ActivationFunction activationFunction) {
+		this.activationFunction = activationFunction;
+	}
+	
+	public ActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+	
+	@Override
+	public void activation(double[] sums, double[] outputs, int offset, int size) {
+		for (int i = offset; i < offset + size; i++) {
+			outputs[i] = activationFunction.activation(sums[i]);
+		}
+	}
+	
+	@Override
+	public double activation(double sum) {
+		return activationFunction.activation(sum);
+	}
+	
+	@Override
+	public double error(double[] outputs, int offset, double[] etalon, int size) {
+		double sum = 0d;
+		for (int i = 0; i < size; i++) {
+			double dif = outputs[offset + i] - etalon[i];
+			sum += dif*dif;
+		}
+		return sum / 2d;
+	}
+	
+	@Override
+	public double errorDerivative(double outputValue, double etalonValue) {
+		return outputValue - etalonValue;
+	}
+	
+	@Override
+	public void errorDerivativesBySum(double[] sums, double[] outputs, int offset, double[] etalon, double[] result,
+			int size) {
+		for (int i = 0; i < size; i++) {
+			result[offset + i] = (outputs[offset + i] - etalon[i])
+					* activationFunction.activationDerivative(sums[offset + i], outputs[offset + i]);
+		}
+	}
+}
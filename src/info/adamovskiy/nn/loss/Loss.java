@@ -0,0 +1,45 @@
+package info.adamovskiy.nn.loss;
+
+/**
+ * Loss function of network together with activation of its output layer,
+ * which may depend on all outputs of the layer. Every method processes
+ * whole output vector of one example, which is placed in given arrays from
+ * offset, so vectors of batch matrices can be processed in place.
+ */
+public interface Loss {
+	/**
+	 * Calculates outputs of output layer by sums of its neurons. Sums and
+	 * outputs may be the same array.
+	 */
+	public void activation(double[] sums, double[] outputs, int offset, int size);
+	
+	/**
+	 * @return output of single neuron by its sum
+	 * @throws UnsupportedOperationException
+	 *             if output depends on other neurons of the layer
+	 */
+	public double activation(double sum);
+	
+	/**
+	 * @param etalon
+	 *            etalon values of example, from 0
+	 * @return error of example
+	 */
+	public double error(double[] outputs, int offset, double[] etalon, int size);
+	
+	/**
+	 * @return derivative of error by output value
+	 */
+	public double errorDerivative(double outputValue, double etalonValue);
+	
+	/**
+	 * Calculates derivatives of error by sums of output neurons in one pass.
+	 * 
+	 * @param etalon
+	 *            etalon values of example, from 0
+	 * @param result
+	 *            receives derivatives from offset
+	 */
+	public void errorDerivativesBySum(double[] sums, double[] outputs, int offset, double[] etalon, double[] result,
+			int size);
+}
@@ -0,0 +1,62 @@
+package info.adamovskiy.nn.loss;
+
+/**
+ * Softmax output layer with cross-entropy loss: outputs are probabilities of
+ * classes, etalon is expected distribution, which values sum to 1 (usually
+ * one-hot). Derivative of error by sum of output neuron is simply
+ * <code>y - t</code>, because softmax Jacobian cancels out, so output layer
+ * gradient does not need derivative of activation at all.
+ */
+public class SoftmaxCrossEntropyLoss implements Loss {
+	/**
+	 * Sums are shifted by their maximum, so exponents do not overflow.
+	 */
+	@Override
+	public void activation(double[] sums, double[] outputs, int offset, int size) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = offset; i < offset + size; i++) {
+			max = Math.max(max, sums[i]);
+		}
+		double sum = 0;
+		for (int i = offset; i < offset + size; i++) {
+			outputs[i] = Math.exp(sums[i] - max);
+			sum += outputs[i];
+		}
+		final double scale = 1 / sum;
+		for (int i = offset; i < offset + size; i++) {
+			outputs[i] *= scale;
+		}
+	}
+	
+	@Override
+	public double activation(double sum) {
+		throw new UnsupportedOperationException("Softmax output depends on all outputs of layer");
+	}
+	
+	/**
+	 * Outputs are bounded by {@link Double#MIN_NORMAL}, so error of confident
+	 * mistake is finite.
+	 */
+	@Override
+	public double error(double[] outputs, int offset, double[] etalon, int size) {
+		double sum = 0;
+		for (int i = 0; i < size; i++) {
+			if (etalon[i] != 0)
+				sum -= etalon[i] * Math.log(Math.max(outputs[offset + i], Double.MIN_NORMAL));
+		}
+		return sum;
+	}
+	
+	@Override
+	public double errorDerivative(double outputValue, double etalonValue) {
+		return -etalonValue / Math.max(outputValue, Double.MIN_NORMAL);
+	}
+	
+	@Override
+	public void errorDerivativesBySum(double[] sums, double[] outputs, int offset, double[] etalon, double[] result,
+			int size) {
+		for (int i = 0; i < size; i++) {
+			result[offset + i] = outputs[offset + i] - etalon[i];
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package info.adamovskiy.nn.neuron;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.List;
 
 public abstract class AbstractNeuralNode implements NeuralNode {
@@ -35,12 +37,72 @@ public abstract class AbstractNeuralNode implements NeuralNode {
 		}
 	}
 	
+	/**
+	 * Fails with {@link ConcurrentModificationException}, if outputs are
+	 * added after {@link #moveToFirst()}.
+	 */
+	private class OutputIterator implements NeuronIterator {
+		private int cursor = -1;
+		private int expectedOutputsModCount;
+
+		private void checkValidity() {
+			if (cursor == -1)
+				throw new IllegalStateException();
+			if (outputsModCount != expectedOutputsModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public double getWeight() {
+			checkValidity();
+			return getOutputWeight(cursor);
+		}
+
+		@Override
+		public NeuralNode getNeuron() {
+			checkValidity();
+			return outputs.get(cursor);
+		}
+
+		@Override
+		public boolean stepNext() {
+			checkValidity();
+			if (++cursor == outputs.size()) {
+				cursor = -1;
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean moveToFirst() {
+			if (outputs.isEmpty())
+				return false;
+			cursor = 0;
+			expectedOutputsModCount = outputsModCount;
+			return true;
+		}
+	}
+	
+	private static final int INITIAL_CAPACITY = 4;
+	
 	private final Object label;
 	protected final List<Neuron> outputs; // TODO private?
+	/**
+	 * Index of this node among inputs of i-th output. Grows like
+	 * {@link ArrayList}, so its length can be greater than outputs count.
+	 */
+	private int[] outputSlots;
+	// changed with outputs, see OutputIterator
+	private int outputsModCount;
+	protected CacheGeneration cacheGeneration;
+	private int id = NO_ID;
 	
 	public AbstractNeuralNode(Object label) {
 		this.label = label;
 		outputs = new ArrayList<>();
+		outputSlots = new int[INITIAL_CAPACITY];
+		cacheGeneration = new CacheGeneration();
 	}
 	
 	@Override
@@ -49,14 +111,40 @@ public abstract class AbstractNeuralNode implements NeuralNode {
 	}
 	
 	@Override
-	public void addOutput(Neuron output) {
+	public int getId() {
+		return id;
+	}
+	
+	@Override
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	@Override
+	public void addOutput(Neuron output, int inputIndex) {
+		if (outputs.size() == outputSlots.length)
+			outputSlots = Arrays.copyOf(outputSlots, outputSlots.length * 2);
+		outputSlots[outputs.size()] = inputIndex;
 		outputs.add(output);
+		outputsModCount++;
+	}
+	
+	protected double getOutputWeight(int outputIndex) {
+		return outputs.get(outputIndex).getInputWeight(outputSlots[outputIndex]);
+	}
+	
+	@Override
+	public NeuronIterator getOutputIterator() {
+		return new OutputIterator();
+	}
+	
+	@Override
+	public void setCacheGeneration(CacheGeneration cacheGeneration) {
+		this.cacheGeneration = cacheGeneration;
 	}
 	
 	@Override
 	public void erase() {
-		for (Neuron output : outputs) {
-			output.erase();
-		}
+		cacheGeneration.advance();
 	}
 }
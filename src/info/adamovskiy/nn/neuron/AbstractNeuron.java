@@ -4,6 +4,7 @@ import info.adamovskiy.nn.NeuralNetwork;
 import info.adamovskiy.nn.NeuralNetwork.WeightChangedListener;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -21,7 +22,7 @@ public abstract class AbstractNeuron extends AbstractNeuralNode implements Neuro
 		@Override
 		public double getWeight() {
 			checkValidity();
-			return weights.get(cursor);
+			return weights[cursor];
 		}
 
 		@Override
@@ -48,71 +49,144 @@ public abstract class AbstractNeuron extends AbstractNeuralNode implements Neuro
 			return true;
 		}
 	}
+	private static final int INITIAL_CAPACITY = 4;
+	
 	protected final List<NeuralNode> inputs;
-	protected final List<Double> weights;
+	/**
+	 * Weight of i-th input. Grows like {@link ArrayList}, so its length can
+	 * be greater than inputs count.
+	 */
+	protected double[] weights;
+	/**
+	 * Accumulated gradient by i-th input weight, allocated on first
+	 * {@link #accumulateGradient(NeuralNetwork)} call.
+	 */
+	private double[] gradients;
 	
-	private Double sum = null;
-	private Double activationDerivativeOfSum = null;
-	private Double errorDerivativeBySum = null;
+	// each cached value is valid while its generation is current one
+	private double sum;
+	private long sumGeneration;
+	private double outputValue;
+	private long outputValueGeneration;
+	private double activationDerivativeOfSum;
+	private long activationDerivativeOfSumGeneration;
+	private double errorDerivativeBySum;
+	private long errorDerivativeBySumGeneration;
 	
 	public AbstractNeuron(Object label) {
 		super(label);
 		inputs = new ArrayList<>();
-		weights = new ArrayList<>();
+		weights = new double[INITIAL_CAPACITY];
 	}
 	
 	private double getSum() {
-		if (sum != null)
+		if (sumGeneration == cacheGeneration.get())
 			return sum;
 		double scalarSum = 0;
 		for (int i = 0; i < inputs.size(); i++) {
-			scalarSum += inputs.get(i).getOutputValue() * weights.get(i);
+			scalarSum += inputs.get(i).getOutputValue() * weights[i];
 		}
 		sum = scalarSum;
+		sumGeneration = cacheGeneration.get();
 		return scalarSum;
 	}
 	
 	protected abstract double activationDerivative(double x);
 	
-	protected abstract double activation(double x);
+	/**
+	 * @param y
+	 *            <code>activation(x)</code>, see
+	 *            {@link info.adamovskiy.nn.activation.ActivationFunction#activationDerivative(double, double)}
+	 */
+	@Override
+	public double activationDerivative(double x, double y) {
+		return activationDerivative(x);
+	}
+	
+	public abstract double activation(double x);
 	
 	protected abstract double calculateErrorDerivativeBySum(NeuralNetwork host);
 	
-	protected double getOutputWeight(int outputIndex) {
-		return outputs.get(outputIndex).getInputWeight(this);
-	}
-	
 	protected double getActivationDerivativeOfSum() {
-		if (activationDerivativeOfSum == null) {
-			activationDerivativeOfSum = activationDerivative(getSum());
+		if (activationDerivativeOfSumGeneration != cacheGeneration.get()) {
+			activationDerivativeOfSum = activationDerivative(getSum(), getOutputValue());
+			activationDerivativeOfSumGeneration = cacheGeneration.get();
 		}
 		return activationDerivativeOfSum;
 	}
 	
 	@Override
 	public void addInput(NeuralNode input, double weight) {
+		if (inputs.size() == weights.length)
+			weights = Arrays.copyOf(weights, weights.length * 2);
+		weights[inputs.size()] = weight;
 		inputs.add(input);
-		input.addOutput(this);
-		weights.add(weight);
+		input.addOutput(this, inputs.size() - 1);
+	}
+	
+	@Override
+	public void addInputs(NeuralNode[] newInputs, double[] newWeights) {
+		if (newInputs.length != newWeights.length)
+			throw new IllegalArgumentException("Count of weights differs from count of inputs");
+		final int first = inputs.size();
+		if (first + newInputs.length > weights.length)
+			weights = Arrays.copyOf(weights, Math.max(first + newInputs.length, weights.length * 2));
+		System.arraycopy(newWeights, 0, weights, first, newWeights.length);
+		inputs.addAll(Arrays.asList(newInputs));
+		for (int i = 0; i < newInputs.length; i++) {
+			newInputs[i].addOutput(this, first + i);
+		}
 	}
 	
 	@Override
 	public double getOutputValue() {
-		return activation(getSum());
+		if (outputValueGeneration != cacheGeneration.get()) {
+			outputValue = activation(getSum());
+			outputValueGeneration = cacheGeneration.get();
+		}
+		return outputValue;
+	}
+	
+	protected boolean isOutputValueCalculated() {
+		return outputValueGeneration == cacheGeneration.get();
 	}
 	
 	@Override
 	public double backpropagation(NeuralNetwork host, WeightChangedListener weightChangedListener) {
 		double effectSum = 0;
-		for (int i = 0; i < weights.size(); i++) {
-			final double newWeight = weights.get(i) - host.getLearningRate() * inputs.get(i).getOutputValue() * getErrorDerivativeBySum(host);
-			effectSum += Math.abs(weights.get(i) - newWeight);
+		for (int i = 0; i < inputs.size(); i++) {
+			final double newWeight = weights[i] - host.getLearningRate() * inputs.get(i).getOutputValue() * getErrorDerivativeBySum(host);
+			effectSum += Math.abs(weights[i] - newWeight);
 			if (weightChangedListener != null)
-				weightChangedListener.onWeightChanged(inputs.get(i), this, weights.get(i), newWeight);
-			weights.set(i, newWeight);
+				weightChangedListener.onWeightChanged(inputs.get(i), this, weights[i], newWeight);
+			weights[i] = newWeight;
 		}
+		return effectSum;
+	}
+	
+	@Override
+	public void accumulateGradient(NeuralNetwork host) {
+		if (gradients == null || gradients.length < inputs.size())
+			gradients = gradients == null ? new double[weights.length] : Arrays.copyOf(gradients, weights.length);
+		final double errorDerivativeBySum = getErrorDerivativeBySum(host);
 		for (int i = 0; i < inputs.size(); i++) {
-			effectSum += inputs.get(i).backpropagation(host, weightChangedListener);
+			gradients[i] += inputs.get(i).getOutputValue() * errorDerivativeBySum;
+		}
+	}
+	
+	@Override
+	public double applyAccumulatedGradient(NeuralNetwork host, double scale, WeightChangedListener weightChangedListener) {
+		if (gradients == null)
+			return 0;
+		final double rate = host.getLearningRate() * scale;
+		double effectSum = 0;
+		for (int i = 0; i < inputs.size(); i++) {
+			final double newWeight = weights[i] - rate * gradients[i];
+			effectSum += Math.abs(weights[i] - newWeight);
+			if (weightChangedListener != null)
+				weightChangedListener.onWeightChanged(inputs.get(i), this, weights[i], newWeight);
+			weights[i] = newWeight;
+			gradients[i] = 0;
 		}
 		return effectSum;
 	}
@@ -122,22 +196,40 @@ public abstract class AbstractNeuron extends AbstractNeuralNode implements Neuro
 		final int idx = inputs.indexOf(input);
 		if (idx == -1)
 			throw new IllegalArgumentException("Given neuron is not input");
-		return weights.get(idx);
+		return weights[idx];
 	}
 	
 	@Override
-	public double getErrorDerivativeBySum(NeuralNetwork host) {
-		if (errorDerivativeBySum == null)
-			errorDerivativeBySum = calculateErrorDerivativeBySum(host);
-		return errorDerivativeBySum;
+	public double getInputWeight(int inputIndex) {
+		if (inputIndex >= inputs.size())
+			throw new IndexOutOfBoundsException("Input index: " + inputIndex + ", inputs count: " + inputs.size());
+		return weights[inputIndex];
+	}
+	
+	@Override
+	public void setInputWeight(int inputIndex, double weight) {
+		if (inputIndex >= inputs.size())
+			throw new IndexOutOfBoundsException("Input index: " + inputIndex + ", inputs count: " + inputs.size());
+		weights[inputIndex] = weight;
 	}
 	
 	@Override
-	public void erase() {
-		sum = null;
-		activationDerivativeOfSum = null;
-		errorDerivativeBySum = null;
-		super.erase();
+	public int getInputsCount() {
+		return inputs.size();
+	}
+	
+	@Override
+	public NeuralNode getInput(int inputIndex) {
+		return inputs.get(inputIndex);
+	}
+	
+	@Override
+	public double getErrorDerivativeBySum(NeuralNetwork host) {
+		if (errorDerivativeBySumGeneration != cacheGeneration.get()) {
+			errorDerivativeBySum = calculateErrorDerivativeBySum(host);
+			errorDerivativeBySumGeneration = cacheGeneration.get();
+		}
+		return errorDerivativeBySum;
 	}
 	
 	@Override
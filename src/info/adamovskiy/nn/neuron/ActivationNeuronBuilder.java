@@ -0,0 +1,98 @@
+package info.adamovskiy.nn.neuron;
+
+import info.adamovskiy.nn.NeuronBuilder;
+import info.adamovskiy.nn.activation.ActivationFunction;
+
+/**
+ * Builds neurons, which delegate activation to given function, so the same
+ * functions can be used by both engines.
+ */
+public class ActivationNeuronBuilder implements NeuronBuilder {
+	private final ActivationFunction activationFunction;
+	
+	public static class ActivationHiddenNeuron extends HiddenNeuron {
+		private final ActivationFunction activationFunction;
+		
+		protected ActivationHiddenNeuron(Object label, ActivationFunction activationFunction) {
+			super(label);
+			this.activationFunction = activationFunction;
+		}
+		
+		public ActivationFunction getActivationFunction() {
+			return activationFunction;
+		}
+		
+		@Override
+		public double activation(double x) {
+			return activationFunction.activation(x);
+		}
+		
+		@Override
+		public double activationDerivative(double x) {
+			return activationFunction.activationDerivative(x);
+		}
+		
+		@Override
+		public double activationDerivative(double x, double y) {
+			return activationFunction.activationDerivative(x, y);
+		}
+	}
+	
+	public static class ActivationOutputNeuron extends OutputNeuron {
+		private final ActivationFunction activationFunction;
+		
+		protected ActivationOutputNeuron(Object label, ActivationFunction activationFunction) {
+			super(label);
+			this.activationFunction = activationFunction;
+		}
+		
+		public ActivationFunction getActivationFunction() {
+			return activationFunction;
+		}
+		
+		@Override
+		public double activation(double x) {
+			return activationFunction.activation(x);
+		}
+		
+		@Override
+		public double activationDerivative(double x) {
+			return activationFunction.activationDerivative(x);
+		}
+		
+		@Override
+		public double activationDerivative(double x, double y) {
+			return activationFunction.activationDerivative(x, y);
+		}
+	}
+	
+	public ActivationNeuronBuilder(ActivationFunction activationFunction) {
+		this.activationFunction = activationFunction;
+	}
+	
+	public ActivationFunction getActivationFunction() {
+		return activationFunction;
+	}
+	
+	@Override
+	public HiddenNeuron buildHiddenNeuron(Object label) {
+		return new ActivationHiddenNeuron(label, activationFunction);
+	}
+
+	@Override
+	public InputNeuron buildInput(Object label) {
+		return new InputNeuron(label);
+	}
+	
+	@Override
+	public InputNeuron buildShiftNeuron(Object label) {
+		InputNeuron result = buildInput(label);
+		result.setConstantValue(1);
+		return result;
+	}
+
+	@Override
+	public OutputNeuron buildOutput(Object label) {
+		return new ActivationOutputNeuron(label, activationFunction);
+	}
+}
@@ -0,0 +1,22 @@
+package info.adamovskiy.nn.neuron;
+
+/**
+ * Network-wide counter of cache invalidations. Neuron caches a value together
+ * with generation it was calculated in, and the value is valid only while
+ * generation stays the same. So all caches of network are erased at once by
+ * {@link #advance()}.
+ */
+public class CacheGeneration {
+	private long current = 1;
+	
+	/**
+	 * @return current generation, never 0
+	 */
+	public long get() {
+		return current;
+	}
+	
+	public void advance() {
+		current++;
+	}
+}
@@ -8,7 +8,9 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 public class InputNeuron extends AbstractNeuralNode {
-	private Double inputValue = null;
+	private double inputValue;
+	private long inputValueGeneration;
+	private boolean constant;
 	
 	public InputNeuron(Object label) {
 		super(label);
@@ -16,27 +18,38 @@ public class InputNeuron extends AbstractNeuralNode {
 
 	@Override
 	public double getOutputValue() {
-		if (inputValue == null)
+		if (!isInputValueSet())
 			throw new IllegalStateException("input value was not set");
 		return inputValue;
 	}
+	
+	private boolean isInputValueSet() {
+		return constant || inputValueGeneration == cacheGeneration.get();
+	}
 
+	/**
+	 * Value is valid until next {@link #erase()}.
+	 * 
+	 * @param inputValue
+	 */
 	public void setInputValue(double inputValue) {
 		this.inputValue = inputValue;
+		inputValueGeneration = cacheGeneration.get();
 	}
 	
-	@Override
-	public double backpropagation(NeuralNetwork host, WeightChangedListener weightChangedListener) {
-		return 0;
+	/**
+	 * Value is not erased, for shift neurons.
+	 * 
+	 * @param inputValue
+	 */
+	public void setConstantValue(double inputValue) {
+		this.inputValue = inputValue;
+		constant = true;
 	}
 	
 	@Override
-	public void erase() {
-		inputValue = null;
-		
-		for (Neuron output : outputs) {
-			output.erase();
-		}
+	public double backpropagation(NeuralNetwork host, WeightChangedListener weightChangedListener) {
+		return 0;
 	}
 	
 	@Override
@@ -47,7 +60,7 @@ public class InputNeuron extends AbstractNeuralNode {
 	//for debug
 	@Override
 	public String toString() {
-		return inputValue == null ? "" : inputValue.toString();
+		return isInputValueSet() ? Double.toString(inputValue) : "";
 	}
 	
 	@Override
@@ -47,27 +47,65 @@ public interface NeuralNode {
 		public boolean moveToFirst();
 	}
 	
+	/**
+	 * Id of node, which is not assigned to any network yet.
+	 */
+	public static final int NO_ID = -1;
+	
 	// for debug
 	public Object getLabel();
 	
+	/**
+	 * @return dense index of node inside its network (starting from 0), or
+	 *         {@link #NO_ID}
+	 */
+	public int getId();
+	
+	/**
+	 * For internal use only! Assigned by network once.
+	 * 
+	 * @param id
+	 */
+	void setId(int id);
+	
 	/**
 	 * For internal use only!
 	 * 
 	 * @param output
+	 * @param inputIndex
+	 *            index of this node among inputs of output
 	 */
-	void addOutput(Neuron output);
+	void addOutput(Neuron output, int inputIndex);
 	public double getOutputValue();
 	public NeuronIterator getInputIterator();
-	// TODO implement getOutputIterator()
 	/**
-	 * Changes all input weights, calls itself recursively for input neurons
+	 * @return iterator through neurons, which have this node as input.
+	 *         {@link NeuronIterator#getWeight()} returns weight of edge from
+	 *         this node, it takes constant time.
+	 */
+	public NeuronIterator getOutputIterator();
+	/**
+	 * Changes all input weights. Does not call itself for inputs: network
+	 * calls it once for every neuron, after error derivatives of all neurons
+	 * are calculated (see {@link Neuron#getErrorDerivativeBySum(NeuralNetwork)}).
 	 * 
 	 * @param host
 	 * @return effect - sum of weight deltas
 	 */
 	public double backpropagation(NeuralNetwork host, WeightChangedListener weightChangedListener);
+	/**
+	 * Erases all cached values of this node's generation, see
+	 * {@link CacheGeneration}. Takes constant time.
+	 */
 	public void erase();
 	
+	/**
+	 * For internal use only! All nodes of network must share one generation.
+	 * 
+	 * @param cacheGeneration
+	 */
+	void setCacheGeneration(CacheGeneration cacheGeneration);
+	
 	/**
 	 * Can be slow. Recommended for topology correctness check.
 	 * @return teminal inputs set.
@@ -1,12 +1,77 @@
 package info.adamovskiy.nn.neuron;
 
 import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetwork.WeightChangedListener;
 
 public interface Neuron extends NeuralNode {
 	
 	public void addInput(NeuralNode input, double weight);
+	
+	/**
+	 * The same as {@link #addInput(NeuralNode, double)} for every input in
+	 * order, but storage of inputs grows once.
+	 * 
+	 * @param weights
+	 *            weight of i-th input
+	 */
+	public void addInputs(NeuralNode[] inputs, double[] weights);
 
 	public double getInputWeight(Neuron neuron);
+	
+	/**
+	 * @param inputIndex
+	 *            index of input in order of {@link #addInput(NeuralNode, double)} calls
+	 * @return weight of input, takes constant time
+	 */
+	public double getInputWeight(int inputIndex);
+	
+	/**
+	 * Sets weight of input, see {@link #getInputWeight(int)}. Weight changed
+	 * listener is not notified.
+	 */
+	public void setInputWeight(int inputIndex, double weight);
+	
+	public int getInputsCount();
+	
+	/**
+	 * @return output value for given sum of weighted inputs, does not depend
+	 *         on state of this neuron
+	 */
+	public double activation(double sum);
+	
+	/**
+	 * @param output
+	 *            <code>activation(sum)</code>
+	 * @return derivative of activation, does not depend on state of this
+	 *         neuron
+	 */
+	public double activationDerivative(double sum, double output);
+	
+	/**
+	 * @param inputIndex
+	 *            index of input in order of {@link #addInput(NeuralNode, double)} calls
+	 * @return input, takes constant time
+	 */
+	public NeuralNode getInput(int inputIndex);
 
 	public double getErrorDerivativeBySum(NeuralNetwork host);
+
+	/**
+	 * Adds gradient of current example to accumulated one, weights are not
+	 * changed. Called like {@link #backpropagation(NeuralNetwork, WeightChangedListener)}:
+	 * once for every neuron, after all error derivatives are calculated.
+	 * 
+	 * @param host
+	 */
+	public void accumulateGradient(NeuralNetwork host);
+	
+	/**
+	 * Changes all input weights by accumulated gradient and resets it.
+	 * 
+	 * @param host
+	 * @param scale
+	 *            multiplier of accumulated gradient, e.g. 1 / examples count
+	 * @return effect - sum of weight deltas
+	 */
+	public double applyAccumulatedGradient(NeuralNetwork host, double scale, WeightChangedListener weightChangedListener);
 }
@@ -3,8 +3,8 @@ package info.adamovskiy.nn.neuron;
 import info.adamovskiy.nn.NeuralNetwork;
 
 public abstract class OutputNeuron extends AbstractNeuron {
-	private Double etalonValue = null;
-	private Double outputValue = null;
+	private double etalonValue;
+	private long etalonValueGeneration;
 	
 	public OutputNeuron(Object label) {
 		super(label);
@@ -17,39 +17,30 @@ public abstract class OutputNeuron extends AbstractNeuron {
 
 	public void setEtalonValue(double etalonValue) {
 		this.etalonValue = etalonValue;
+		etalonValueGeneration = cacheGeneration.get();
+	}
+	
+	private boolean isEtalonValueSet() {
+		return etalonValueGeneration == cacheGeneration.get();
 	}
 	
 	public double getEtalonValue() {
-		if (etalonValue == null)
+		if (!isEtalonValueSet())
 			throw new IllegalStateException("Etalon value was not set");
 		return etalonValue;
 	}
-	
-	@Override
-	public void erase() {
-		etalonValue = null;
-		outputValue = null;
-		super.erase();
-	}
-	
-	@Override
-	public double getOutputValue() {
-		if (outputValue == null)
-			outputValue = super.getOutputValue();
-		return outputValue;
-	}
 
 	// for debug
 	@Override
 	public String toString() {
 		String result = "";
-		if (etalonValue != null) {
+		if (isEtalonValueSet()) {
 			result = String.format("etalon: %.8f", etalonValue);
-			if (outputValue != null)
+			if (isOutputValueCalculated())
 				result += ", ";
 		}
-		if (outputValue != null)
-			result += String.format("output: %.8f", outputValue);
+		if (isOutputValueCalculated())
+			result += String.format("output: %.8f", getOutputValue());
 		return result;
 	}
 }
@@ -1,71 +1,45 @@
 package info.adamovskiy.nn.neuron;
 
-import info.adamovskiy.nn.NeuronBuilder;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
 
-public class SigmoidNeuronBuilder implements NeuronBuilder {
-	private final double alpha;
-	
-	public static class SigmidHiddenNeuron extends HiddenNeuron{
-		private final double alpha;
-		
-		private SigmidHiddenNeuron(Object label, double alpha) {
-			super(label);
-			this.alpha = alpha;
-		}
-		
-		@Override
-		public double activation(double x) {
-			return 1d / (1d + Math.exp(-alpha * x));
-		}
-		
-		@Override
-		public double activationDerivative(double x) {
-			return alpha * activation(x)* (1d - activation(x));
+public class SigmoidNeuronBuilder extends ActivationNeuronBuilder {
+	public static class SigmidHiddenNeuron extends ActivationHiddenNeuron {
+		private SigmidHiddenNeuron(Object label, SigmoidActivationFunction activationFunction) {
+			super(label, activationFunction);
 		}
 	}
 	
-	public static class SigmoidOutputNeuron extends OutputNeuron {
-		private final double alpha;
-		
-		private SigmoidOutputNeuron(Object label, double alpha) {
-			super(label);
-			this.alpha = alpha;
-		}
-		
-		@Override
-		public double activation(double x) {
-			return 1d / (1d + Math.exp(-alpha * x));
-		}
-		
-		@Override
-		public double activationDerivative(double x) {
-			return alpha * activation(x)* (1d - activation(x));
+	public static class SigmoidOutputNeuron extends ActivationOutputNeuron {
+		private SigmoidOutputNeuron(Object label, SigmoidActivationFunction activationFunction) {
+			super(label, activationFunction);
 		}
 	}
 	
 	public SigmoidNeuronBuilder(double alpha) {
-		this.alpha = alpha;
+		this(new SigmoidActivationFunction(alpha));
 	}
 	
-	@Override
-	public HiddenNeuron buildHiddenNeuron(Object label) {
-		return new SigmidHiddenNeuron(label, alpha);
+	/**
+	 * @param activationFunction
+	 *            exact or approximate sigmoid, e.g.
+	 *            {@link info.adamovskiy.nn.activation.TableSigmoidActivationFunction}
+	 */
+	public SigmoidNeuronBuilder(SigmoidActivationFunction activationFunction) {
+		super(activationFunction);
 	}
-
+	
 	@Override
-	public InputNeuron buildInput(Object label) {
-		return new InputNeuron(label);
+	public SigmoidActivationFunction getActivationFunction() {
+		return (SigmoidActivationFunction) super.getActivationFunction();
 	}
 	
 	@Override
-	public InputNeuron buildShiftNeuron(Object label) {
-		InputNeuron result = buildInput(label);
-		result.setInputValue(1);
-		return result;
+	public HiddenNeuron buildHiddenNeuron(Object label) {
+		return new SigmidHiddenNeuron(label, getActivationFunction());
 	}
 
 	@Override
 	public OutputNeuron buildOutput(Object label) {
-		return new SigmoidOutputNeuron(label, alpha);
+		return new SigmoidOutputNeuron(label, getActivationFunction());
 	}
 }
@@ -0,0 +1,301 @@
+package info.adamovskiy.nn.server;
+
+import info.adamovskiy.nn.InferenceSession;
+import info.adamovskiy.nn.NeuralNetwork;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Headless HTTP server, which concludes network for posted input vectors.
+ *
+ * <code>POST /conclude</code> takes input values separated by commas or
+ * whitespace and returns output values (class scores) separated by commas,
+ * both as plain text.
+ *
+ * Every exchange is handled by its own virtual thread, when JVM has them
+ * (Java 21+), or by thread of cached pool otherwise. Handler threads only
+ * parse and wait: requests are gathered into micro-batches by single
+ * batching thread, which concludes them together by
+ * {@link InferenceSession#concludeBatch(double[][], double[][])}. Batch is
+ * concluded when it has maxBatchSize requests or when maxWait has passed
+ * since its first request.
+ *
+ * Network may be taught while server works, see {@link InferenceSession}.
+ */
+public class InferenceServer implements Closeable {
+	public static final String CONCLUDE_PATH = "/conclude";
+
+	private static class Request {
+		final double[] input;
+		final double[] result;
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile Throwable failure;
+
+		Request(double[] input, int outputsCount) {
+			this.input = input;
+			result = new double[outputsCount];
+		}
+	}
+
+	private final InferenceSession session;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final boolean usingVirtualThreads;
+	private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+	private final Thread batchingThread;
+	private volatile boolean closed;
+
+	private final AtomicLong batchesCount = new AtomicLong();
+	private final AtomicLong concludedCount = new AtomicLong();
+
+	/**
+	 * Server is started at once.
+	 *
+	 * @param address
+	 *            port 0 means any free port, see {@link #getPort()}
+	 * @param maxBatchSize
+	 *            1 disables batching
+	 * @param maxWait
+	 *            how long the first request of batch can wait for others
+	 */
+	public InferenceServer(NeuralNetwork network, InetSocketAddress address, int maxBatchSize, long maxWait, TimeUnit unit)
+			throws IOException {
+		this(network.createInferenceSession(), address, maxBatchSize, maxWait, unit);
+	}
+
+	/**
+	 * The same as
+	 * {@link #InferenceServer(NeuralNetwork, InetSocketAddress, int, long, TimeUnit)},
+	 * but requests are concluded by given session, for example of
+	 * {@link info.adamovskiy.nn.dense.QuantizedDenseNetwork}. Session must not
+	 * be used by anyone else.
+	 */
+	public InferenceServer(InferenceSession session, InetSocketAddress address, int maxBatchSize, long maxWait,
+			TimeUnit unit) throws IOException {
+		if (maxBatchSize < 1)
+			throw new IllegalArgumentException("Max batch size must be positive");
+		this.session = session;
+		this.maxBatchSize = maxBatchSize;
+		maxWaitNanos = unit.toNanos(maxWait);
+		server = HttpServer.create(address, 0);
+		final ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+		usingVirtualThreads = virtualThreadExecutor != null;
+		executor = usingVirtualThreads ? virtualThreadExecutor : Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext(CONCLUDE_PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleConclude(exchange);
+			}
+		});
+		batchingThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				batchingLoop();
+			}
+		}, "InferenceServer-batching");
+		batchingThread.setDaemon(true);
+		batchingThread.start();
+		server.start();
+	}
+
+	/**
+	 * Virtual thread per task executor is looked up reflectively, so the
+	 * server runs on older JVMs too.
+	 *
+	 * @return null if JVM has no virtual threads
+	 */
+	private static ExecutorService createVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return true if exchanges are handled by virtual threads
+	 */
+	public boolean isUsingVirtualThreads() {
+		return usingVirtualThreads;
+	}
+
+	public long getBatchesCount() {
+		return batchesCount.get();
+	}
+
+	public long getConcludedCount() {
+		return concludedCount.get();
+	}
+
+	/**
+	 * @return average count of requests concluded together
+	 */
+	public double getAverageBatchSize() {
+		final long batches = batchesCount.get();
+		return batches == 0 ? 0 : (double) concludedCount.get() / batches;
+	}
+
+	private void batchingLoop() {
+		final List<Request> batch = new ArrayList<>(maxBatchSize);
+		double[][] inputs = new double[0][];
+		double[][] results = new double[0][];
+		try {
+			while (!closed) {
+				batch.add(requests.take());
+				final long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxBatchSize) {
+					final Request request = requests.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (request == null)
+						break;
+					batch.add(request);
+				}
+				// any failure, including errors, fails this batch only, so the loop keeps serving
+				try {
+					if (inputs.length != batch.size()) {
+						inputs = new double[batch.size()][];
+						results = new double[batch.size()][];
+					}
+					for (int r = 0; r < inputs.length; r++) {
+						inputs[r] = batch.get(r).input;
+						results[r] = batch.get(r).result;
+					}
+					session.concludeBatch(inputs, results);
+				} catch (Throwable e) {
+					for (Request request : batch) {
+						request.failure = e;
+					}
+				}
+				batchesCount.incrementAndGet();
+				concludedCount.addAndGet(batch.size());
+				for (Request request : batch) {
+					request.done.countDown();
+				}
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// closed
+		}
+		final IllegalStateException failure = new IllegalStateException("Server is closed");
+		requests.drainTo(batch);
+		for (Request request : batch) {
+			request.failure = failure;
+			request.done.countDown();
+		}
+	}
+
+	private static byte[] readBody(InputStream stream) throws IOException {
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = stream.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	private double[] parseInput(byte[] body) {
+		final String text = new String(body, StandardCharsets.US_ASCII).trim();
+		final String[] values = text.isEmpty() ? new String[0] : text.split("[,\\s]+");
+		if (values.length != session.getInputsCount())
+			throw new IllegalArgumentException(String.format("Expected %d input values, got %d",
+					session.getInputsCount(), values.length));
+		final double[] input = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			input[i] = Double.parseDouble(values[i]);
+		}
+		return input;
+	}
+
+	private static void respond(HttpExchange exchange, int code, String text) throws IOException {
+		final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain");
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream body = exchange.getResponseBody()) {
+			body.write(bytes);
+		}
+	}
+
+	private void handleConclude(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 405, "POST is expected\n");
+				return;
+			}
+			final Request request;
+			try {
+				request = new Request(parseInput(readBody(exchange.getRequestBody())), session.getOutputsCount());
+			} catch (IllegalArgumentException e) {
+				respond(exchange, 400, e.getMessage() + "\n");
+				return;
+			}
+			if (closed) {
+				respond(exchange, 503, "Server is closed\n");
+				return;
+			}
+			requests.add(request);
+			// close() may have drained the queue before the request was added
+			if (closed && requests.remove(request)) {
+				respond(exchange, 503, "Server is closed\n");
+				return;
+			}
+			try {
+				request.done.await();
+			} catch (InterruptedException e) {
+				respond(exchange, 503, "Interrupted\n");
+				return;
+			}
+			if (request.failure != null) {
+				respond(exchange, 500, request.failure.getMessage() + "\n");
+				return;
+			}
+			final StringBuilder response = new StringBuilder();
+			for (int i = 0; i < request.result.length; i++) {
+				if (i > 0)
+					response.append(',');
+				response.append(request.result[i]);
+			}
+			respond(exchange, 200, response.append('\n').toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Stops accepting requests, waiting ones fail.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		server.stop(0);
+		batchingThread.interrupt();
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,309 @@
+package info.adamovskiy.nn.teacher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import info.adamovskiy.nn.NetworkSnapshot;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+
+/**
+ * Takes checkpoints of network and {@link OnlineNeuralTeacher} state every
+ * given count of iterations or milliseconds. Weights are copied by teaching
+ * thread between steps, see {@link NeuralNetwork#capture()}, and written by
+ * background thread while learning continues. When the next checkpoint is
+ * due, but the previous one is still written, it is taken after writing, so
+ * learning never waits for disk.
+ * <p>
+ * Checkpoint is {@link NetworkSnapshot} and properties file of teacher state,
+ * which is written after the snapshot, so checkpoint without state file is
+ * ignored. The latest {@link #KEPT_CHECKPOINTS} checkpoints are kept in
+ * directory.
+ */
+public class Checkpointer implements Closeable {
+	public static final int KEPT_CHECKPOINTS = 2;
+
+	private static final String PREFIX = "checkpoint-";
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+	private static final String STATE_SUFFIX = ".properties";
+	private static final String ITERATION = "iteration";
+	private static final String REPEAT = "repeat";
+	private static final String POSITION = "position";
+	private static final String SNAPSHOT = "snapshot";
+
+	/**
+	 * Teacher state and network snapshot file.
+	 */
+	public static class Checkpoint {
+		private final long iteration;
+		private final int repeat;
+		private final long position;
+		private final File snapshotFile;
+
+		Checkpoint(long iteration, int repeat, long position, File snapshotFile) {
+			this.iteration = iteration;
+			this.repeat = repeat;
+			this.position = position;
+			this.snapshotFile = snapshotFile;
+		}
+
+		/**
+		 * @return count of examples learned in all repeats
+		 */
+		public long getIteration() {
+			return iteration;
+		}
+
+		/**
+		 * @return count of finished repeats of the current batch
+		 */
+		public int getRepeat() {
+			return repeat;
+		}
+
+		/**
+		 * @return count of examples taken from data source
+		 */
+		public long getPosition() {
+			return position;
+		}
+
+		public File getSnapshotFile() {
+			return snapshotFile;
+		}
+
+		/**
+		 * See {@link NetworkSnapshot#load(File, Engine)}.
+		 */
+		public NeuralNetwork loadNetwork(Engine engine) throws IOException {
+			return NetworkSnapshot.load(snapshotFile, engine);
+		}
+	}
+
+	private final File directory;
+	private final long everyIterations;
+	private final long everyNanos;
+	private final ExecutorService writer;
+
+	private boolean started;
+	private long lastIteration;
+	private long lastTime;
+	private Future<?> pending;
+	private int writtenCount;
+
+	/**
+	 * @param directory
+	 *            directory of checkpoints, created if absent
+	 * @param everyIterations
+	 *            iterations between checkpoints, 0 if checkpoints are not
+	 *            counted by iterations
+	 * @param everyMillis
+	 *            milliseconds between checkpoints, 0 if checkpoints are not
+	 *            counted by time
+	 */
+	public Checkpointer(File directory, long everyIterations, long everyMillis) throws IOException {
+		if (everyIterations < 0 || everyMillis < 0)
+			throw new IllegalArgumentException("Period must not be negative");
+		Files.createDirectories(directory.toPath());
+		this.directory = directory;
+		this.everyIterations = everyIterations;
+		this.everyNanos = everyMillis * 1000000;
+		writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "Checkpointer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return count of checkpoints written so far
+	 */
+	public synchronized int getWrittenCount() {
+		return writtenCount;
+	}
+
+	/**
+	 * Starts counting of period, called when learning starts. Learning can be
+	 * started many times, period is counted from the first start.
+	 */
+	void start(long iteration) {
+		if (started)
+			return;
+		started = true;
+		lastIteration = iteration;
+		lastTime = System.nanoTime();
+	}
+
+	/**
+	 * Called by teaching thread after every step, takes checkpoint if it is
+	 * due and previous one is written.
+	 *
+	 * @throws IOException
+	 *             if previous checkpoint was not written
+	 */
+	void onStep(NeuralNetwork network, long iteration, int repeat, long position) throws IOException {
+		if (!(everyIterations > 0 && iteration - lastIteration >= everyIterations
+				|| everyNanos > 0 && System.nanoTime() - lastTime >= everyNanos))
+			return;
+		if (pending != null) {
+			if (!pending.isDone())
+				return;
+			awaitWritten();
+		}
+		lastIteration = iteration;
+		lastTime = System.nanoTime();
+		final NetworkSnapshot.Capture capture = network.capture();
+		pending = writer.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				write(capture, iteration, repeat, position);
+				return null;
+			}
+		});
+	}
+
+	private void write(NetworkSnapshot.Capture capture, long iteration, int repeat, long position) throws IOException {
+		final String name = String.format("%s%019d-%010d", PREFIX, iteration, repeat);
+		final File snapshotFile = new File(directory, name + SNAPSHOT_SUFFIX);
+		capture.save(snapshotFile);
+		final Properties state = new Properties();
+		state.setProperty(ITERATION, Long.toString(iteration));
+		state.setProperty(REPEAT, Integer.toString(repeat));
+		state.setProperty(POSITION, Long.toString(position));
+		state.setProperty(SNAPSHOT, snapshotFile.getName());
+		final File stateFile = new File(directory, name + STATE_SUFFIX);
+		final File temp = File.createTempFile(name, ".tmp", directory);
+		try {
+			try (FileOutputStream out = new FileOutputStream(temp)) {
+				state.store(out, "OnlineNeuralTeacher checkpoint");
+				out.getFD().sync();
+			}
+			Files.move(temp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+		final String[] names = listStates(directory);
+		for (int i = 0; i < names.length - KEPT_CHECKPOINTS; i++) {
+			final String old = names[i].substring(0, names[i].length() - STATE_SUFFIX.length());
+			new File(directory, names[i]).delete();
+			new File(directory, old + SNAPSHOT_SUFFIX).delete();
+		}
+		synchronized (this) {
+			writtenCount++;
+		}
+	}
+
+	/**
+	 * Waits until the last taken checkpoint is written.
+	 *
+	 * @throws IOException
+	 *             if it was not written
+	 */
+	public void awaitWritten() throws IOException {
+		if (pending == null)
+			return;
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					pending.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pending = null;
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until the last taken checkpoint is written and stops background
+	 * thread.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			awaitWritten();
+		} finally {
+			writer.shutdown();
+		}
+	}
+
+	/**
+	 * @return the latest checkpoint of this checkpointer's directory, null
+	 *         if there is no one
+	 */
+	public Checkpoint getLatest() throws IOException {
+		return findLatest(directory);
+	}
+
+	/**
+	 * @return the latest checkpoint of given directory, null if there is no
+	 *         one
+	 */
+	public static Checkpoint findLatest(File directory) throws IOException {
+		final String[] names = listStates(directory);
+		if (names.length == 0)
+			return null;
+		final Properties state = new Properties();
+		try (InputStream in = new FileInputStream(new File(directory, names[names.length - 1]))) {
+			state.load(in);
+		}
+		try {
+			return new Checkpoint(Long.parseLong(state.getProperty(ITERATION)),
+					Integer.parseInt(state.getProperty(REPEAT)), Long.parseLong(state.getProperty(POSITION)),
+					new File(directory, state.getProperty(SNAPSHOT)));
+		} catch (NumberFormatException | NullPointerException e) {
+			throw new IOException("Damaged checkpoint " + names[names.length - 1], e);
+		}
+	}
+
+	/**
+	 * @return names of state files, the latest is the last one
+	 */
+	private static String[] listStates(File directory) {
+		final String[] names = directory.list();
+		if (names == null)
+			return new String[0];
+		int count = 0;
+		for (String name : names) {
+			if (name.startsWith(PREFIX) && name.endsWith(STATE_SUFFIX))
+				names[count++] = name;
+		}
+		final String[] result = Arrays.copyOf(names, count);
+		// numbers are padded, so names are ordered like iterations and repeats
+		Arrays.sort(result);
+		return result;
+	}
+}
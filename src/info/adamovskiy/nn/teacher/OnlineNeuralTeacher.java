@@ -2,7 +2,10 @@ package info.adamovskiy.nn.teacher;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import info.adamovskiy.nn.DataSource;
 import info.adamovskiy.nn.NeuralNetwork;
@@ -18,9 +21,18 @@ public class OnlineNeuralTeacher {
 	
 	private int repeats = 1;
 	private long iterations = Long.MAX_VALUE;
+	private int batchSize = 1;
+	private int threadsCount = 1;
 	private int currentRepeat = 0;
 	private long currentIteration = 0;
 	
+	// examples of current batch, copied from data source
+	private double[][] batchInputs = new double[1][];
+	private double[][] batchOutputs = new double[1][];
+	private int batchFill;
+	
+	private Checkpointer checkpointer;
+	
 	public OnlineNeuralTeacher(NeuralNetwork network) {
 		this.network = network;
 	}
@@ -45,6 +57,127 @@ public class OnlineNeuralTeacher {
 		this.iterations = iterations;
 	}
 	
+	/**
+	 * Sets how many examples are taught together by
+	 * {@link NeuralNetwork#teachBatch(double[][], double[][])}. By default 1,
+	 * every example is taught by {@link NeuralNetwork#teach(double[], double[])}.
+	 * Iterations and repeats are still counted by examples, every example of
+	 * batch is repeated together with whole batch.
+	 * 
+	 * @param batchSize
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be positive");
+		this.batchSize = batchSize;
+		batchInputs = new double[batchSize][];
+		batchOutputs = new double[batchSize][];
+		batchFill = 0;
+	}
+	
+	/**
+	 * Sets how many threads teach the network. By default 1. Every thread but
+	 * the calling one teaches its own worker, see
+	 * {@link NeuralNetwork#createWorker()}, so weights are changed without
+	 * locking and updates of different threads can overwrite each other
+	 * (Hogwild). Batches are taken from data source in order, result
+	 * consumers are notified in the same order from one thread at a time.
+	 * Learning fails with {@link UnsupportedOperationException} if network
+	 * can not create workers, see {@link NeuralNetwork#createWorker()}.
+	 * 
+	 * @param threadsCount
+	 */
+	public void setThreadsCount(int threadsCount) {
+		if (threadsCount < 1)
+			throw new IllegalArgumentException("Threads count must be positive");
+		this.threadsCount = threadsCount;
+	}
+	
+	/**
+	 * Sets checkpointer, which takes checkpoints of network and state of this
+	 * teacher during learning, see {@link Checkpointer}. Only learning by one
+	 * thread is checkpointed: threads of concurrent learning change weights
+	 * at any time, so they have no consistent state. By default null.
+	 * 
+	 * @param checkpointer
+	 */
+	public void setCheckpointer(Checkpointer checkpointer) {
+		this.checkpointer = checkpointer;
+	}
+	
+	/**
+	 * Continues learning from checkpoint. Network of this teacher must be
+	 * loaded from its snapshot, see
+	 * {@link Checkpointer.Checkpoint#loadNetwork(info.adamovskiy.nn.NeuralNetworkBuilder.Engine)},
+	 * data source must be set and give the same examples as the checkpointed
+	 * one from the beginning, batch size and repeats must be the same.
+	 * Examples learned before checkpoint are skipped, batch of unfinished
+	 * repeats is taken again.
+	 * 
+	 * @throws IOException
+	 *             if data source ends before position of checkpoint
+	 */
+	public void resume(Checkpointer.Checkpoint checkpoint) throws IOException {
+		if (dataSource == null)
+			throw new IllegalStateException("Data source is not set.");
+		if (!dataSource.skip(checkpoint.getIteration()))
+			throw new IOException("Data source ended before checkpoint");
+		currentIteration = checkpoint.getIteration();
+		currentRepeat = 0;
+		batchFill = 0;
+		if (checkpoint.getRepeat() > 0) {
+			prepareBatch();
+			if (currentIteration + batchFill != checkpoint.getPosition())
+				throw new IOException("Batch of checkpoint differs from batch of data source");
+			currentRepeat = checkpoint.getRepeat();
+		}
+	}
+	
+	private static double[] copyVector(double[] source, double[] target) {
+		if (target == null || target.length != source.length)
+			return source.clone();
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+	}
+	
+	/**
+	 * @return false if there is no more data
+	 */
+	private boolean prepareBatch() throws IOException {
+		batchFill = 0;
+		while (batchFill < batchSize && currentIteration + batchFill < iterations && dataSource.prepareNext()) {
+			if (batchSize == 1) {
+				batchInputs[0] = dataSource.getInput();
+				batchOutputs[0] = dataSource.getOutput();
+			} else {
+				batchInputs[batchFill] = copyVector(dataSource.getInput(), batchInputs[batchFill]);
+				batchOutputs[batchFill] = copyVector(dataSource.getOutput(), batchOutputs[batchFill]);
+			}
+			batchFill++;
+		}
+		return batchFill > 0;
+	}
+	
+	/**
+	 * @return effect
+	 */
+	private double teachBatch() {
+		if (batchFill < batchSize)
+			return teach(network, Arrays.copyOf(batchInputs, batchFill), Arrays.copyOf(batchOutputs, batchFill));
+		return teach(network, batchInputs, batchOutputs);
+	}
+	
+	/**
+	 * @return effect
+	 */
+	private double teach(NeuralNetwork network, double[][] inputs, double[][] outputs) {
+		if (batchSize == 1) {
+			network.erase();
+			return network.teach(inputs[0], outputs[0]);
+		}
+		return network.teachBatch(inputs, outputs);
+	}
+	
 	public volatile boolean stopped = true;
 	
 	public void startLearning(int delay) throws IOException {
@@ -55,25 +188,50 @@ public class OnlineNeuralTeacher {
 		stopped = false;
 		if (dataSource == null)
 			throw new IllegalStateException("Data source is not set.");
+		if (checkpointer != null) {
+			if (threadsCount != 1)
+				throw new IllegalStateException("Concurrent learning can not be checkpointed.");
+			checkpointer.start(currentIteration);
+		}
+		try {
+			if (threadsCount == 1)
+				learnSequentially(delay, steps);
+			else
+				new ConcurrentLearning(delay, steps).run();
+		} finally {
+			// consumers are notified even if checkpoint was not written
+			for (int c = 0; c < resultConsumers.size(); c++) {
+				resultConsumers.get(c).onLearningStopped();
+			}
+		}
+	}
+	
+	private void learnSequentially(int delay, long steps) throws IOException {
 		learningLoop:
 		while (currentIteration < iterations) {
 			if (currentRepeat == 0)
-				if (!dataSource.prepareNext())
+				if (!prepareBatch())
 					break;
 			while (true) {
-				network.erase();
-				final double effect = network.teach(dataSource.getInput(), dataSource.getOutput());
-				final double error = network.getError();
+				final double effect = teachBatch();
 				if (!resultConsumers.isEmpty()) {
-					for (ResultConsumer resultConsumer : resultConsumers) {
-						resultConsumer.consume(currentIteration, currentRepeat, error, effect, dataSource.getInput(), dataSource.getOutput());
+					for (int b = 0; b < batchFill; b++) {
+						final double error = batchSize == 1 ? network.getError() : network.getLastBatchError(b);
+						// indexed, iterator would be allocated on every step
+						for (int c = 0; c < resultConsumers.size(); c++) {
+							resultConsumers.get(c).consume(currentIteration + b, currentRepeat, error, effect, batchInputs[b],
+									batchOutputs[b]);
+						}
 					}
 				}
 				currentRepeat++;
 				if (currentRepeat == repeats) {
 					currentRepeat = 0;
-					currentIteration++;
+					currentIteration += batchFill;
 				}
+				if (checkpointer != null)
+					checkpointer.onStep(network, currentIteration, currentRepeat,
+							currentRepeat == 0 ? currentIteration : currentIteration + batchFill);
 				if (stopped || --steps == 0)
 					break learningLoop;
 				if (delay != 0)
@@ -86,8 +244,163 @@ public class OnlineNeuralTeacher {
 					break;
 			}
 		}
-		for (ResultConsumer resultConsumer : resultConsumers) {
-			resultConsumer.onLearningStopped();
+	}
+	
+	/**
+	 * Batch and repeat taken by one of threads.
+	 */
+	private static class Task {
+		final long sequence;
+		final long iteration;
+		final int repeat;
+		final double[][] inputs;
+		final double[][] outputs;
+		double[] errors;
+		double effect;
+		
+		Task(long sequence, long iteration, int repeat, double[][] inputs, double[][] outputs) {
+			this.sequence = sequence;
+			this.iteration = iteration;
+			this.repeat = repeat;
+			this.inputs = inputs;
+			this.outputs = outputs;
+		}
+	}
+	
+	/**
+	 * One run of {@link OnlineNeuralTeacher#startLearning(int, long)} with
+	 * several threads. Data source and counters are accessed under lock of
+	 * this object, results are reordered by sequence numbers of tasks under
+	 * lock of pendingTasks.
+	 */
+	private class ConcurrentLearning {
+		private final int delay;
+		private long steps;
+		private long nextSequence;
+		private double[][] taskInputs;
+		private double[][] taskOutputs;
+		
+		private final Map<Long, Task> pendingTasks = new HashMap<>();
+		private long nextDelivered;
+		
+		private Throwable failure;
+		
+		ConcurrentLearning(int delay, long steps) {
+			this.delay = delay;
+			this.steps = steps;
+		}
+		
+		void run() throws IOException {
+			final NeuralNetwork[] workers = new NeuralNetwork[threadsCount - 1];
+			for (int t = 0; t < workers.length; t++) {
+				workers[t] = network.createWorker();
+			}
+			final Thread[] threads = new Thread[workers.length];
+			for (int t = 0; t < threads.length; t++) {
+				final NeuralNetwork worker = workers[t];
+				threads[t] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						teachAll(worker);
+					}
+				}, "OnlineNeuralTeacher-" + (t + 1));
+				threads[t].start();
+			}
+			teachAll(network);
+			boolean interrupted = false;
+			for (Thread thread : threads) {
+				while (true) {
+					try {
+						thread.join();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+						stopped = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			if (failure instanceof IOException)
+				throw (IOException) failure;
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+		}
+		
+		private void teachAll(NeuralNetwork network) {
+			try {
+				Task task;
+				while ((task = takeTask()) != null) {
+					task.effect = teach(network, task.inputs, task.outputs);
+					if (!resultConsumers.isEmpty()) {
+						task.errors = new double[task.inputs.length];
+						for (int b = 0; b < task.errors.length; b++) {
+							task.errors[b] = batchSize == 1 ? network.getError() : network.getLastBatchError(b);
+						}
+					}
+					deliver(task);
+					if (delay != 0)
+						Thread.sleep(delay);
+				}
+			} catch (InterruptedException e) {
+				stopped = true;
+			} catch (Throwable e) {
+				synchronized (this) {
+					if (failure == null)
+						failure = e;
+				}
+				stopped = true;
+			}
+		}
+		
+		/**
+		 * @return null if learning is over
+		 */
+		private synchronized Task takeTask() throws IOException {
+			if (stopped || steps == 0 || currentIteration >= iterations)
+				return null;
+			if (currentRepeat == 0) {
+				if (!prepareBatch())
+					return null;
+				taskInputs = new double[batchFill][];
+				taskOutputs = new double[batchFill][];
+				for (int b = 0; b < batchFill; b++) {
+					taskInputs[b] = batchInputs[b].clone();
+					taskOutputs[b] = batchOutputs[b].clone();
+				}
+			}
+			final Task task = new Task(nextSequence++, currentIteration, currentRepeat, taskInputs, taskOutputs);
+			steps--;
+			currentRepeat++;
+			if (currentRepeat == repeats) {
+				currentRepeat = 0;
+				currentIteration += batchFill;
+			}
+			return task;
+		}
+		
+		/**
+		 * Notifies result consumers about given task and all following
+		 * finished ones, if all previous tasks are already delivered.
+		 */
+		private void deliver(Task task) {
+			synchronized (pendingTasks) {
+				pendingTasks.put(task.sequence, task);
+				Task next;
+				while ((next = pendingTasks.remove(nextDelivered)) != null) {
+					nextDelivered++;
+					if (next.errors == null)
+						continue;
+					for (int b = 0; b < next.inputs.length; b++) {
+						for (ResultConsumer resultConsumer : resultConsumers) {
+							resultConsumer.consume(next.iteration + b, next.repeat, next.errors[b], next.effect,
+									next.inputs[b], next.outputs[b]);
+						}
+					}
+				}
+			}
 		}
 	}
 }
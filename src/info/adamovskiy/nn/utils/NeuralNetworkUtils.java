@@ -2,8 +2,10 @@ package info.adamovskiy.nn.utils;
 
 import info.adamovskiy.nn.NeuralNetwork;
 import info.adamovskiy.nn.NeuralNetwork.TraversalListener;
+import info.adamovskiy.nn.dense.DenseNeuralNode;
 import info.adamovskiy.nn.neuron.NeuralNode;
 import info.adamovskiy.nn.neuron.InputNeuron;
+import info.adamovskiy.nn.neuron.ActivationNeuronBuilder;
 import info.adamovskiy.nn.neuron.SigmoidNeuronBuilder;
 
 import java.io.File;
@@ -20,12 +22,20 @@ public abstract class NeuralNetworkUtils {
 		put(InputNeuron.class, "I");
 		put(SigmoidNeuronBuilder.SigmidHiddenNeuron.class, "HS");
 		put(SigmoidNeuronBuilder.SigmoidOutputNeuron.class, "OS");
+		put(ActivationNeuronBuilder.ActivationHiddenNeuron.class, "H");
+		put(ActivationNeuronBuilder.ActivationOutputNeuron.class, "O");
+		put(DenseNeuralNode.Input.class, "I");
+		put(DenseNeuralNode.Hidden.class, "HD");
+		put(DenseNeuralNode.Output.class, "OD");
 	}};
 	
 	@SuppressWarnings("serial")
 	private static final Set<Class<? extends NeuralNode>> labeledNeuronTypes = new LinkedHashSet<Class<? extends NeuralNode>>() {{
 		add(InputNeuron.class);
 		add(SigmoidNeuronBuilder.SigmoidOutputNeuron.class);
+		add(ActivationNeuronBuilder.ActivationOutputNeuron.class);
+		add(DenseNeuralNode.Input.class);
+		add(DenseNeuralNode.Output.class);
 	}};
 	
 	/**
@@ -90,4 +100,22 @@ public abstract class NeuralNetworkUtils {
 		if (param.length != expectedSize)
 			throw new IllegalArgumentException(String.format("Wrong parameter vector size: expected %d, got %d", expectedSize, param.length));
 	}
+	
+	/**
+	 * Checks that batch is not empty and has etalon for every input.
+	 */
+	public static void checkBatchParameters(double[][] inputs, double[][] etalons) {
+		if (inputs.length == 0)
+			throw new IllegalArgumentException("Batch is empty");
+		if (inputs.length != etalons.length)
+			throw new IllegalArgumentException(String.format("Wrong batch size: %d inputs, %d etalons", inputs.length, etalons.length));
+	}
+	
+	/**
+	 * Checks that there is results vector for every input.
+	 */
+	public static void checkConcludeBatchParameters(double[][] inputs, double[][] results) {
+		if (inputs.length != results.length)
+			throw new IllegalArgumentException(String.format("Wrong results count: %d inputs, %d results", inputs.length, results.length));
+	}
 }
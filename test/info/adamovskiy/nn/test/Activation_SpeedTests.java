@@ -0,0 +1,142 @@
+package info.adamovskiy.nn.test;
+
+import java.io.IOException;
+
+import info.adamovskiy.digitrecognizer.SmallNumbersDataSource;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.activation.ActivationFunction;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.activation.TableSigmoidActivationFunction;
+
+/**
+ * Accuracy of {@link TableSigmoidActivationFunction} and speed of sigmoid
+ * evaluations: separately, by output and by table, then teaching of both
+ * engines with exact and table sigmoid.
+ */
+public class Activation_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Activation_SpeedTests().launch();
+	}
+
+	private static final double ALPHA = .5;
+	private static final double RANGE = 60;
+	private static final double STEP = 1e-4;
+	private static final int CALLS = 5000000;
+	private static final int PASSES = 5;
+	private static final int EXAMPLES = 20000;
+
+	private final SigmoidActivationFunction exact = new SigmoidActivationFunction(ALPHA);
+	// sigmoid neurons used to calculate derivative this way
+	private final ActivationFunction twice = new ActivationFunction() {
+		@Override
+		public double activation(double x) {
+			return 1d / (1d + Math.exp(-ALPHA * x));
+		}
+
+		@Override
+		public double activationDerivative(double x) {
+			return ALPHA * activation(x) * (1d - activation(x));
+		}
+	};
+	private final TableSigmoidActivationFunction table = new TableSigmoidActivationFunction(ALPHA);
+	private final double[][] inputs = new double[EXAMPLES][];
+	private final double[][] outputs = new double[EXAMPLES][];
+
+	@Override
+	protected void initSuite() {
+		final SmallNumbersDataSource dataSource = new SmallNumbersDataSource(30);
+		try {
+			for (int i = 0; i < EXAMPLES; i++) {
+				dataSource.prepareNext();
+				inputs[i] = dataSource.getInput();
+				outputs[i] = dataSource.getOutput();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@SpeedTest(order=1)
+	public void tableError() {
+		double maxError = 0;
+		double maxDerivativeError = 0;
+		for (double x = -RANGE; x <= RANGE; x += STEP) {
+			final double y = table.activation(x);
+			maxError = Math.max(maxError, Math.abs(y - exact.activation(x)));
+			maxDerivativeError = Math.max(maxDerivativeError,
+					Math.abs(table.activationDerivative(x, y) - exact.activationDerivative(x)));
+		}
+		if (maxError > TableSigmoidActivationFunction.MAX_ERROR)
+			throw new IllegalStateException(String.format("Max error %.2e is greater than documented one", maxError));
+		addMessage(String.format("max error %.2e (documented %.0e), max derivative error %.2e", maxError,
+				TableSigmoidActivationFunction.MAX_ERROR, maxDerivativeError));
+	}
+
+	private void reportCalls(String name, long time) {
+		addMessage(String.format("%s: %.1f M activations with derivative per second", name, CALLS / (time / 1e3)));
+	}
+
+	/**
+	 * Activation and derivative of every x, as every neuron needs them for
+	 * teaching.
+	 */
+	private long timeCalls(ActivationFunction function, boolean byOutput) {
+		long time = 0;
+		for (int pass = 0; pass < PASSES; pass++) {
+			double sum = 0;
+			final long start = System.nanoTime();
+			for (int k = 0; k < CALLS; k++) {
+				final double x = (k % 4001 - 2000) * .01;
+				final double y = function.activation(x);
+				sum += y + (byOutput ? function.activationDerivative(x, y) : function.activationDerivative(x));
+			}
+			time = System.nanoTime() - start;
+			// keeps results alive, sigmoid and its derivative are positive
+			if (!(sum > 0))
+				throw new IllegalStateException(function.getClass().getSimpleName() + " gives sum " + sum);
+		}
+		return time;
+	}
+
+	@SpeedTest(order=2)
+	public void activationSpeed() {
+		reportCalls("exact, derivative by x with two exponents", timeCalls(twice, false));
+		reportCalls("exact, derivative by x", timeCalls(exact, false));
+		reportCalls("exact, derivative by output", timeCalls(exact, true));
+		reportCalls("table, derivative by output", timeCalls(table, true));
+	}
+
+	/**
+	 * Teaches all examples except the last thousand, which are only
+	 * concluded.
+	 */
+	private void teach(Engine engine, ActivationFunction function) {
+		final NeuralNetwork nn = NeuralNetworkBuilder.createPreceptron(engine, .1, function, 15, 10, 100, 20);
+		final int teachCount = EXAMPLES - 1000;
+		final long start = System.nanoTime();
+		for (int i = 0; i < teachCount; i++) {
+			nn.erase();
+			nn.teach(inputs[i], outputs[i]);
+		}
+		final long time = System.nanoTime() - start;
+		double errorSum = 0;
+		for (int i = teachCount; i < EXAMPLES; i++) {
+			nn.erase();
+			errorSum += nn.getError(inputs[i], outputs[i]);
+		}
+		addMessage(String.format("%s, %s: %.0f examples/s, average error %.6f", engine,
+				function.getClass().getSimpleName(), teachCount / (time / 1e9), errorSum / (EXAMPLES - teachCount)));
+	}
+
+	@SpeedTest(order=3)
+	public void teaching() {
+		for (Engine engine : new Engine[] {Engine.NEURONS, Engine.DENSE}) {
+			teach(engine, exact);
+			teach(engine, table);
+			teach(engine, exact);
+			teach(engine, table);
+		}
+	}
+}
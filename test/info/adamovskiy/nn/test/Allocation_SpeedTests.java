@@ -0,0 +1,116 @@
+package info.adamovskiy.nn.test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.teacher.AccumulatingResultConsumer;
+import info.adamovskiy.nn.teacher.OnlineNeuralTeacher;
+
+/**
+ * Steady state teaching and concluding of both engines must not allocate:
+ * bytes allocated by current thread are measured by
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * after warm up, any of them fails the suite.
+ */
+public class Allocation_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Allocation_SpeedTests().launch();
+	}
+
+	private static final int INPUTS = 15;
+	private static final int OUTPUTS = 10;
+	private static final int WARM_UP_STEPS = 50000;
+	private static final int STEPS = 10000;
+
+	private final com.sun.management.ThreadMXBean threadBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private final double[] result = new double[OUTPUTS];
+	private final RepeatableDataSource dataSource = new RepeatableDataSource(INPUTS, OUTPUTS);
+	// keeps results alive
+	private double sink;
+
+	private interface Step {
+		void run() throws IOException;
+	}
+
+	@Override
+	protected void initSuite() {
+		if (!threadBean.isThreadAllocatedMemorySupported())
+			throw new IllegalStateException("Thread allocated memory is not supported by JVM");
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	private long allocatedBytes() {
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private void check(String name, Step step) throws IOException {
+		for (int i = 0; i < WARM_UP_STEPS; i++) {
+			step.run();
+		}
+		final long start = allocatedBytes();
+		for (int i = 0; i < STEPS; i++) {
+			step.run();
+		}
+		final long allocated = allocatedBytes() - start;
+		addMessage(String.format("%s: %.2f bytes per step", name, (double) allocated / STEPS));
+		if (allocated != 0)
+			throw new IllegalStateException(String.format("%s allocated %d bytes in %d steps", name, allocated, STEPS));
+	}
+
+	private void checkEngine(Engine engine) throws IOException {
+		sink = 0;
+		final NeuralNetwork nn = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, INPUTS, OUTPUTS, 20, 10);
+		check(engine + " teach", new Step() {
+			@Override
+			public void run() throws IOException {
+				dataSource.prepareNext();
+				nn.erase();
+				sink += nn.teach(dataSource.getInput(), dataSource.getOutput());
+			}
+		});
+		check(engine + " conclude and getResult", new Step() {
+			@Override
+			public void run() throws IOException {
+				dataSource.prepareNext();
+				nn.erase();
+				nn.conclude(dataSource.getInput());
+				nn.getResult(result);
+				sink += result[0];
+			}
+		});
+		final OnlineNeuralTeacher teacher = new OnlineNeuralTeacher(nn);
+		teacher.setDataSource(dataSource);
+		teacher.addResultConsumer(new AccumulatingResultConsumer(100) {
+			@Override
+			protected void consumeAccumulated(long firstIteration, int firstRepeat, long lastIteration, int lastRepeat,
+					double averageError, double averageEffect) {
+				sink += averageError;
+			}
+		});
+		// one call teaches all steps, so consumers are not stopped inside
+		teacher.startLearning(0, WARM_UP_STEPS);
+		final long start = allocatedBytes();
+		teacher.startLearning(0, STEPS);
+		final long allocated = allocatedBytes() - start;
+		addMessage(String.format("%s teacher: %.2f bytes per step", engine, (double) allocated / STEPS));
+		if (allocated != 0)
+			throw new IllegalStateException(String.format("%s teacher allocated %d bytes in %d steps", engine, allocated,
+					STEPS));
+		if (!Double.isFinite(sink))
+			throw new IllegalStateException(engine + " results are not finite: " + sink);
+	}
+
+	@SpeedTest(order=1)
+	public void neurons() throws IOException {
+		checkEngine(Engine.NEURONS);
+	}
+
+	@SpeedTest(order=2)
+	public void dense() throws IOException {
+		checkEngine(Engine.DENSE);
+	}
+}
@@ -1,57 +1,142 @@
 package info.adamovskiy.nn.test;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import info.adamovskiy.nn.NeuralNetwork;
 import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.WeightInitializer;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
 
 public class Builder_SpeedTests extends SpeedTestSuite {
+	/**
+	 * @param args
+	 *            optional engine name, see {@link Engine}
+	 */
 	public static void main(String[] args) {
-		new Builder_SpeedTests().launch();
+		new Builder_SpeedTests(args.length > 0 ? Engine.valueOf(args[0]) : Engine.NEURONS).launch();
 	}
 	
+	private final Engine engine;
 	private NeuralNetwork sigmoidPreceptron;
+	private long heapBeforeBuild;
+	
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	public Builder_SpeedTests(Engine engine) {
+		this.engine = engine;
+	}
 	
 	@Override
 	protected void initSuite() {
+		System.out.println("Engine: " + engine);
+	}
+	
+	public void releaseNetwork() {
+		sigmoidPreceptron = null;
+		heapBeforeBuild = usedHeap();
+	}
+	
+	/**
+	 * Rough estimate: everything allocated by builder and still reachable is
+	 * divided by edges count.
+	 */
+	private void reportHeapFootprint() {
+		addMessage("Network is built.");
+		final long networkHeap = usedHeap() - heapBeforeBuild;
+		addMessage(String.format("Heap footprint: %d bytes, %.1f bytes per edge.", networkHeap,
+				(double) networkHeap / sigmoidPreceptron.getWeightsCount()));
 	}
 
 	/*
 	 * 1 hidden layer/~400k neurons
 	 * ~10M edges
 	 */
-	@SpeedTest
+	@SpeedTest(initMethod="releaseNetwork")
 	public void createSigmoidPreceptron_leastSquares_wide() {
-		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 15, 10, 384500);
+		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 15, 10, 384500);
+		reportHeapFootprint();
 	}
 	
 	/*
 	 * 100 hidden layers/320k neurons
 	 * ~10M edges
 	 */
-	@SpeedTest
+	@SpeedTest(initMethod="releaseNetwork")
 	public void createSigmoidPreceptron_leastSquares_deep() {
 		Integer[] hiddenLayers = new Integer[100];
 		Arrays.fill(hiddenLayers, Integer.valueOf(320));
-		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 15, 10, hiddenLayers);
+		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 15, 10, hiddenLayers);
 		System.out.println(sigmoidPreceptron.getWeightsCount());
+		reportHeapFootprint();
 	}
 	
 	/*
 	 * 0 hidden layers
 	 * ~10M edges
 	 */
-	@SpeedTest
+	@SpeedTest(initMethod="releaseNetwork")
 	public void createSigmoidPreceptron_leastSquares_noHiddenLayersManyInputs() {
-		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 1000000, 10);
+		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 1000000, 10);
+		reportHeapFootprint();
 	}
 	
 	/*
 	 * 0 hidden layers
 	 * ~10M edges
 	 */
-	@SpeedTest
+	@SpeedTest(initMethod="releaseNetwork")
 	public void createSigmoidPreceptron_leastSquares_noHiddenLayersManyOutputs() {
-		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 9, 1000000);
+		sigmoidPreceptron = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 9, 1000000);
+		reportHeapFootprint();
+	}
+	
+	private NeuralNetwork createSeeded(long seed, int threadsCount) {
+		final ForkJoinPool pool = new ForkJoinPool(threadsCount);
+		try {
+			return NeuralNetworkBuilder.createPreceptron(engine, new WeightInitializer(seed, pool), 0.5,
+					new SigmoidActivationFunction(0.5), 15, 10, 2000, 300);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	private static double[][] concludeRandomInputs(NeuralNetwork nn) {
+		final Random rnd = new Random(1);
+		final double[][] results = new double[10][];
+		for (int r = 0; r < results.length; r++) {
+			final double[] input = new double[15];
+			for (int j = 0; j < input.length; j++) {
+				input[j] = rnd.nextDouble();
+			}
+			nn.erase();
+			nn.conclude(input);
+			results[r] = nn.getResult();
+		}
+		return results;
+	}
+	
+	/*
+	 * Networks of the same seed are equal at any threads count, networks of
+	 * different seeds are not
+	 */
+	@SpeedTest(initMethod="releaseNetwork")
+	public void createPreceptron_seeded_threadsCounts() {
+		final double[][] expected = concludeRandomInputs(createSeeded(7, 1));
+		for (int threadsCount : new int[] {2, 4, 8}) {
+			if (!Arrays.deepEquals(expected, concludeRandomInputs(createSeeded(7, threadsCount))))
+				throw new IllegalStateException("Network built by " + threadsCount + " threads differs");
+		}
+		if (Arrays.deepEquals(expected, concludeRandomInputs(createSeeded(8, 1))))
+			throw new IllegalStateException("Networks of different seeds are equal");
+		addMessage("Networks of the same seed are equal.");
 	}
 }
@@ -0,0 +1,182 @@
+package info.adamovskiy.nn.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.teacher.Checkpointer;
+import info.adamovskiy.nn.teacher.OnlineNeuralTeacher;
+
+/**
+ * {@link Checkpointer}: learning resumed from checkpoint gives exactly the
+ * same network as learning without interruption, throughput of learning is
+ * compared with and without checkpoints written in background.
+ */
+public class Checkpoint_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Checkpoint_SpeedTests().launch();
+	}
+
+	private static final int INPUTS = 15;
+	private static final int OUTPUTS = 10;
+	private static final int ROWS = 20;
+	private static final long THROUGHPUT_MILLIS = 3000;
+
+	private File directory;
+
+	@Override
+	protected void initSuite() {
+		try {
+			directory = Files.createTempDirectory("checkpoints").toFile();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void clearDirectory() {
+		final File[] files = directory.listFiles();
+		if (files != null)
+			for (File file : files) {
+				file.delete();
+			}
+	}
+
+	private static OnlineNeuralTeacher createTeacher(NeuralNetwork nn, int batchSize, int repeats) {
+		final OnlineNeuralTeacher teacher = new OnlineNeuralTeacher(nn);
+		teacher.setDataSource(new RepeatableDataSource(INPUTS, OUTPUTS));
+		teacher.setBatchSize(batchSize);
+		teacher.setRepeats(repeats);
+		return teacher;
+	}
+
+	private static double[][] conclude(NeuralNetwork nn) {
+		final double[][] results = new double[ROWS][OUTPUTS];
+		final RepeatableDataSource dataSource = new RepeatableDataSource(INPUTS, OUTPUTS);
+		for (int r = 0; r < ROWS; r++) {
+			dataSource.prepareNext();
+			nn.erase();
+			nn.conclude(dataSource.getInput());
+			nn.getResult(results[r]);
+		}
+		return results;
+	}
+
+	private static void checkSame(String name, double[][] expected, double[][] actual) {
+		for (int r = 0; r < expected.length; r++) {
+			for (int i = 0; i < expected[r].length; i++) {
+				if (expected[r][i] != actual[r][i])
+					throw new IllegalStateException(String.format("%s: %s instead of %s", name, actual[r][i],
+							expected[r][i]));
+			}
+		}
+	}
+
+	/**
+	 * Learns given steps, interrupts learning after stepsBeforeCrash and
+	 * continues from the latest checkpoint. Checkpoints counted by time are
+	 * taken on the last step before crash: previous one is written and the
+	 * period is over.
+	 *
+	 * @return checkpoint, which learning is continued from
+	 */
+	private Checkpointer.Checkpoint resume(Engine engine, int batchSize, int repeats, long everyIterations,
+			long everyMillis, long steps, long stepsBeforeCrash) throws IOException, InterruptedException {
+		clearDirectory();
+		final NeuralNetwork uninterrupted = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, INPUTS,
+				OUTPUTS, 20);
+		createTeacher(uninterrupted, batchSize, repeats).startLearning(0, steps);
+
+		final NeuralNetwork crashed = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, INPUTS, OUTPUTS,
+				20);
+		final OnlineNeuralTeacher teacher = createTeacher(crashed, batchSize, repeats);
+		try (Checkpointer checkpointer = new Checkpointer(directory, everyIterations, everyMillis)) {
+			teacher.setCheckpointer(checkpointer);
+			teacher.startLearning(0, stepsBeforeCrash - 1);
+			if (everyMillis > 0) {
+				checkpointer.awaitWritten();
+				Thread.sleep(everyMillis + 1);
+			}
+			teacher.startLearning(0, 1);
+		}
+
+		final Checkpointer.Checkpoint checkpoint = Checkpointer.findLatest(directory);
+		if (checkpoint == null)
+			throw new IllegalStateException("No checkpoint is written");
+		final NeuralNetwork nn = checkpoint.loadNetwork(engine);
+		final OnlineNeuralTeacher resumedTeacher = createTeacher(nn, batchSize, repeats);
+		resumedTeacher.resume(checkpoint);
+		final long doneSteps = checkpoint.getIteration() / batchSize * repeats + checkpoint.getRepeat();
+		if (everyMillis > 0 && doneSteps != stepsBeforeCrash)
+			throw new IllegalStateException(String.format("%s: checkpoint of step %d instead of %d", engine, doneSteps,
+					stepsBeforeCrash));
+		resumedTeacher.startLearning(0, steps - doneSteps);
+		checkSame(engine + " resumed", conclude(uninterrupted), conclude(nn));
+		addMessage(String.format("%s, batch %d, repeats %d: resumed from iteration %d, repeat %d, position %d.", engine,
+				batchSize, repeats, checkpoint.getIteration(), checkpoint.getRepeat(), checkpoint.getPosition()));
+		return checkpoint;
+	}
+
+	@SpeedTest(order=1)
+	public void resumeByIterations() throws IOException, InterruptedException {
+		for (Engine engine : new Engine[] {Engine.NEURONS, Engine.DENSE, Engine.DENSE_OFF_HEAP}) {
+			resume(engine, 1, 1, 1000, 0, 5000, 2500);
+		}
+		final String[] names = directory.list();
+		if (names.length != 2 * Checkpointer.KEPT_CHECKPOINTS)
+			throw new IllegalStateException(names.length + " files are kept");
+	}
+
+	/*
+	 * 301 steps end by the first of 3 repeats of the 101st batch
+	 */
+	@SpeedTest(order=2)
+	public void resumeWithinRepeats() throws IOException, InterruptedException {
+		for (Engine engine : new Engine[] {Engine.NEURONS, Engine.DENSE}) {
+			if (resume(engine, 4, 3, 0, 5, 600, 301).getRepeat() == 0)
+				throw new IllegalStateException(engine + ": checkpoint is not taken within repeats");
+		}
+	}
+
+	/**
+	 * @return examples per second
+	 */
+	private double measureThroughput(NeuralNetwork nn, Checkpointer checkpointer) throws IOException {
+		final OnlineNeuralTeacher teacher = new OnlineNeuralTeacher(nn);
+		teacher.setDataSource(new RepeatableDataSource(784, OUTPUTS));
+		teacher.setCheckpointer(checkpointer);
+		// warm up
+		teacher.startLearning(0, 2000);
+		final long start = System.nanoTime();
+		long examples = 0;
+		while (System.nanoTime() - start < THROUGHPUT_MILLIS * 1000000) {
+			teacher.startLearning(0, 1000);
+			examples += 1000;
+		}
+		return examples / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/*
+	 * Network of digit recognizer
+	 */
+	@SpeedTest(order=3)
+	public void throughput() throws IOException {
+		for (Engine engine : new Engine[] {Engine.NEURONS, Engine.DENSE}) {
+			clearDirectory();
+			final NeuralNetwork nn = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 784, OUTPUTS, 100,
+					20);
+			final double without = measureThroughput(nn, null);
+			final Checkpointer checkpointer = new Checkpointer(directory, 0, 100);
+			final double with = measureThroughput(nn, checkpointer);
+			checkpointer.close();
+			final long start = System.nanoTime();
+			nn.capture();
+			addMessage(String.format(
+					"%s: %.0f examples/s without checkpoints, %.0f with %d checkpoints (%.1f%%), capture %.2f ms.",
+					engine, without, with, checkpointer.getWrittenCount(), 100 * (with - without) / without,
+					(System.nanoTime() - start) / 1e6));
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package info.adamovskiy.nn.test;
+
+import java.util.Random;
+
+import info.adamovskiy.nn.NeuralNetwork.TraversalListener;
+import info.adamovskiy.nn.neuron.NeuralNode;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.dense.DenseNeuralNetwork;
+import info.adamovskiy.nn.dense.LeastSquaresDenseNeuralNetwork;
+
+/**
+ * Scaling of {@link DenseNeuralNetwork#setDataParallelism(int)} on digit
+ * recognizer shape: 784-100-20-10, batches of 128 random examples. Every
+ * replicas count is taught twice from the same initial weights, weights of
+ * both runs must be bit-identical.
+ */
+public class DataParallel_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new DataParallel_SpeedTests().launch();
+	}
+
+	private static final int[] LAYER_SIZES = {784, 100, 20, 10};
+	private static final int BATCH = 128;
+	private static final int BATCHES = 100;
+	private static final int[] REPLICAS_COUNTS = {1, 2, 4, 8, 16, 32};
+
+	private final double[][][] inputs = new double[BATCHES][BATCH][];
+	private final double[][][] etalons = new double[BATCHES][BATCH][];
+	private long singleReplicaTime;
+
+	@Override
+	protected void initSuite() {
+		final Random rnd = new Random(1);
+		for (int batch = 0; batch < BATCHES; batch++) {
+			for (int b = 0; b < BATCH; b++) {
+				inputs[batch][b] = new double[LAYER_SIZES[0]];
+				for (int j = 0; j < inputs[batch][b].length; j++) {
+					inputs[batch][b][j] = rnd.nextDouble();
+				}
+				etalons[batch][b] = new double[LAYER_SIZES[LAYER_SIZES.length - 1]];
+				etalons[batch][b][rnd.nextInt(etalons[batch][b].length)] = 1;
+			}
+		}
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @return hash of all weights in traversal order
+	 */
+	private long teach(int replicasCount, long[] time) {
+		final DenseNeuralNetwork network = new LeastSquaresDenseNeuralNetwork(0.5, new SigmoidActivationFunction(0.5),
+				LAYER_SIZES, new Random(1));
+		network.setDataParallelism(replicasCount);
+		final long start = System.nanoTime();
+		for (int batch = 0; batch < BATCHES; batch++) {
+			network.teachBatch(inputs[batch], etalons[batch]);
+		}
+		time[0] = System.nanoTime() - start;
+		network.setDataParallelism(1);
+		final long[] hash = new long[1];
+		network.traverseNetwork(new TraversalListener() {
+			@Override
+			public boolean onEdgeTraversal(double weight, NeuralNode input, NeuralNode output) {
+				hash[0] = hash[0] * 31 + Double.doubleToLongBits(weight);
+				return true;
+			}
+		});
+		return hash[0];
+	}
+
+	private void reportScaling(int replicasCount) {
+		final long[] time = new long[1];
+		teach(replicasCount, time);
+		final long firstHash = teach(replicasCount, time);
+		final long secondHash = teach(replicasCount, time);
+		if (firstHash != secondHash)
+			throw new IllegalStateException("Runs of " + replicasCount + " replicas differ");
+		if (replicasCount == 1)
+			singleReplicaTime = time[0];
+		addMessage(String.format("%d replicas: %.2f ms per batch, speedup %.2f, runs are bit-identical", replicasCount,
+				time[0] / 1e6 / BATCHES, (double) singleReplicaTime / time[0]));
+	}
+
+	@SpeedTest
+	public void scaling() {
+		for (int replicasCount : REPLICAS_COUNTS) {
+			reportScaling(replicasCount);
+		}
+	}
+}
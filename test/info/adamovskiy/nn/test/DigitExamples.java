@@ -0,0 +1,98 @@
+package info.adamovskiy.nn.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import info.adamovskiy.digitrecognizer.DigitCsvDataSource;
+import info.adamovskiy.digitrecognizer.SmallNumbersDataSource;
+import info.adamovskiy.nn.DataSource;
+
+/**
+ * Examples of suites, which teach digit recognizer network: Kaggle digit
+ * recognizer train.csv or noized {@link SmallNumbersDataSource} if file is
+ * not given. The last fifth of examples is not taught, only recognized.
+ */
+class DigitExamples {
+	static final double LEARNING_RATE = .1;
+	static final double SIGMOID_ALPHA = .5;
+
+	private static final int[] HIDDEN_LAYERS = {100, 20};
+	private static final int OUTPUTS_COUNT = 10;
+	private static final int SMALL_NUMBERS_COUNT = 20000;
+	private static final int SMALL_NUMBERS_NOIZE = 30;
+
+	private final List<double[]> inputs = new ArrayList<>();
+	private final List<double[]> outputs = new ArrayList<>();
+	private final int[] layerSizes;
+	private final String description;
+
+	/**
+	 * @param digitsFilename
+	 *            path to train.csv, null if small numbers are used
+	 */
+	DigitExamples(String digitsFilename) throws IOException {
+		final DataSource dataSource;
+		final int inputsCount;
+		long examplesLimit = Long.MAX_VALUE;
+		if (digitsFilename != null) {
+			dataSource = new DigitCsvDataSource(digitsFilename);
+			inputsCount = DigitCsvDataSource.INPUT_SIZE;
+			description = digitsFilename;
+		} else {
+			dataSource = new SmallNumbersDataSource(SMALL_NUMBERS_NOIZE);
+			inputsCount = 15;
+			examplesLimit = SMALL_NUMBERS_COUNT;
+			description = "small numbers, noize " + SMALL_NUMBERS_NOIZE + "%";
+		}
+		while (inputs.size() < examplesLimit && dataSource.prepareNext()) {
+			inputs.add(dataSource.getInput());
+			outputs.add(dataSource.getOutput());
+		}
+		layerSizes = createLayerSizes(inputsCount);
+	}
+
+	/**
+	 * @return sizes of digit recognizer layers with given inputs count
+	 */
+	static int[] createLayerSizes(int inputsCount) {
+		final int[] result = new int[HIDDEN_LAYERS.length + 2];
+		result[0] = inputsCount;
+		System.arraycopy(HIDDEN_LAYERS, 0, result, 1, HIDDEN_LAYERS.length);
+		result[result.length - 1] = OUTPUTS_COUNT;
+		return result;
+	}
+
+	static int maxIndex(double[] vector) {
+		int result = 0;
+		for (int i = 1; i < vector.length; i++) {
+			if (vector[i] > vector[result])
+				result = i;
+		}
+		return result;
+	}
+
+	List<double[]> getInputs() {
+		return inputs;
+	}
+
+	List<double[]> getOutputs() {
+		return outputs;
+	}
+
+	/**
+	 * @return count of the first examples, which are taught
+	 */
+	int getTeachCount() {
+		return inputs.size() * 4 / 5;
+	}
+
+	int[] getLayerSizes() {
+		return layerSizes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, %d examples", description, inputs.size());
+	}
+}
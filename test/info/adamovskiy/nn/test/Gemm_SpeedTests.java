@@ -0,0 +1,123 @@
+package info.adamovskiy.nn.test;
+
+import java.util.Random;
+
+import info.adamovskiy.nn.linalg.Gemm;
+
+/**
+ * {@link Gemm} against naive triple loop on shapes of batched teaching of
+ * digit recognizer first layer: 784 inputs, 100 neurons, batch of 64. Results
+ * differing by more than {@link #MAX_DIFFERENCE} fail the suite.
+ */
+public class Gemm_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Gemm_SpeedTests().launch();
+	}
+	
+	private static final int INPUTS = 784;
+	private static final int NEURONS = 100;
+	private static final int BATCH = 64;
+	private static final int WARM_UP_PASSES = 50;
+	private static final int PASSES = 200;
+	// products are summed in different order
+	private static final double MAX_DIFFERENCE = 1e-10;
+	private static final Random rnd = new Random(1);
+	
+	private final Gemm gemm = Gemm.create();
+	private final double[] weights = createRandomMatrix(NEURONS * INPUTS);
+	private final double[] inputs = createRandomMatrix(BATCH * INPUTS);
+	private final double[] errors = createRandomMatrix(BATCH * NEURONS);
+	
+	private static double[] createRandomMatrix(int size) {
+		final double[] result = new double[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = rnd.nextDouble() * 2 - 1;
+		}
+		return result;
+	}
+	
+	private static void naiveMultiply(boolean transposeA, boolean transposeB, int m, int n, int k, double[] a, int lda,
+			double[] b, int ldb, double beta, double[] c, int ldc) {
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < n; j++) {
+				double sum = 0;
+				for (int p = 0; p < k; p++) {
+					sum += (transposeA ? a[p * lda + i] : a[i * lda + p]) * (transposeB ? b[j * ldb + p] : b[p * ldb + j]);
+				}
+				c[i * ldc + j] = beta == 0 ? sum : sum + beta * c[i * ldc + j];
+			}
+		}
+	}
+	
+	@Override
+	protected void initSuite() {
+		System.out.println("Gemm: " + gemm.getClass().getSimpleName());
+	}
+	
+	/**
+	 * Results are compared once, from the same initial C, then both
+	 * multiplications are timed.
+	 */
+	private void compare(boolean transposeA, boolean transposeB, int m, int n, int k, double[] a, int lda, double[] b,
+			int ldb, double beta) {
+		final double[] naiveResult = createRandomMatrix(m * n);
+		final double[] blockedResult = naiveResult.clone();
+		naiveMultiply(transposeA, transposeB, m, n, k, a, lda, b, ldb, beta, naiveResult, n);
+		gemm.multiply(transposeA, transposeB, m, n, k, a, lda, b, ldb, beta, blockedResult, n);
+		double maxDifference = 0;
+		for (int i = 0; i < naiveResult.length; i++) {
+			maxDifference = Math.max(maxDifference, Math.abs(naiveResult[i] - blockedResult[i]));
+		}
+		if (maxDifference > MAX_DIFFERENCE)
+			throw new IllegalStateException(String.format("Results differ by %.2e", maxDifference));
+		for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+			naiveMultiply(transposeA, transposeB, m, n, k, a, lda, b, ldb, beta, naiveResult, n);
+			gemm.multiply(transposeA, transposeB, m, n, k, a, lda, b, ldb, beta, blockedResult, n);
+		}
+		long start = System.nanoTime();
+		for (int pass = 0; pass < PASSES; pass++) {
+			naiveMultiply(transposeA, transposeB, m, n, k, a, lda, b, ldb, beta, naiveResult, n);
+		}
+		final long naiveTime = (System.nanoTime() - start) / PASSES;
+		start = System.nanoTime();
+		for (int pass = 0; pass < PASSES; pass++) {
+			gemm.multiply(transposeA, transposeB, m, n, k, a, lda, b, ldb, beta, blockedResult, n);
+		}
+		final long blockedTime = (System.nanoTime() - start) / PASSES;
+		addMessage(String.format("%dx%d by %dx%d, beta %.0f: naive %d us, blocked %d us, speedup %.2f, max difference %.2e",
+				m, k, k, n, beta, naiveTime / 1000, blockedTime / 1000, (double) naiveTime / blockedTime, maxDifference));
+	}
+	
+	/*
+	 * sums = inputs * weights^T
+	 */
+	@SpeedTest(order=1)
+	public void forward() {
+		compare(false, true, BATCH, NEURONS, INPUTS, inputs, INPUTS, weights, INPUTS, 0);
+	}
+	
+	/*
+	 * inputErrors = errors * weights
+	 */
+	@SpeedTest(order=2)
+	public void backward() {
+		compare(false, false, BATCH, INPUTS, NEURONS, errors, NEURONS, weights, INPUTS, 0);
+	}
+	
+	/*
+	 * weightGradients = errors^T * inputs
+	 */
+	@SpeedTest(order=3)
+	public void gradient() {
+		compare(true, false, NEURONS, INPUTS, BATCH, errors, NEURONS, inputs, INPUTS, 0);
+	}
+	
+	/*
+	 * weightGradients += errors^T * inputs, gradients of several batches
+	 * are accumulated
+	 */
+	@SpeedTest(order=4)
+	public void accumulatedGradient() {
+		compare(true, false, NEURONS, INPUTS, BATCH, errors, NEURONS, inputs, INPUTS, 1);
+	}
+}
@@ -0,0 +1,145 @@
+package info.adamovskiy.nn.test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import info.adamovskiy.nn.DataSource;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.teacher.OnlineNeuralTeacher;
+
+/**
+ * Workers of neuron engine teach like the network itself, several threads
+ * teach it by {@link OnlineNeuralTeacher#setThreadsCount(int)}.
+ */
+public class Hogwild_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Hogwild_SpeedTests().launch();
+	}
+
+	private static final int INPUTS = 784;
+	private static final int OUTPUTS = 10;
+	private static final int EXAMPLES = 200;
+	private static final int BATCH_SIZE = 8;
+	private static final int[] THREADS_COUNTS = {1, 2, 4};
+	private static final int ITERATIONS = 4000;
+	// hidden error derivatives are summed in other order by workers
+	private static final double MAX_DIFFERENCE = 1e-9;
+
+	private final double[][] inputs = new double[EXAMPLES][INPUTS];
+	private final double[][] outputs = new double[EXAMPLES][OUTPUTS];
+
+	@Override
+	protected void initSuite() {
+		final Random rnd = new Random(1);
+		for (int r = 0; r < EXAMPLES; r++) {
+			for (int j = 0; j < INPUTS; j++) {
+				inputs[r][j] = rnd.nextDouble();
+			}
+			outputs[r][rnd.nextInt(OUTPUTS)] = 1;
+		}
+	}
+
+	private static NeuralNetwork create() {
+		return NeuralNetworkBuilder.createSigmoidPreceptron(Engine.NEURONS, 0.5, 0.5, INPUTS, OUTPUTS, 100, 20);
+	}
+
+	private double compare(NeuralNetwork expected, NeuralNetwork actual) {
+		double maxDifference = 0;
+		for (int r = 0; r < EXAMPLES; r++) {
+			expected.erase();
+			expected.conclude(inputs[r]);
+			actual.erase();
+			actual.conclude(inputs[r]);
+			final double[] expectedResult = expected.getResult();
+			final double[] actualResult = actual.getResult();
+			for (int i = 0; i < OUTPUTS; i++) {
+				maxDifference = Math.max(maxDifference, Math.abs(expectedResult[i] - actualResult[i]));
+			}
+		}
+		if (maxDifference > MAX_DIFFERENCE)
+			throw new IllegalStateException(String.format("Results differ by %.2e", maxDifference));
+		return maxDifference;
+	}
+
+	@SpeedTest(order=1)
+	public void workerTeachesLikeNetwork() {
+		final NeuralNetwork nn = create();
+		final NeuralNetwork other = create();
+		final NeuralNetwork worker = other.createWorker();
+		for (int r = 0; r < EXAMPLES; r++) {
+			nn.erase();
+			final double effect = nn.teach(inputs[r], outputs[r]);
+			final double workerEffect = worker.teach(inputs[r], outputs[r]);
+			if (Math.abs(nn.getError() - worker.getError()) > MAX_DIFFERENCE
+					|| Math.abs(effect - workerEffect) > MAX_DIFFERENCE)
+				throw new IllegalStateException("Error or effect of worker differs at example " + r);
+		}
+		addMessage(String.format("teach: max difference %.2e", compare(nn, other)));
+		final double[][] batchInputs = new double[BATCH_SIZE][];
+		final double[][] batchOutputs = new double[BATCH_SIZE][];
+		for (int r = 0; r + BATCH_SIZE <= EXAMPLES; r += BATCH_SIZE) {
+			System.arraycopy(inputs, r, batchInputs, 0, BATCH_SIZE);
+			System.arraycopy(outputs, r, batchOutputs, 0, BATCH_SIZE);
+			nn.teachBatch(batchInputs, batchOutputs);
+			worker.teachBatch(batchInputs, batchOutputs);
+			for (int b = 0; b < BATCH_SIZE; b++) {
+				if (Math.abs(nn.getLastBatchError(b) - worker.getLastBatchError(b)) > MAX_DIFFERENCE)
+					throw new IllegalStateException("Batch error of worker differs at example " + (r + b));
+			}
+		}
+		addMessage(String.format("teachBatch: max difference %.2e", compare(nn, other)));
+	}
+
+	private double averageError(NeuralNetwork nn) {
+		double sum = 0;
+		for (int r = 0; r < EXAMPLES; r++) {
+			nn.erase();
+			sum += nn.getError(inputs[r], outputs[r]);
+		}
+		return sum / EXAMPLES;
+	}
+
+	/*
+	 * Network of digit recognizer, examples are repeated
+	 */
+	@SpeedTest(order=2)
+	public void teachByThreads() throws IOException {
+		for (int threadsCount : THREADS_COUNTS) {
+			final NeuralNetwork nn = create();
+			final double initialError = averageError(nn);
+			final OnlineNeuralTeacher teacher = new OnlineNeuralTeacher(nn);
+			teacher.setDataSource(new DataSource() {
+				private int counter = -1;
+
+				@Override
+				public boolean prepareNext() {
+					counter = (counter + 1) % EXAMPLES;
+					return true;
+				}
+
+				@Override
+				public double[] getInput() {
+					return inputs[counter];
+				}
+
+				@Override
+				public double[] getOutput() {
+					return outputs[counter];
+				}
+			});
+			teacher.setIterations(ITERATIONS);
+			teacher.setThreadsCount(threadsCount);
+			final long start = System.nanoTime();
+			teacher.startLearning(0);
+			final double seconds = (System.nanoTime() - start) / 1e9;
+			final double error = averageError(nn);
+			if (!(error < initialError))
+				throw new IllegalStateException(String.format("Error of %d threads is not decreased: %.4f", threadsCount,
+						error));
+			addMessage(String.format("%d threads: %.0f examples/s, error %.4f -> %.4f", threadsCount,
+					ITERATIONS / seconds, initialError, error));
+		}
+	}
+}
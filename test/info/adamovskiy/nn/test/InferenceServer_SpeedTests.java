@@ -0,0 +1,163 @@
+package info.adamovskiy.nn.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.server.InferenceServer;
+
+/**
+ * {@link InferenceServer} under load over localhost: concurrent clients post
+ * digit recognizer inputs (784-100-20-10), latency percentiles and throughput
+ * are reported for different batching settings. Responses are compared with
+ * {@link NeuralNetwork#conclude(double[])} results.
+ */
+public class InferenceServer_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new InferenceServer_SpeedTests().launch();
+	}
+
+	private static final int CLIENTS = 32;
+	private static final int REQUESTS_PER_CLIENT = 100;
+	private static final int WARM_UP_REQUESTS_PER_CLIENT = 20;
+	private static final int INPUTS = 200;
+
+	private NeuralNetwork nn;
+	private String[] bodies;
+	private double[][] expectedResults;
+
+	@Override
+	protected void initSuite() {
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+		nn = NeuralNetworkBuilder.createSigmoidPreceptron(Engine.DENSE, 0.5, 0.5, 784, 10, 100, 20);
+		final Random rnd = new Random(1);
+		bodies = new String[INPUTS];
+		expectedResults = new double[INPUTS][];
+		for (int i = 0; i < INPUTS; i++) {
+			final double[] input = new double[784];
+			final StringBuilder body = new StringBuilder();
+			for (int j = 0; j < input.length; j++) {
+				input[j] = rnd.nextInt(256) / 255.;
+				if (j > 0)
+					body.append(',');
+				body.append(input[j]);
+			}
+			bodies[i] = body.toString();
+			nn.erase();
+			nn.conclude(input);
+			expectedResults[i] = nn.getResult();
+		}
+	}
+
+	private static String post(URL url, String body) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream stream = connection.getOutputStream()) {
+			stream.write(body.getBytes(StandardCharsets.US_ASCII));
+		}
+		if (connection.getResponseCode() != 200)
+			throw new IllegalStateException("Response code " + connection.getResponseCode());
+		final ByteArrayOutputStream response = new ByteArrayOutputStream();
+		try (InputStream stream = connection.getInputStream()) {
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = stream.read(buffer)) != -1) {
+				response.write(buffer, 0, read);
+			}
+		}
+		return new String(response.toByteArray(), StandardCharsets.US_ASCII);
+	}
+
+	private void checkResponse(int input, String response) {
+		final String[] values = response.trim().split(",");
+		double maxDifference = 0;
+		for (int i = 0; i < values.length; i++) {
+			maxDifference = Math.max(maxDifference, Math.abs(Double.parseDouble(values[i]) - expectedResults[input][i]));
+		}
+		if (values.length != expectedResults[input].length || maxDifference > 1e-6)
+			throw new IllegalStateException("Wrong response for input " + input + ": " + response);
+	}
+
+	private static long percentile(long[] sorted, double fraction) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+	}
+
+	private void load(int maxBatchSize, long maxWaitMicros) throws IOException, InterruptedException {
+		final InferenceServer server = new InferenceServer(nn, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				maxBatchSize, maxWaitMicros, TimeUnit.MICROSECONDS);
+		try {
+			final URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(),
+					InferenceServer.CONCLUDE_PATH);
+			final long[] latencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+			final Throwable[] failure = new Throwable[1];
+			final Thread[] clients = new Thread[CLIENTS];
+			for (int c = 0; c < CLIENTS; c++) {
+				final int client = c;
+				clients[c] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							for (int r = -WARM_UP_REQUESTS_PER_CLIENT; r < REQUESTS_PER_CLIENT; r++) {
+								final int input = (client * REQUESTS_PER_CLIENT + r + INPUTS) % INPUTS;
+								final long start = System.nanoTime();
+								final String response = post(url, bodies[input]);
+								if (r >= 0)
+									latencies[client * REQUESTS_PER_CLIENT + r] = System.nanoTime() - start;
+								checkResponse(input, response);
+							}
+						} catch (Throwable e) {
+							synchronized (failure) {
+								failure[0] = e;
+							}
+						}
+					}
+				});
+			}
+			final long start = System.nanoTime();
+			for (Thread client : clients) {
+				client.start();
+			}
+			for (Thread client : clients) {
+				client.join();
+			}
+			final long time = System.nanoTime() - start;
+			if (failure[0] != null)
+				throw new IllegalStateException(failure[0]);
+			Arrays.sort(latencies);
+			addMessage(String.format(
+					"%s threads, max batch %d, max wait %d us: %.0f requests/s, latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms, average batch %.1f",
+					server.isUsingVirtualThreads() ? "virtual" : "pooled", maxBatchSize, maxWaitMicros,
+					CLIENTS * (REQUESTS_PER_CLIENT + WARM_UP_REQUESTS_PER_CLIENT) / (time / 1e9),
+					percentile(latencies, 0.5) / 1e6, percentile(latencies, 0.9) / 1e6,
+					percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6,
+					server.getAverageBatchSize()));
+		} finally {
+			server.close();
+		}
+	}
+
+	@SpeedTest(order=1)
+	public void noBatching() throws IOException, InterruptedException {
+		load(1, 0);
+	}
+
+	@SpeedTest(order=2)
+	public void batching() throws IOException, InterruptedException {
+		load(8, 500);
+		load(32, 500);
+		load(32, 2000);
+	}
+}
@@ -0,0 +1,136 @@
+package info.adamovskiy.nn.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import info.adamovskiy.nn.InferenceSession;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+
+/**
+ * Inference on digit recognizer shape (784-100-20-10): rows per second of
+ * different ways to conclude, results are compared with
+ * {@link NeuralNetwork#conclude(double[])} ones.
+ */
+public class Inference_SpeedTests extends SpeedTestSuite {
+	/**
+	 * @param args
+	 *            optional engine name, see {@link Engine}
+	 */
+	public static void main(String[] args) {
+		new Inference_SpeedTests(args.length > 0 ? Engine.valueOf(args[0]) : Engine.DENSE).launch();
+	}
+
+	private static final int ROWS = 4000;
+	// every way is timed by the last pass, previous ones warm up
+	private static final int PASSES = 5;
+	private static final int[] THREADS_COUNTS = {1, 2, 4, 8};
+
+	private final Engine engine;
+	private NeuralNetwork nn;
+	private double[][] inputs;
+	private double[][] expectedResults;
+
+	public Inference_SpeedTests(Engine engine) {
+		this.engine = engine;
+	}
+
+	@Override
+	protected void initSuite() {
+		System.out.println("Engine: " + engine);
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+		nn = NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 784, 10, 100, 20);
+		final Random rnd = new Random(1);
+		inputs = new double[ROWS][784];
+		for (double[] input : inputs) {
+			for (int j = 0; j < input.length; j++) {
+				input[j] = rnd.nextDouble();
+			}
+		}
+	}
+
+	private void reportRate(String name, long time) {
+		addMessage(String.format("%s: %.0f rows/s", name, ROWS / (time / 1e9)));
+	}
+
+	private void checkResults(String name, double[][] results) {
+		for (int r = 0; r < ROWS; r++) {
+			if (!Arrays.equals(results[r], expectedResults[r]))
+				throw new IllegalStateException(String.format("%s: results of row %d differ", name, r));
+		}
+	}
+
+	/**
+	 * Batch implementations may sum products in different order.
+	 */
+	private void reportDifference(String name, double[][] results) {
+		double maxDifference = 0;
+		for (int r = 0; r < ROWS; r++) {
+			for (int i = 0; i < results[r].length; i++) {
+				maxDifference = Math.max(maxDifference, Math.abs(results[r][i] - expectedResults[r][i]));
+			}
+		}
+		if (maxDifference > 1e-6)
+			throw new IllegalStateException(String.format("%s: results differ by %.2e", name, maxDifference));
+		addMessage(String.format("%s: max difference %.2e", name, maxDifference));
+	}
+
+	@SpeedTest(order=1)
+	public void concludeByRow() {
+		expectedResults = new double[ROWS][];
+		long time = 0;
+		for (int pass = 0; pass < PASSES; pass++) {
+			final long start = System.nanoTime();
+			for (int r = 0; r < ROWS; r++) {
+				nn.erase();
+				nn.conclude(inputs[r]);
+				expectedResults[r] = nn.getResult();
+			}
+			time = System.nanoTime() - start;
+		}
+		reportRate("erase, conclude and getResult", time);
+	}
+
+	@SpeedTest(order=2)
+	public void concludeBySessions() throws InterruptedException {
+		for (final int threadsCount : THREADS_COUNTS) {
+			final double[][] results = new double[ROWS][10];
+			final Thread[] threads = new Thread[threadsCount];
+			for (int t = 0; t < threadsCount; t++) {
+				final int firstRow = t;
+				final InferenceSession session = nn.createInferenceSession();
+				threads[t] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						for (int r = firstRow; r < ROWS; r += threadsCount) {
+							session.conclude(inputs[r], results[r]);
+						}
+					}
+				});
+			}
+			final long start = System.nanoTime();
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			reportRate(threadsCount + " sessions", System.nanoTime() - start);
+			checkResults(threadsCount + " sessions", results);
+		}
+	}
+
+	@SpeedTest(order=3)
+	public void concludeBatch() {
+		final double[][] results = new double[ROWS][10];
+		long time = 0;
+		for (int pass = 0; pass < PASSES; pass++) {
+			final long start = System.nanoTime();
+			nn.concludeBatch(inputs, results);
+			time = System.nanoTime() - start;
+		}
+		reportRate("concludeBatch", time);
+		reportDifference("concludeBatch", results);
+	}
+}
@@ -0,0 +1,129 @@
+package info.adamovskiy.nn.test;
+
+import java.util.Random;
+
+import info.adamovskiy.nn.linalg.Kernels;
+
+/**
+ * Scalar and SIMD {@link Kernels} on the first layer of digit recognizer
+ * (784 inputs, 100 neurons). SIMD kernels are available only when JVM is
+ * started with <code>--add-modules jdk.incubator.vector</code>.
+ */
+public class Kernels_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Kernels_SpeedTests().launch();
+	}
+	
+	private static final int INPUTS = 784;
+	private static final int NEURONS = 100;
+	private static final int WARM_UP_PASSES = 2000;
+	private static final int PASSES = 10000;
+	private static final Random rnd = new Random(1);
+	
+	private final Kernels scalar = Kernels.getScalar();
+	private final Kernels vector = Kernels.getVector();
+	private final double[] weights = new double[INPUTS * NEURONS];
+	private final double[] input = new double[INPUTS];
+	private final double[] inputErrors = new double[INPUTS];
+	private final float[] floatWeights = new float[INPUTS * NEURONS];
+	private final float[] floatInput = new float[INPUTS];
+	private final float[] floatInputErrors = new float[INPUTS];
+	private double blackhole;
+	
+	private static abstract class Pass {
+		abstract double run(Kernels kernels);
+	}
+	
+	@Override
+	protected void initSuite() {
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = rnd.nextDouble() * 2 - 1;
+			floatWeights[i] = (float) weights[i];
+		}
+		for (int j = 0; j < INPUTS; j++) {
+			input[j] = rnd.nextDouble();
+			floatInput[j] = (float) input[j];
+		}
+		System.out.println("Vector kernels: " + (vector == null ? "not available" : vector.getName()));
+	}
+	
+	private long measure(Pass pass, Kernels kernels) {
+		for (int p = 0; p < WARM_UP_PASSES; p++) {
+			blackhole += pass.run(kernels);
+		}
+		final long start = System.nanoTime();
+		for (int p = 0; p < PASSES; p++) {
+			blackhole += pass.run(kernels);
+		}
+		return (System.nanoTime() - start) / PASSES;
+	}
+	
+	private void compare(Pass pass) {
+		final long scalarTime = measure(pass, scalar);
+		addMessage(String.format("scalar: %d ns per layer pass", scalarTime));
+		if (vector == null)
+			return;
+		final long vectorTime = measure(pass, vector);
+		addMessage(String.format("%s: %d ns per layer pass, speedup %.2f", vector.getName(), vectorTime,
+				(double) scalarTime / vectorTime));
+	}
+	
+	@SpeedTest(order=1)
+	public void forward() {
+		compare(new Pass() {
+			@Override
+			double run(Kernels kernels) {
+				double sum = 0;
+				for (int i = 0; i < NEURONS; i++) {
+					sum += kernels.dot(0, weights, i * INPUTS, input, INPUTS);
+				}
+				return sum;
+			}
+		});
+	}
+	
+	/*
+	 * Learning rate is tiny, so weights do not drift during measurement.
+	 */
+	@SpeedTest(order=2)
+	public void backward() {
+		compare(new Pass() {
+			@Override
+			double run(Kernels kernels) {
+				double effect = 0;
+				for (int i = 0; i < NEURONS; i++) {
+					effect += kernels.updateRow(weights, i * INPUTS, input, 1e-12, 1, inputErrors, INPUTS);
+				}
+				return effect;
+			}
+		});
+	}
+	
+	@SpeedTest(order=3)
+	public void forwardFloat() {
+		compare(new Pass() {
+			@Override
+			double run(Kernels kernels) {
+				double sum = 0;
+				for (int i = 0; i < NEURONS; i++) {
+					sum += kernels.dot(0f, floatWeights, i * INPUTS, floatInput, INPUTS);
+				}
+				return sum;
+			}
+		});
+	}
+	
+	@SpeedTest(order=4)
+	public void backwardFloat() {
+		compare(new Pass() {
+			@Override
+			double run(Kernels kernels) {
+				double effect = 0;
+				for (int i = 0; i < NEURONS; i++) {
+					effect += kernels.updateRow(floatWeights, i * INPUTS, floatInput, 1e-12f, 1f, floatInputErrors, INPUTS);
+				}
+				return effect;
+			}
+		});
+	}
+}
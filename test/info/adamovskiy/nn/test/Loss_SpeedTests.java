@@ -0,0 +1,102 @@
+package info.adamovskiy.nn.test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import info.adamovskiy.digitrecognizer.SmallNumbersDataSource;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.dense.DenseNeuralNetwork;
+import info.adamovskiy.nn.dense.LeastSquaresDenseNeuralNetwork;
+import info.adamovskiy.nn.dense.SoftmaxDenseNeuralNetwork;
+
+/**
+ * Time to target accuracy of sigmoid output with least squares loss and
+ * softmax output with cross-entropy loss, both with the same sigmoid hidden
+ * layers and initial weights. Networks are taught online by passes over the
+ * first four fifths of examples, accuracy is checked on the rest after
+ * every {@value #CHECK_INTERVAL} examples; time of checks is not counted.
+ */
+public class Loss_SpeedTests extends SpeedTestSuite {
+	private static final int CHECK_INTERVAL = 1000;
+	private static final int MAX_PASSES = 5;
+
+	/**
+	 * @param args
+	 *            optional path to Kaggle digit recognizer train.csv (noized
+	 *            {@link SmallNumbersDataSource} is used if it is absent or
+	 *            empty) and optional target accuracy, 0.85 by default
+	 */
+	public static void main(String[] args) throws IOException {
+		new Loss_SpeedTests(args.length > 0 && !args[0].isEmpty() ? args[0] : null,
+				args.length > 1 ? Double.parseDouble(args[1]) : .85).launch();
+	}
+
+	private final DigitExamples examples;
+	private final List<double[]> inputs;
+	private final List<double[]> outputs;
+	private final int[] layerSizes;
+	private final double targetAccuracy;
+
+	public Loss_SpeedTests(String digitsFilename, double targetAccuracy) throws IOException {
+		this.targetAccuracy = targetAccuracy;
+		examples = new DigitExamples(digitsFilename);
+		inputs = examples.getInputs();
+		outputs = examples.getOutputs();
+		layerSizes = examples.getLayerSizes();
+	}
+
+	@Override
+	protected void initSuite() {
+		System.out.println(String.format("Data: %s, target accuracy %.4f", examples, targetAccuracy));
+	}
+
+	private double getAccuracy(DenseNeuralNetwork nn, int from) {
+		int correct = 0;
+		for (int i = from; i < inputs.size(); i++) {
+			nn.conclude(inputs.get(i));
+			if (DigitExamples.maxIndex(nn.getResult()) == DigitExamples.maxIndex(outputs.get(i)))
+				correct++;
+		}
+		return (double) correct / (inputs.size() - from);
+	}
+
+	private void teachToTarget(String name, DenseNeuralNetwork nn) {
+		final int teachCount = examples.getTeachCount();
+		long time = 0;
+		long taught = 0;
+		double accuracy = 0;
+		boolean reached = false;
+		for (int pass = 0; pass < MAX_PASSES && !reached; pass++) {
+			for (int from = 0; from < teachCount && !reached; from += CHECK_INTERVAL) {
+				final int to = Math.min(teachCount, from + CHECK_INTERVAL);
+				final long start = System.nanoTime();
+				for (int i = from; i < to; i++) {
+					nn.teach(inputs.get(i), outputs.get(i));
+				}
+				time += System.nanoTime() - start;
+				taught += to - from;
+				accuracy = getAccuracy(nn, teachCount);
+				reached = accuracy >= targetAccuracy;
+			}
+		}
+		if (reached)
+			addMessage(String.format("%s: accuracy %.4f after %d examples (%.2f passes), %.0f ms", name, accuracy, taught,
+					(double) taught / teachCount, time / 1e6));
+		else
+			addMessage(String.format("%s: target is not reached in %d passes, accuracy %.4f, %.0f ms", name, MAX_PASSES,
+					accuracy, time / 1e6));
+	}
+
+	@SpeedTest(order=1)
+	public void leastSquares() {
+		teachToTarget("sigmoid, least squares", new LeastSquaresDenseNeuralNetwork(DigitExamples.LEARNING_RATE,
+				new SigmoidActivationFunction(DigitExamples.SIGMOID_ALPHA), layerSizes, new Random(1)));
+	}
+
+	@SpeedTest(order=2)
+	public void softmaxCrossEntropy() {
+		teachToTarget("softmax, cross-entropy", new SoftmaxDenseNeuralNetwork(DigitExamples.LEARNING_RATE,
+				new SigmoidActivationFunction(DigitExamples.SIGMOID_ALPHA), layerSizes, new Random(1)));
+	}
+}
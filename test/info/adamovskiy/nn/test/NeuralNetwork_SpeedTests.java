@@ -5,14 +5,26 @@ import java.util.Random;
 
 import info.adamovskiy.nn.NeuralNetwork;
 import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.dense.DenseNeuralNetwork;
 
 public class NeuralNetwork_SpeedTests extends SpeedTestSuite {
+	/**
+	 * @param args
+	 *            optional engine name, see {@link Engine}, and optional
+	 *            parallel layer threshold of dense engines, see
+	 *            {@link DenseNeuralNetwork#setParallelLayerThreshold(int)}
+	 */
 	public static void main(String[] args) {
-		new NeuralNetwork_SpeedTests().launch();
+		new NeuralNetwork_SpeedTests(args.length > 0 ? Engine.valueOf(args[0]) : Engine.NEURONS,
+				args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE).launch();
 	}
 	
+	private final Engine engine;
+	private final int parallelLayerThreshold;
 	private NeuralNetwork nn;
 	private static Random rnd = new Random(1);
+	private static final int BATCH_SIZE = 16;
 	
 	private static double[] createRandomVector(int length, double min, double max) {
 		double[] result = new double[length];
@@ -22,12 +34,38 @@ public class NeuralNetwork_SpeedTests extends SpeedTestSuite {
 		return result;
 	}
 	
+	private static double[][] createRandomBatch(int length, double min, double max) {
+		double[][] result = new double[BATCH_SIZE][];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = createRandomVector(length, min, max);
+		}
+		return result;
+	}
+	
+	public NeuralNetwork_SpeedTests(Engine engine, int parallelLayerThreshold) {
+		this.engine = engine;
+		this.parallelLayerThreshold = parallelLayerThreshold;
+	}
+	
+	@Override
+	protected void initSuite() {
+		System.out.println("Engine: " + engine);
+		if (parallelLayerThreshold != Integer.MAX_VALUE)
+			System.out.println("Parallel layer threshold: " + parallelLayerThreshold);
+	}
+	
+	private void setNetwork(NeuralNetwork network) {
+		if (network instanceof DenseNeuralNetwork)
+			((DenseNeuralNetwork) network).setParallelLayerThreshold(parallelLayerThreshold);
+		nn = network;
+	}
+	
 	/*
 	 * 1 hidden layer/60k neurons
 	 * ~1.5M edges
 	 */
 	public void createWideNN() {
-		nn = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 15, 10, 60000);
+		setNetwork(NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 15, 10, 60000));
 	}
 	
 	/*
@@ -37,7 +75,7 @@ public class NeuralNetwork_SpeedTests extends SpeedTestSuite {
 	public void createDeepNN() {
 		Integer[] hiddenLayers = new Integer[20];
 		Arrays.fill(hiddenLayers, Integer.valueOf(2));
-		nn = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 15, 10, hiddenLayers);
+		setNetwork(NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 15, 10, hiddenLayers));
 	}
 	
 	/*
@@ -45,7 +83,7 @@ public class NeuralNetwork_SpeedTests extends SpeedTestSuite {
 	 * ~10M edges
 	 */
 	public void createNoHiddenLayersManyInputsNN() {
-		nn = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 1000000, 10);
+		setNetwork(NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 1000000, 10));
 	}
 	
 	/*
@@ -53,7 +91,7 @@ public class NeuralNetwork_SpeedTests extends SpeedTestSuite {
 	 * ~10M edges
 	 */
 	public void createNoHiddenLayersManyOutputsNN() {
-		nn = NeuralNetworkBuilder.createSigmoidPreceptron(0.5, 0.5, 9, 1000000);
+		setNetwork(NeuralNetworkBuilder.createSigmoidPreceptron(engine, 0.5, 0.5, 9, 1000000));
 	}
 	
 	@SpeedTest(initMethod="createWideNN")
@@ -76,6 +114,16 @@ public class NeuralNetwork_SpeedTests extends SpeedTestSuite {
 		nn.teach(createRandomVector(9, 0, 1), createRandomVector(1000000, 0, 1));
 	}
 	
+	@SpeedTest(initMethod="createWideNN")
+	public void teachBatchWide() {
+		nn.teachBatch(createRandomBatch(15, 0, 1), createRandomBatch(10, 0, 1));
+	}
+	
+	@SpeedTest(initMethod="createNoHiddenLayersManyInputsNN")
+	public void teachBatchNoHiddenManyInputs() {
+		nn.teachBatch(createRandomBatch(1000000, 0, 1), createRandomBatch(10, 0, 1));
+	}
+	
 	@SpeedTest(initMethod="createWideNN")
 	public void concludeWide() {
 		nn.conclude(createRandomVector(15, 0, 1));
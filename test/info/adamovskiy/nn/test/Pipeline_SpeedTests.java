@@ -0,0 +1,116 @@
+package info.adamovskiy.nn.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import info.adamovskiy.nn.NeuralNetwork.TraversalListener;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.dense.DenseNeuralNetwork;
+import info.adamovskiy.nn.dense.DensePipeline;
+import info.adamovskiy.nn.dense.LeastSquaresDenseNeuralNetwork;
+import info.adamovskiy.nn.neuron.NeuralNode;
+
+/**
+ * Throughput of {@link DensePipeline} on deep topology: 15 inputs, 32 hidden
+ * layers of 320 neurons, 10 outputs, batches of 64 random examples split into
+ * 8 micro-batches. Weights after pipelined teaching must not differ from
+ * ones after {@link DenseNeuralNetwork#teachBatch(double[][], double[][])} by
+ * more than {@link #MAX_DIFFERENCE}.
+ */
+public class Pipeline_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Pipeline_SpeedTests().launch();
+	}
+
+	private static final int HIDDEN_LAYERS = 32;
+	private static final int BATCH = 64;
+	private static final int MICRO_BATCHES = 8;
+	private static final int BATCHES = 20;
+	private static final int[] STAGES_COUNTS = {1, 2, 4, 8};
+	// gradients of micro-batches are summed in other order
+	private static final double MAX_DIFFERENCE = 1e-12;
+
+	private final int[] layerSizes = new int[HIDDEN_LAYERS + 2];
+	private final double[][][] inputs = new double[BATCHES][BATCH][];
+	private final double[][][] etalons = new double[BATCHES][BATCH][];
+	private double[] referenceWeights;
+	private long singleStageTime;
+
+	@Override
+	protected void initSuite() {
+		Arrays.fill(layerSizes, 320);
+		layerSizes[0] = 15;
+		layerSizes[layerSizes.length - 1] = 10;
+		final Random rnd = new Random(1);
+		for (int batch = 0; batch < BATCHES; batch++) {
+			for (int b = 0; b < BATCH; b++) {
+				inputs[batch][b] = new double[layerSizes[0]];
+				for (int j = 0; j < inputs[batch][b].length; j++) {
+					inputs[batch][b][j] = rnd.nextDouble();
+				}
+				etalons[batch][b] = new double[layerSizes[layerSizes.length - 1]];
+				etalons[batch][b][rnd.nextInt(etalons[batch][b].length)] = 1;
+			}
+		}
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+	}
+
+	private DenseNeuralNetwork createNetwork() {
+		return new LeastSquaresDenseNeuralNetwork(0.5, new SigmoidActivationFunction(0.5), layerSizes, new Random(1));
+	}
+
+	private static double[] getWeights(DenseNeuralNetwork network) {
+		final double[] weights = new double[(int) network.getWeightsCount()];
+		final int[] position = new int[1];
+		network.traverseNetwork(new TraversalListener() {
+			@Override
+			public boolean onEdgeTraversal(double weight, NeuralNode input, NeuralNode output) {
+				weights[position[0]++] = weight;
+				return true;
+			}
+		});
+		return weights;
+	}
+
+	@SpeedTest(order=1)
+	public void teachBatch() {
+		final DenseNeuralNetwork network = createNetwork();
+		final long start = System.nanoTime();
+		for (int batch = 0; batch < BATCHES; batch++) {
+			network.teachBatch(inputs[batch], etalons[batch]);
+		}
+		addMessage(String.format("%.1f ms per batch", (System.nanoTime() - start) / 1e6 / BATCHES));
+		referenceWeights = getWeights(network);
+	}
+
+	@SpeedTest(order=2)
+	public void pipeline() {
+		for (int stagesCount : STAGES_COUNTS) {
+			final DenseNeuralNetwork network = createNetwork();
+			final DensePipeline pipeline = new DensePipeline(network, stagesCount, MICRO_BATCHES);
+			final long start = System.nanoTime();
+			try {
+				for (int batch = 0; batch < BATCHES; batch++) {
+					pipeline.teachBatch(inputs[batch], etalons[batch]);
+				}
+			} finally {
+				pipeline.close();
+			}
+			final long time = System.nanoTime() - start;
+			if (stagesCount == 1)
+				singleStageTime = time;
+			final double[] weights = getWeights(network);
+			double maxDifference = 0;
+			for (int k = 0; k < weights.length; k++) {
+				maxDifference = Math.max(maxDifference, Math.abs(weights[k] - referenceWeights[k]));
+			}
+			if (maxDifference > MAX_DIFFERENCE)
+				throw new IllegalStateException(String.format("Weights of %d stages differ by %.2e", stagesCount,
+						maxDifference));
+			addMessage(String.format(
+					"%d stages: %.1f ms per batch, speedup %.2f, utilization %.2f, bubble %.2f (ideal %.2f), max difference %.2e",
+					stagesCount, time / 1e6 / BATCHES, (double) singleStageTime / time, pipeline.getUtilization(),
+					pipeline.getBubble(), (double) (stagesCount - 1) / (MICRO_BATCHES + stagesCount - 1), maxDifference));
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package info.adamovskiy.nn.test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import info.adamovskiy.digitrecognizer.SmallNumbersDataSource;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.dense.LeastSquaresDenseNeuralNetwork;
+import info.adamovskiy.nn.dense.WeightStorage;
+
+/**
+ * Compares accuracy of double and single precision dense networks, taught
+ * with the same initial weights on the same examples. Last fifth of examples
+ * is not taught, only recognized.
+ */
+public class Precision_SpeedTests extends SpeedTestSuite {
+	/**
+	 * @param args
+	 *            optional path to Kaggle digit recognizer train.csv, noized
+	 *            {@link SmallNumbersDataSource} is used if it is absent
+	 */
+	public static void main(String[] args) throws IOException {
+		new Precision_SpeedTests(args.length > 0 ? args[0] : null).launch();
+	}
+
+	private final DigitExamples examples;
+	private final List<double[]> inputs;
+	private final List<double[]> outputs;
+	private final int[] layerSizes;
+	private int[] doubleRecognized;
+
+	public Precision_SpeedTests(String digitsFilename) throws IOException {
+		examples = new DigitExamples(digitsFilename);
+		inputs = examples.getInputs();
+		outputs = examples.getOutputs();
+		layerSizes = examples.getLayerSizes();
+	}
+
+	@Override
+	protected void initSuite() {
+		System.out.println("Data: " + examples);
+	}
+
+	/**
+	 * @return recognized digits of not taught examples
+	 */
+	private int[] teachAndRecognize(WeightStorage storage) {
+		final NeuralNetwork nn = new LeastSquaresDenseNeuralNetwork(DigitExamples.LEARNING_RATE,
+				new SigmoidActivationFunction(DigitExamples.SIGMOID_ALPHA), layerSizes, new Random(1), storage);
+		final int teachCount = examples.getTeachCount();
+		for (int i = 0; i < teachCount; i++) {
+			nn.teach(inputs.get(i), outputs.get(i));
+		}
+		addMessage("Network is taught.");
+		final int[] recognized = new int[inputs.size() - teachCount];
+		int correct = 0;
+		double errorSum = 0;
+		for (int i = 0; i < recognized.length; i++) {
+			errorSum += nn.getError(inputs.get(teachCount + i), outputs.get(teachCount + i));
+			recognized[i] = DigitExamples.maxIndex(nn.getResult());
+			if (recognized[i] == DigitExamples.maxIndex(outputs.get(teachCount + i)))
+				correct++;
+		}
+		addMessage(String.format("%s: accuracy %.4f, average error %.6f on %d examples", storage,
+				(double) correct / recognized.length, errorSum / recognized.length, recognized.length));
+		return recognized;
+	}
+
+	@SpeedTest(order=1)
+	public void teachDouble() {
+		doubleRecognized = teachAndRecognize(WeightStorage.HEAP);
+	}
+
+	@SpeedTest(order=2)
+	public void teachFloat() {
+		final int[] floatRecognized = teachAndRecognize(WeightStorage.FLOAT);
+		int same = 0;
+		for (int i = 0; i < floatRecognized.length; i++) {
+			if (floatRecognized[i] == doubleRecognized[i])
+				same++;
+		}
+		addMessage(String.format("Same answer as double precision network: %.4f", (double) same / floatRecognized.length));
+	}
+}
@@ -0,0 +1,166 @@
+package info.adamovskiy.nn.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import info.adamovskiy.digitrecognizer.DigitCsvDataSource;
+import info.adamovskiy.digitrecognizer.SmallNumbersDataSource;
+import info.adamovskiy.nn.DataSource;
+import info.adamovskiy.nn.InferenceSession;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.dense.DenseNeuralNetwork;
+import info.adamovskiy.nn.dense.LeastSquaresDenseNeuralNetwork;
+import info.adamovskiy.nn.dense.QuantizedDenseNetwork;
+
+/**
+ * Compares {@link QuantizedDenseNetwork} with the double precision network it
+ * is made of: accuracy on examples, which were not taught (last fifth), and
+ * inference speed on digit recognizer shape (784-100-20-10).
+ */
+public class Quantization_SpeedTests extends SpeedTestSuite {
+	private static final int CALIBRATION_SAMPLES = 1000;
+	private static final int SPEED_ROWS = 4000;
+	// every way is timed by the last pass, previous ones warm up
+	private static final int PASSES = 5;
+
+	/**
+	 * @param args
+	 *            optional path to Kaggle digit recognizer train.csv, noized
+	 *            {@link SmallNumbersDataSource} is used if it is absent
+	 */
+	public static void main(String[] args) throws IOException {
+		new Quantization_SpeedTests(args.length > 0 ? args[0] : null).launch();
+	}
+
+	private final DigitExamples examples;
+	private final List<double[]> inputs;
+	private final List<double[]> outputs;
+
+	public Quantization_SpeedTests(String digitsFilename) throws IOException {
+		examples = new DigitExamples(digitsFilename);
+		inputs = examples.getInputs();
+		outputs = examples.getOutputs();
+	}
+
+	@Override
+	protected void initSuite() {
+		System.out.println("Data: " + examples);
+	}
+
+	/**
+	 * @return source of given inputs, outputs are not set
+	 */
+	private static DataSource createDataSource(final List<double[]> inputs) {
+		return new DataSource() {
+			private int next;
+
+			@Override
+			public boolean prepareNext() {
+				return next++ < inputs.size();
+			}
+
+			@Override
+			public double[] getInput() {
+				return inputs.get(next - 1);
+			}
+
+			@Override
+			public double[] getOutput() {
+				return null;
+			}
+		};
+	}
+
+	@SpeedTest(order=1)
+	public void accuracy() throws IOException {
+		final DenseNeuralNetwork nn = new LeastSquaresDenseNeuralNetwork(DigitExamples.LEARNING_RATE,
+				new SigmoidActivationFunction(DigitExamples.SIGMOID_ALPHA), examples.getLayerSizes(), new Random(1));
+		final int teachCount = examples.getTeachCount();
+		for (int i = 0; i < teachCount; i++) {
+			nn.teach(inputs.get(i), outputs.get(i));
+		}
+		final QuantizedDenseNetwork quantized = QuantizedDenseNetwork.quantize(nn, createDataSource(inputs),
+				CALIBRATION_SAMPLES);
+		addMessage("Network is taught and quantized.");
+		final InferenceSession doubleSession = nn.createInferenceSession();
+		final InferenceSession quantizedSession = quantized.createInferenceSession();
+		final double[] doubleResult = new double[10];
+		final double[] quantizedResult = new double[10];
+		int doubleCorrect = 0;
+		int quantizedCorrect = 0;
+		int same = 0;
+		double maxDifference = 0;
+		final int count = inputs.size() - teachCount;
+		for (int i = teachCount; i < inputs.size(); i++) {
+			doubleSession.conclude(inputs.get(i), doubleResult);
+			quantizedSession.conclude(inputs.get(i), quantizedResult);
+			final int expected = DigitExamples.maxIndex(outputs.get(i));
+			if (DigitExamples.maxIndex(doubleResult) == expected)
+				doubleCorrect++;
+			if (DigitExamples.maxIndex(quantizedResult) == expected)
+				quantizedCorrect++;
+			if (DigitExamples.maxIndex(doubleResult) == DigitExamples.maxIndex(quantizedResult))
+				same++;
+			for (int k = 0; k < doubleResult.length; k++) {
+				maxDifference = Math.max(maxDifference, Math.abs(doubleResult[k] - quantizedResult[k]));
+			}
+		}
+		addMessage(String.format(
+				"double accuracy %.4f, int8 accuracy %.4f, delta %+.4f on %d examples; same answer %.4f, max output difference %.4f",
+				(double) doubleCorrect / count, (double) quantizedCorrect / count,
+				(double) (quantizedCorrect - doubleCorrect) / count, count, (double) same / count, maxDifference));
+	}
+
+	private static long timeConclude(InferenceSession session, double[][] rows) {
+		final double[] result = new double[session.getOutputsCount()];
+		long time = 0;
+		for (int pass = 0; pass < PASSES; pass++) {
+			final long start = System.nanoTime();
+			for (double[] row : rows) {
+				session.conclude(row, result);
+			}
+			time = System.nanoTime() - start;
+		}
+		return time;
+	}
+
+	@SpeedTest(order=2)
+	public void speed() throws IOException {
+		final DenseNeuralNetwork nn = new LeastSquaresDenseNeuralNetwork(DigitExamples.LEARNING_RATE,
+				new SigmoidActivationFunction(DigitExamples.SIGMOID_ALPHA),
+				DigitExamples.createLayerSizes(DigitCsvDataSource.INPUT_SIZE), new Random(1));
+		final Random rnd = new Random(1);
+		final List<double[]> rows = new ArrayList<>();
+		for (int r = 0; r < SPEED_ROWS; r++) {
+			final double[] row = new double[DigitCsvDataSource.INPUT_SIZE];
+			for (int j = 0; j < row.length; j++) {
+				row[j] = rnd.nextInt(256) / 255.;
+			}
+			rows.add(row);
+		}
+		final QuantizedDenseNetwork quantized = QuantizedDenseNetwork.quantize(nn, createDataSource(rows),
+				CALIBRATION_SAMPLES);
+		final double[][] rowsArray = rows.toArray(new double[0][]);
+		final long doubleTime = timeConclude(nn.createInferenceSession(), rowsArray);
+		final long quantizedTime = timeConclude(quantized.createInferenceSession(), rowsArray);
+		addMessage(String.format("784-100-20-10: double %.0f rows/s, int8 %.0f rows/s, speedup %.2f",
+				SPEED_ROWS / (doubleTime / 1e9), SPEED_ROWS / (quantizedTime / 1e9), (double) doubleTime / quantizedTime));
+	}
+
+	@SpeedTest(order=3)
+	public void wideLayerIsRejected() throws IOException {
+		final DenseNeuralNetwork nn = new LeastSquaresDenseNeuralNetwork(DigitExamples.LEARNING_RATE,
+				new SigmoidActivationFunction(DigitExamples.SIGMOID_ALPHA),
+				new int[] {QuantizedDenseNetwork.MAX_INPUTS_COUNT + 1, 1}, new Random(1));
+		try {
+			QuantizedDenseNetwork.quantize(nn, createDataSource(new ArrayList<double[]>()), CALIBRATION_SAMPLES);
+		} catch (IllegalArgumentException e) {
+			addMessage(e.getMessage());
+			return;
+		}
+		throw new IllegalStateException("Layer of " + (QuantizedDenseNetwork.MAX_INPUTS_COUNT + 1)
+				+ " inputs is quantized");
+	}
+}
@@ -0,0 +1,40 @@
+package info.adamovskiy.nn.test;
+
+import info.adamovskiy.nn.DataSource;
+
+/**
+ * Endless source, which fills the same vectors every time, unlike data
+ * sources of digit recognizer, so it does not allocate. Every new source
+ * gives the same examples.
+ */
+class RepeatableDataSource implements DataSource {
+	private final double[] input;
+	private final double[] output;
+	private int counter;
+
+	RepeatableDataSource(int inputs, int outputs) {
+		input = new double[inputs];
+		output = new double[outputs];
+	}
+
+	@Override
+	public boolean prepareNext() {
+		for (int i = 0; i < input.length; i++) {
+			input[i] = ((counter * 7 + i * 3) % 17) / 17.0;
+		}
+		output[counter % output.length] = 0;
+		counter++;
+		output[counter % output.length] = 1;
+		return true;
+	}
+
+	@Override
+	public double[] getInput() {
+		return input;
+	}
+
+	@Override
+	public double[] getOutput() {
+		return output;
+	}
+}
@@ -0,0 +1,204 @@
+package info.adamovskiy.nn.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import info.adamovskiy.nn.NetworkSnapshot;
+import info.adamovskiy.nn.NeuralNetwork;
+import info.adamovskiy.nn.NeuralNetworkBuilder;
+import info.adamovskiy.nn.NeuralNetworkBuilder.Engine;
+import info.adamovskiy.nn.activation.SigmoidActivationFunction;
+import info.adamovskiy.nn.dense.SoftmaxDenseNeuralNetwork;
+import info.adamovskiy.nn.dense.WeightStorage;
+
+/**
+ * {@link NetworkSnapshot}: taught networks of every engine are saved and
+ * loaded by every engine with the same results, mapped loading of large
+ * network is compared with building of it, damaged files are rejected.
+ */
+public class Snapshot_SpeedTests extends SpeedTestSuite {
+	public static void main(String[] args) {
+		new Snapshot_SpeedTests().launch();
+	}
+
+	private static final Engine[] ENGINES = {Engine.NEURONS, Engine.DENSE, Engine.DENSE_OFF_HEAP};
+	private static final int INPUTS = 784;
+	private static final int OUTPUTS = 10;
+	private static final int EXAMPLES = 200;
+	private static final int ROWS = 20;
+	// sums of different engines are calculated in different order
+	private static final double MAX_DIFFERENCE = 1e-9;
+
+	private final double[][] inputs = new double[EXAMPLES][INPUTS];
+	private final double[][] outputs = new double[EXAMPLES][OUTPUTS];
+	private File file;
+
+	@Override
+	protected void initSuite() {
+		final Random rnd = new Random(1);
+		for (int r = 0; r < EXAMPLES; r++) {
+			for (int j = 0; j < INPUTS; j++) {
+				inputs[r][j] = rnd.nextDouble();
+			}
+			outputs[r][rnd.nextInt(OUTPUTS)] = 1;
+		}
+		try {
+			file = File.createTempFile("network", ".snapshot");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		file.deleteOnExit();
+	}
+
+	private void teach(NeuralNetwork nn) {
+		for (int r = 0; r < EXAMPLES; r++) {
+			nn.erase();
+			nn.teach(inputs[r], outputs[r]);
+		}
+	}
+
+	private double[][] conclude(NeuralNetwork nn) {
+		final double[][] results = new double[ROWS][OUTPUTS];
+		for (int r = 0; r < ROWS; r++) {
+			nn.erase();
+			nn.conclude(inputs[r]);
+			nn.getResult(results[r]);
+		}
+		return results;
+	}
+
+	private static double compare(String name, double[][] expected, double[][] actual) {
+		double maxDifference = 0;
+		for (int r = 0; r < expected.length; r++) {
+			for (int i = 0; i < expected[r].length; i++) {
+				maxDifference = Math.max(maxDifference, Math.abs(expected[r][i] - actual[r][i]));
+			}
+		}
+		if (maxDifference > MAX_DIFFERENCE)
+			throw new IllegalStateException(String.format("%s: results differ by %.2e", name, maxDifference));
+		return maxDifference;
+	}
+
+	@SpeedTest(order=1)
+	public void roundTrip() throws IOException {
+		for (Engine source : ENGINES) {
+			final NeuralNetwork nn = NeuralNetworkBuilder.createSigmoidPreceptron(source, 0.5, 0.5, INPUTS, OUTPUTS, 100, 20);
+			teach(nn);
+			final double[][] expected = conclude(nn);
+			nn.save(file);
+			for (Engine target : ENGINES) {
+				final String name = source + " to " + target;
+				final double difference = compare(name, expected, conclude(NetworkSnapshot.load(file, target)));
+				addMessage(String.format("%s: max difference %.2e", name, difference));
+			}
+		}
+	}
+
+	@SpeedTest(order=2)
+	public void softmaxRoundTrip() throws IOException {
+		final NeuralNetwork nn = new SoftmaxDenseNeuralNetwork(0.1, new SigmoidActivationFunction(0.5),
+				new int[] {INPUTS, 100, 20, OUTPUTS}, new Random(1), WeightStorage.HEAP);
+		teach(nn);
+		final double[][] expected = conclude(nn);
+		nn.save(file);
+		final NeuralNetwork loaded = NetworkSnapshot.load(file);
+		if (!(loaded instanceof SoftmaxDenseNeuralNetwork))
+			throw new IllegalStateException("Loss is not restored");
+		addMessage(String.format("softmax: max difference %.2e", compare("softmax", expected, conclude(loaded))));
+	}
+
+	@SpeedTest(order=3)
+	public void mappedNetworkIsPrivate() throws IOException {
+		NeuralNetworkBuilder.createSigmoidPreceptron(Engine.DENSE, 0.5, 0.5, INPUTS, OUTPUTS, 100, 20).save(file);
+		final byte[] saved = Files.readAllBytes(file.toPath());
+		final NeuralNetwork loaded = NetworkSnapshot.load(file);
+		teach(loaded);
+		if (!Arrays.equals(saved, Files.readAllBytes(file.toPath())))
+			throw new IllegalStateException("Teaching of loaded network changed file");
+		// saving replaces file, so network mapped from the old one keeps its weights
+		final double[][] expected = conclude(loaded);
+		NeuralNetworkBuilder.createSigmoidPreceptron(Engine.DENSE, 0.5, 0.5, INPUTS, OUTPUTS, 100, 20).save(file);
+		compare("loaded network after file is replaced", expected, conclude(loaded));
+		addMessage("File is not changed by loaded network and does not change it.");
+	}
+
+	/*
+	 * 1 hidden layer/~400k neurons
+	 * ~10M edges
+	 */
+	@SpeedTest(order=4)
+	public void largeNetwork() throws IOException {
+		long start = System.nanoTime();
+		final NeuralNetwork nn = NeuralNetworkBuilder.createSigmoidPreceptron(Engine.DENSE, 0.5, 0.5, 15, 10, 384500);
+		addMessage(String.format("Built in %d ms.", (System.nanoTime() - start) / 1000000));
+		start = System.nanoTime();
+		nn.save(file);
+		addMessage(String.format("Saved in %d ms, %d bytes.", (System.nanoTime() - start) / 1000000, file.length()));
+		start = System.nanoTime();
+		final NeuralNetwork mapped = NetworkSnapshot.load(file);
+		addMessage(String.format("Mapped in %.2f ms.", (System.nanoTime() - start) / 1e6));
+		start = System.nanoTime();
+		final double[] input = new double[15];
+		mapped.conclude(input);
+		addMessage(String.format("First conclusion of mapped network in %d ms.", (System.nanoTime() - start) / 1000000));
+		start = System.nanoTime();
+		final NeuralNetwork copied = NetworkSnapshot.load(file, Engine.DENSE);
+		addMessage(String.format("Copied into heap in %d ms.", (System.nanoTime() - start) / 1000000));
+		nn.conclude(input);
+		copied.conclude(input);
+		compare("large network", new double[][] {nn.getResult(), nn.getResult()},
+				new double[][] {mapped.getResult(), copied.getResult()});
+	}
+
+	private void expectDamaged(String name) {
+		try {
+			NetworkSnapshot.load(file);
+		} catch (IOException e) {
+			addMessage(name + ": " + e.getMessage());
+			return;
+		}
+		throw new IllegalStateException(name + " is loaded");
+	}
+
+	@SpeedTest(order=5)
+	public void damagedFiles() throws IOException {
+		final NeuralNetwork nn = NeuralNetworkBuilder.createSigmoidPreceptron(Engine.DENSE, 0.5, 0.5, 15, 10, 20);
+		nn.save(file);
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+			access.setLength(access.length() - 1);
+		}
+		expectDamaged("truncated file");
+		nn.save(file);
+		try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+			access.seek(4);
+			access.write(2);
+		}
+		expectDamaged("file of the next version");
+		Files.write(file.toPath(), "digraph {}".getBytes("US-ASCII"));
+		expectDamaged("text file");
+	}
+
+	/*
+	 * Header of sizes does not fit write buffer. Every layer is mapped while
+	 * loading, so it is loaded once not to exceed count of mappings of process.
+	 */
+	@SpeedTest(order=6)
+	public void manyLayers() throws IOException {
+		final Integer[] hiddenLayers = new Integer[17000];
+		Arrays.fill(hiddenLayers, 1);
+		final NeuralNetwork nn = NeuralNetworkBuilder.createSigmoidPreceptron(Engine.DENSE, 0.5, 0.5, 2, 2,
+				hiddenLayers);
+		nn.save(file);
+		final double[] input = {.25, .75};
+		nn.conclude(input);
+		final NeuralNetwork copied = NetworkSnapshot.load(file, Engine.DENSE);
+		copied.conclude(input);
+		compare("many layers", new double[][] {nn.getResult()}, new double[][] {copied.getResult()});
+		addMessage(String.format("%d layers are saved and loaded, %d bytes.", hiddenLayers.length + 2,
+				file.length()));
+	}
+}